@@ -0,0 +1,70 @@
+package cassandra;
+
+import cassandra.dto.SensorMetricDTO;
+import cassandra.entity.ChatMessage;
+import cassandra.entity.ExampleTable;
+import cassandra.entity.SensorMetric;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic rows shaped like the seed data, for the benchmarks
+ */
+public final class BenchmarkData {
+
+    private static final long NOV_30_2025 = 1764547200000L;
+    private static final Map<String, String> METADATA = Collections.singletonMap("firmware", "2.4.1");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * One sensor, one row per minute going back from the end of November 2025, newest first
+     */
+    public static List<SensorMetric> sensorMetrics(int rows) {
+        Random random = new Random(rows);
+        List<SensorMetric> metrics = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long recordedAt = NOV_30_2025 - i * 60_000L - random.nextInt(1_000);
+            ZonedDateTime utc = new Date(recordedAt).toInstant().atZone(ZoneOffset.UTC);
+            metrics.add(new SensorMetric("TEMP-001", utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(),
+                    new Date(recordedAt), "temperature", 21.5 + Math.round(random.nextGaussian() * 20) / 10.0,
+                    "celsius", "Building A - Floor 3", "OK", METADATA));
+        }
+        return metrics;
+    }
+
+    public static List<SensorMetricDTO> sensorMetricDTOs(int rows) {
+        List<SensorMetricDTO> dtos = new ArrayList<>(rows);
+        for (SensorMetric metric : sensorMetrics(rows)) {
+            dtos.add(SensorMetricDTO.instanceOf(metric));
+        }
+        return dtos;
+    }
+
+    public static List<ChatMessage> chatMessages(int rows) {
+        UUID conversationId = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        List<ChatMessage> messages = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            messages.add(new ChatMessage(conversationId, new UUID(rows, i), "user-" + (i % 2), i % 2 == 0 ? "Alice" : "Bob",
+                    "Message number " + i + " of the benchmark conversation", new Date(NOV_30_2025 - i * 1_000L), i > 10));
+        }
+        return messages;
+    }
+
+    public static List<ExampleTable> exampleRows(int rows) {
+        List<ExampleTable> exampleRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            exampleRows.add(new ExampleTable("partition", "row-" + i, i, i * 2));
+        }
+        return exampleRows;
+    }
+}
@@ -0,0 +1,100 @@
+package cassandra.controller;
+
+import cassandra.BenchmarkData;
+import cassandra.codec.SensorSeriesWriter;
+import cassandra.dto.SensorMetricDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a month partition of sensor metrics to the response body in each negotiable format.
+ * The body goes to a sink that only counts bytes, so the numbers cover serialization alone and not
+ * the network; the payload size of one operation is reported as the responseBytes secondary result
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SensorMetricSerializationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private List<SensorMetricDTO> metrics;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        metrics = BenchmarkData.sensorMetricDTOs(rows);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public void jsonArray(Sink sink) throws IOException {
+        StreamingResponses.jsonArray(objectMapper, metrics::stream).writeTo(sink);
+    }
+
+    @Benchmark
+    public void ndjson(Sink sink) throws IOException {
+        StreamingResponses.ndjson(objectMapper, metrics::stream).writeTo(sink);
+    }
+
+    @Benchmark
+    public void csv(Sink sink) throws IOException {
+        StreamingResponses.csv(metrics::stream, SensorMetricController.CSV_COLUMNS).writeTo(sink);
+    }
+
+    @Benchmark
+    public void sensorSeries(Sink sink) throws IOException {
+        SensorSeriesWriter writer = new SensorSeriesWriter(sink, "TEMP-001");
+        for (SensorMetricDTO metric : metrics) {
+            writer.write(metric);
+        }
+        writer.finish();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sink extends OutputStream {
+
+        public long responseBytes;
+
+        /**
+         * Each operation takes milliseconds, far above the cost of a per-invocation fixture
+         */
+        @Setup(Level.Invocation)
+        public void reset() {
+            responseBytes = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            responseBytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            responseBytes += len;
+        }
+    }
+}
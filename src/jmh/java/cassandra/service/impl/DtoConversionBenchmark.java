@@ -0,0 +1,65 @@
+package cassandra.service.impl;
+
+import cassandra.BenchmarkData;
+import cassandra.dto.ChatMessageDTO;
+import cassandra.dto.ExampleTableDTO;
+import cassandra.dto.SensorMetricDTO;
+import cassandra.entity.ChatMessage;
+import cassandra.entity.ExampleTable;
+import cassandra.entity.SensorMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Entity to DTO mapping of whole result lists, as done by the non-streaming service reads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DtoConversionBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private List<SensorMetric> sensorMetrics;
+    private List<ChatMessage> chatMessages;
+    private List<ExampleTable> exampleRows;
+
+    @Setup
+    public void setUp() {
+        sensorMetrics = BenchmarkData.sensorMetrics(rows);
+        chatMessages = BenchmarkData.chatMessages(rows);
+        exampleRows = BenchmarkData.exampleRows(rows);
+    }
+
+    @Benchmark
+    public List<SensorMetricDTO> sensorMetrics() {
+        return SensorMetricServiceImpl.convertToMetricDTOs(sensorMetrics);
+    }
+
+    @Benchmark
+    public List<ChatMessageDTO> chatMessages() {
+        return ChatServiceImpl.convertToMessageDTOs(chatMessages);
+    }
+
+    @Benchmark
+    public List<ExampleTableDTO> exampleTable() {
+        return exampleRows.stream().map(ExampleTableDTO::instanceOf).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,33 @@
+package cassandra.actuator;
+
+import cassandra.dto.PartitionSizeReportDTO;
+import cassandra.service.impl.PartitionSizeSampler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/partitions: GET returns the last round of the partition size sampler,
+ * POST runs a new round and returns it
+ */
+@Component
+@Endpoint(id = "partitions")
+public class PartitionsEndpoint {
+
+    private final PartitionSizeSampler partitionSizeSampler;
+
+    public PartitionsEndpoint(PartitionSizeSampler partitionSizeSampler) {
+        this.partitionSizeSampler = partitionSizeSampler;
+    }
+
+    @ReadOperation
+    public PartitionSizeReportDTO partitions() {
+        return partitionSizeSampler.getReport();
+    }
+
+    @WriteOperation
+    public PartitionSizeReportDTO sample() {
+        return partitionSizeSampler.sample();
+    }
+}
@@ -0,0 +1,59 @@
+package cassandra.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads what {@link BitOutput} wrote
+ */
+final class BitInput {
+
+    private final InputStream in;
+    private long buffer;
+    private int available;
+
+    BitInput(InputStream in) {
+        this.in = in;
+    }
+
+    boolean readBit() throws IOException {
+        return readBits(1) == 1;
+    }
+
+    long readBits(int count) throws IOException {
+        if (count > 56) {
+            long high = readBits(count - 32);
+            return (high << 32) | readBits(32);
+        }
+        while (available < count) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Sensor series stream ended in the middle of a block");
+            }
+            buffer = (buffer << 8) | b;
+            available += 8;
+        }
+        available -= count;
+        return (buffer >>> available) & ((1L << count) - 1);
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            long group = readBits(8);
+            value |= (group & 0x7F) << shift;
+            if ((group & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in sensor series stream");
+    }
+
+    /**
+     * Skips the padding bits up to the next byte boundary
+     */
+    void align() {
+        available -= available % 8;
+    }
+}
@@ -0,0 +1,69 @@
+package cassandra.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes values of 1 to 64 bits, most significant bit first, packed without padding until {@link #align()}
+ */
+final class BitOutput {
+
+    private final OutputStream out;
+    private long buffer;
+    private int used;
+
+    BitOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeBit(boolean bit) throws IOException {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the low count bits of value
+     */
+    void writeBits(long value, int count) throws IOException {
+        int free = 64 - used;
+        if (count <= free) {
+            long bits = count == 64 ? value : value & ((1L << count) - 1);
+            buffer |= bits << (free - count);
+            used += count;
+            if (used == 64) {
+                flushBuffer(8);
+            }
+            return;
+        }
+        int rest = count - free;
+        buffer |= (value >>> rest) & ((1L << free) - 1);
+        flushBuffer(8);
+        buffer = value << (64 - rest);
+        used = rest;
+    }
+
+    /**
+     * Unsigned LEB128: 7 bits per byte, low group first
+     */
+    void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+
+    /**
+     * Pads the last byte with zero bits and hands every pending byte to the output stream
+     */
+    void align() throws IOException {
+        flushBuffer((used + 7) / 8);
+    }
+
+    private void flushBuffer(int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            out.write((int) (buffer >>> (56 - 8 * i)));
+        }
+        buffer = 0;
+        used = 0;
+    }
+}
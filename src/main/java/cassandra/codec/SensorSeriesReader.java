@@ -0,0 +1,202 @@
+package cassandra.codec;
+
+import cassandra.dto.SensorMetricDTO;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decodes a stream written by {@link SensorSeriesWriter}, one block at a time
+ */
+public final class SensorSeriesReader {
+
+    private final BitInput in;
+    private final String sensorId;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private final long[] timestamps = new long[SensorSeriesWriter.BLOCK_SIZE];
+    private final double[] values = new double[SensorSeriesWriter.BLOCK_SIZE];
+    private final boolean[] present = new boolean[SensorSeriesWriter.BLOCK_SIZE];
+    private final String[][] text = new String[SensorSeriesWriter.TEXT_COLUMNS][SensorSeriesWriter.BLOCK_SIZE];
+    private int count;
+    private int position;
+    private boolean finished;
+
+    /**
+     * @throws IOException if the stream does not start with a sensor series header of a known version
+     */
+    public SensorSeriesReader(InputStream inputStream) throws IOException {
+        InputStream stream = new BufferedInputStream(inputStream, 65536);
+        for (byte expected : SensorSeriesWriter.MAGIC) {
+            if (stream.read() != expected) {
+                throw new IOException("Not a sensor series stream");
+            }
+        }
+        int version = stream.read();
+        if (version != SensorSeriesWriter.VERSION) {
+            throw new IOException("Unsupported sensor series version " + version);
+        }
+        this.in = new BitInput(stream);
+        this.sensorId = readString();
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * @return the next metric, or null at the end of the stream
+     */
+    public SensorMetricDTO read() throws IOException {
+        if (position == count) {
+            if (finished) {
+                return null;
+            }
+            readBlock();
+            if (count == 0) {
+                finished = true;
+                return null;
+            }
+        }
+        int i = position++;
+        ZonedDateTime recordedAt = Instant.ofEpochMilli(timestamps[i]).atZone(ZoneOffset.UTC);
+        SensorMetricDTO metric = new SensorMetricDTO();
+        metric.setSensorId(sensorId);
+        metric.setYear(recordedAt.getYear());
+        metric.setMonth(recordedAt.getMonthValue());
+        metric.setDay(recordedAt.getDayOfMonth());
+        metric.setHour(recordedAt.getHour());
+        metric.setRecordedAt(new Date(timestamps[i]));
+        metric.setMetricValue(present[i] ? values[i] : null);
+        metric.setMetricType(text[0][i]);
+        metric.setUnit(text[1][i]);
+        metric.setLocation(text[2][i]);
+        metric.setStatus(text[3][i]);
+        return metric;
+    }
+
+    public List<SensorMetricDTO> readAll() throws IOException {
+        List<SensorMetricDTO> metrics = new ArrayList<>();
+        for (SensorMetricDTO metric = read(); metric != null; metric = read()) {
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    private void readBlock() throws IOException {
+        long blockSize = in.readVarint();
+        if (blockSize > SensorSeriesWriter.BLOCK_SIZE) {
+            throw new IOException("Sensor series block of " + blockSize + " rows");
+        }
+        count = (int) blockSize;
+        position = 0;
+        if (count == 0) {
+            return;
+        }
+        readTimestamps();
+        boolean allPresent = in.readBit();
+        for (int i = 0; i < count; i++) {
+            present[i] = allPresent || in.readBit();
+        }
+        readValues();
+        for (String[] column : text) {
+            readRuns(column);
+        }
+        in.align();
+    }
+
+    private void readTimestamps() throws IOException {
+        timestamps[0] = in.readBits(64);
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            long deltaOfDelta;
+            if (!in.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!in.readBit()) {
+                deltaOfDelta = signed(in.readBits(7), 7);
+            } else if (!in.readBit()) {
+                deltaOfDelta = signed(in.readBits(9), 9);
+            } else if (!in.readBit()) {
+                deltaOfDelta = signed(in.readBits(12), 12);
+            } else if (!in.readBit()) {
+                deltaOfDelta = signed(in.readBits(32), 32);
+            } else {
+                deltaOfDelta = in.readBits(64);
+            }
+            delta += deltaOfDelta;
+            timestamps[i] = timestamps[i - 1] + delta;
+        }
+    }
+
+    private void readValues() throws IOException {
+        boolean first = true;
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (!present[i]) {
+                continue;
+            }
+            if (first) {
+                previous = in.readBits(64);
+                first = false;
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    trailing = 64 - leading - ((int) in.readBits(6) + 1);
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    private void readRuns(String[] column) throws IOException {
+        int filled = 0;
+        while (filled < count) {
+            long run = in.readVarint();
+            if (run < 1 || run > count - filled) {
+                throw new IOException("Sensor series run of " + run + " rows");
+            }
+            long reference = in.readVarint();
+            String value;
+            if (reference == 0) {
+                value = null;
+            } else if (reference <= dictionary.size()) {
+                value = dictionary.get((int) reference - 1);
+            } else if (reference == dictionary.size() + 1) {
+                value = readString();
+                dictionary.add(value);
+            } else {
+                throw new IOException("Unknown sensor series dictionary entry " + reference);
+            }
+            for (int end = filled + (int) run; filled < end; filled++) {
+                column[filled] = value;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        long length = in.readVarint();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Sensor series string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[(int) length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) in.readBits(8);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+}
@@ -0,0 +1,233 @@
+package cassandra.codec;
+
+import cassandra.dto.SensorMetricDTO;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes the metrics of one sensor in a compact columnar binary format (application/x-sensor-series).
+ * <p>
+ * The sensor ID is written once in the header. Rows are then written in blocks of up to {@link #BLOCK_SIZE},
+ * column by column: recorded_at as Gorilla delta-of-delta bit codes, metric_value as Gorilla XOR codes,
+ * and metric_type, unit, location and status as runs of references into a string dictionary shared by the
+ * whole stream, so a string that repeats on every row costs a few bits per block. year, month, day and hour
+ * are not sent: they are the UTC calendar fields of recorded_at, as the ingest path stores them, and are
+ * recomputed by {@link SensorSeriesReader}. The metadata map is not sent either.
+ * <pre>
+ * stream := "SMS" version:u8 sensorId:string block* 0:varint
+ * block  := count:varint timestamps presence values text{4} (padded to a byte)
+ * string := length:varint utf8-bytes
+ * </pre>
+ * Only one block of rows is held in memory, so partitions of any size are encoded in constant space.
+ */
+public final class SensorSeriesWriter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-sensor-series";
+    public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+    static final byte[] MAGIC = {'S', 'M', 'S'};
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 1024;
+    static final int TEXT_COLUMNS = 4;
+
+    private final BitOutput out;
+    private final OutputStream stream;
+    private final String sensorId;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private final long[] timestamps = new long[BLOCK_SIZE];
+    private final double[] values = new double[BLOCK_SIZE];
+    private final boolean[] present = new boolean[BLOCK_SIZE];
+    private final String[][] text = new String[TEXT_COLUMNS][BLOCK_SIZE];
+    private int count;
+    private boolean missingValues;
+
+    public SensorSeriesWriter(OutputStream outputStream, String sensorId) throws IOException {
+        this.stream = new BufferedOutputStream(outputStream, 65536);
+        this.out = new BitOutput(stream);
+        this.sensorId = sensorId;
+        stream.write(MAGIC);
+        stream.write(VERSION);
+        writeString(sensorId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the metric belongs to another sensor or has no recordedAt
+     */
+    public void write(SensorMetricDTO metric) throws IOException {
+        if (!sensorId.equals(metric.getSensorId())) {
+            throw new IllegalArgumentException("Metric of sensor " + metric.getSensorId() + " in the series of " + sensorId);
+        }
+        if (metric.getRecordedAt() == null) {
+            throw new IllegalArgumentException("Metric without recordedAt");
+        }
+        timestamps[count] = metric.getRecordedAt().getTime();
+        Double value = metric.getMetricValue();
+        present[count] = value != null;
+        values[count] = value != null ? value : 0;
+        missingValues |= value == null;
+        text[0][count] = metric.getMetricType();
+        text[1][count] = metric.getUnit();
+        text[2][count] = metric.getLocation();
+        text[3][count] = metric.getStatus();
+        if (++count == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the end marker and flushes; the underlying stream is left open
+     */
+    public void finish() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+        out.writeVarint(0);
+        out.align();
+        stream.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        out.writeVarint(count);
+        writeTimestamps();
+        out.writeBit(!missingValues);
+        if (missingValues) {
+            for (int i = 0; i < count; i++) {
+                out.writeBit(present[i]);
+            }
+        }
+        writeValues();
+        for (String[] column : text) {
+            writeRuns(column);
+        }
+        out.align();
+        count = 0;
+        missingValues = false;
+    }
+
+    /**
+     * The first timestamp in full, then each delta-of-delta in the smallest of these codes that fits:
+     * '0' for 0, '10' + 7 bits, '110' + 9 bits, '1110' + 12 bits, '11110' + 32 bits, '11111' + 64 bits
+     */
+    private void writeTimestamps() throws IOException {
+        out.writeBits(timestamps[0], 64);
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            long deltaOfDelta = delta - previousDelta;
+            previousDelta = delta;
+            if (deltaOfDelta == 0) {
+                out.writeBit(false);
+            } else if (fits(deltaOfDelta, 7)) {
+                out.writeBits(0b10, 2);
+                out.writeBits(deltaOfDelta, 7);
+            } else if (fits(deltaOfDelta, 9)) {
+                out.writeBits(0b110, 3);
+                out.writeBits(deltaOfDelta, 9);
+            } else if (fits(deltaOfDelta, 12)) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(deltaOfDelta, 12);
+            } else if (fits(deltaOfDelta, 32)) {
+                out.writeBits(0b11110, 5);
+                out.writeBits(deltaOfDelta, 32);
+            } else {
+                out.writeBits(0b11111, 5);
+                out.writeBits(deltaOfDelta, 64);
+            }
+        }
+    }
+
+    /**
+     * The first present value in full, then each value XORed with the previous one: '0' when equal,
+     * '10' + the meaningful bits when they fit in the previous window of leading and trailing zeros,
+     * otherwise '11' + 5 bits of leading zeros + 6 bits of (meaningful length - 1) + the meaningful bits.
+     * Absent values are skipped
+     */
+    private void writeValues() throws IOException {
+        boolean first = true;
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (!present[i]) {
+                continue;
+            }
+            long bits = Double.doubleToRawLongBits(values[i]);
+            if (first) {
+                out.writeBits(bits, 64);
+                first = false;
+                previous = bits;
+                continue;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                continue;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBit(false);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    /**
+     * (run length, dictionary reference) pairs covering the block. Reference 0 is null, 1..n an entry
+     * already in the dictionary, and n + 1 a new entry whose string follows
+     */
+    private void writeRuns(String[] column) throws IOException {
+        int start = 0;
+        while (start < count) {
+            String value = column[start];
+            int end = start + 1;
+            while (end < count && (value == null ? column[end] == null : value.equals(column[end]))) {
+                end++;
+            }
+            out.writeVarint(end - start);
+            if (value == null) {
+                out.writeVarint(0);
+            } else {
+                Integer reference = dictionary.get(value);
+                if (reference != null) {
+                    out.writeVarint(reference);
+                } else {
+                    reference = dictionary.size() + 1;
+                    dictionary.put(value, reference);
+                    out.writeVarint(reference);
+                    writeString(value);
+                }
+            }
+            start = end;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeVarint(bytes.length);
+        for (byte b : bytes) {
+            out.writeBits(b, 8);
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+    }
+}
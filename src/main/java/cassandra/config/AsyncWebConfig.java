@@ -0,0 +1,41 @@
+package cassandra.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Executor for MVC async responses: StreamingResponseBody exports and the Flux endpoints, whose elements
+ * Spring MVC writes with a blocking servlet write each. A slow client holds one of its threads while a write
+ * is pending, so the pool is bounded in threads and queue, kept apart from the application task executor,
+ * and rejects further responses (HTTP 503) instead of queueing them without limit.
+ * The executor is deliberately not a bean, so the auto-configured application task executor stays in place.
+ */
+@Configuration
+public class AsyncWebConfig implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public AsyncWebConfig(@Value("${web.async.threads:16}") int threads,
+                          @Value("${web.async.queue-capacity:64}") int queueCapacity) {
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("web-async-");
+        executor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
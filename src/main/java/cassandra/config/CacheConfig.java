@@ -0,0 +1,58 @@
+package cassandra.config;
+
+import cassandra.dto.ConversationDTO;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process Caffeine caches in front of Cassandra reads.
+ * Caches are registered up front rather than created on first use, so the actuator binds their
+ * hit/miss/eviction statistics at startup (cache.gets, cache.evictions, ... under /actuator/metrics).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * ConversationDTO by conversation id. Every write to a conversation row must evict its entry
+     */
+    public static final String CONVERSATIONS = "conversations";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${chat.cache.conversations.ttl-seconds:600}") long conversationsTtlSeconds,
+            @Value("${chat.cache.conversations.max-weight-bytes:16777216}") long conversationsMaxWeightBytes) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(CONVERSATIONS, Caffeine.newBuilder()
+                .expireAfterWrite(conversationsTtlSeconds, TimeUnit.SECONDS)
+                .maximumWeight(conversationsMaxWeightBytes)
+                .weigher((Object key, Object value) -> estimateSize((ConversationDTO) value))
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+
+    /**
+     * Rough retained size in bytes: object headers and references, plus two bytes per character of text
+     */
+    static int estimateSize(ConversationDTO conversation) {
+        int size = 160;
+        if (conversation.getConversationName() != null) {
+            size += 40 + 2 * conversation.getConversationName().length();
+        }
+        if (conversation.getParticipants() != null) {
+            for (String participant : conversation.getParticipants()) {
+                size += 72 + 2 * participant.length();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,22 @@
+package cassandra.controller;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Streamed responses that the bounded async executor has no room for, see {@link cassandra.config.AsyncWebConfig}
+ */
+@RestControllerAdvice
+public class AsyncRejectionHandler {
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> asyncExecutorFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+}
@@ -2,42 +2,111 @@ package cassandra.controller;
 
 import cassandra.dto.ChatMessageDTO;
 import cassandra.dto.ConversationDTO;
+import cassandra.dto.PageDTO;
 import cassandra.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/chat")
 @Tag(name = "Chat System", description = "Operations for managing conversations and messages in a distributed Cassandra cluster")
 public class ChatController {
 
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final StreamingResponses.CsvColumns<ChatMessageDTO> MESSAGE_CSV_COLUMNS = new StreamingResponses.CsvColumns<>(
+            message -> new Object[]{message.getConversationId(), message.getMessageId(), message.getSenderId(),
+                    message.getSenderName(), message.getMessageText(),
+                    message.getCreatedAt() != null ? message.getCreatedAt().toInstant() : null, message.getIsRead()},
+            "conversation_id", "message_id", "sender_id", "sender_name", "message_text", "created_at", "is_read");
+
     private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    private final long sseTimeoutMillis;
 
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService,
+                          ObjectMapper objectMapper,
+                          @Value("${chat.sse.timeout-ms:1800000}") long sseTimeoutMillis) {
         this.chatService = chatService;
+        this.objectMapper = objectMapper;
+        this.sseTimeoutMillis = sseTimeoutMillis;
     }
 
     @Operation(summary = "Get all conversations", 
-               description = "Retrieves a list of all conversations in the system")
+               description = "Retrieves a list of all conversations in the system. The table is read page by page and " +
+                           "streamed as it is read; send 'Accept: application/x-ndjson' for one conversation per line. " +
+                           "Prefer /conversations/page for interactive clients.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of conversations"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    @GetMapping("/conversations")
-    public ResponseEntity<List<ConversationDTO>> getAllConversations() {
-        List<ConversationDTO> conversations = chatService.getAllConversations();
-        return new ResponseEntity<>(conversations, HttpStatus.OK);
+    @GetMapping(value = "/conversations",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> getAllConversations(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType mediaType = StreamingResponses.negotiate(accept, MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+        return StreamingResponses.stream(objectMapper, mediaType, chatService::streamAllConversations);
+    }
+
+    @Operation(summary = "Page through all conversations with a cursor",
+               description = "Returns conversations in token order. The response carries an opaque 'nextCursor' " +
+                           "built from the Cassandra paging state; pass it back as 'cursor' to load the next page.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of conversations"),
+            @ApiResponse(responseCode = "400", description = "Invalid page size or cursor"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/conversations/page")
+    public ResponseEntity<PageDTO<ConversationDTO>> getConversationsPage(
+            @Parameter(description = "Number of conversations per page (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "100") int size,
+
+            @Parameter(description = "Cursor returned as 'nextCursor' by the previous page")
+            @RequestParam(required = false) String cursor) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(chatService.getConversationsPage(size, cursor), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Operation(summary = "Export all conversations as NDJSON",
+               description = "Admin/export endpoint: splits the token ring into subranges and scans them in parallel " +
+                           "on a bounded pool, streaming one conversation per line. Order is not defined.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export streamed"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/conversations/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportConversations() {
+        return StreamingResponses.stream(objectMapper, MediaType.APPLICATION_NDJSON, chatService::exportAllConversations);
     }
 
     @Operation(summary = "Get conversation by ID", 
@@ -67,21 +136,58 @@ public class ChatController {
     }
 
     @Operation(summary = "Get all messages from a conversation", 
-               description = "Retrieves all messages from a specific conversation (wide column demo - can return thousands of messages)")
+               description = "Retrieves all messages from a specific conversation (wide column demo - can return thousands of messages). " +
+                           "Pass 'since' and/or 'before' (message IDs) to fetch only a bounded slice instead: 'since' returns the " +
+                           "messages posted after a message the client already has, oldest first; 'before' scrolls back through " +
+                           "history, newest first. Both use message_id range slices on the clustering order. " +
+                           "The whole partition is streamed page by page; send 'Accept: application/x-ndjson' or " +
+                           "'Accept: text/csv' to export it as NDJSON or CSV.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved messages"),
-            @ApiResponse(responseCode = "400", description = "Invalid conversation ID format"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved messages",
+                    content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = ChatMessageDTO.class))),
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = ChatMessageDTO.class)),
+                            @Content(mediaType = StreamingResponses.TEXT_CSV_VALUE)
+                    }),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID, message ID or limit"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    @GetMapping("/conversations/{conversationId}/messages")
-    public ResponseEntity<List<ChatMessageDTO>> getMessages(
+    @GetMapping(value = "/conversations/{conversationId}/messages",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                            StreamingResponses.TEXT_CSV_VALUE})
+    public ResponseEntity<StreamingResponseBody> getMessages(
             @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
-            @PathVariable String conversationId) {
+            @PathVariable String conversationId,
+
+            @Parameter(description = "Only messages newer than this message ID, oldest first")
+            @RequestParam(required = false) String since,
+
+            @Parameter(description = "Only messages older than this message ID, newest first")
+            @RequestParam(required = false) String before,
+
+            @Parameter(description = "Maximum number of messages when since or before is given (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "100") int limit,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
+        MediaType mediaType = StreamingResponses.negotiate(accept,
+                MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON, StreamingResponses.TEXT_CSV);
         try {
             UUID uuid = UUID.fromString(conversationId);
-            List<ChatMessageDTO> messages = chatService.getMessagesByConversationId(uuid);
-            return new ResponseEntity<>(messages, HttpStatus.OK);
+            if (since == null && before == null) {
+                return StreamingResponses.stream(objectMapper, mediaType,
+                        () -> chatService.streamMessagesByConversationId(uuid), MESSAGE_CSV_COLUMNS);
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            List<ChatMessageDTO> messages = chatService.getMessagesInRange(uuid,
+                    since != null ? UUID.fromString(since) : null,
+                    before != null ? UUID.fromString(before) : null,
+                    limit);
+            return StreamingResponses.stream(objectMapper, mediaType, messages::stream, MESSAGE_CSV_COLUMNS);
         } catch (IllegalArgumentException e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
@@ -111,6 +217,117 @@ public class ChatController {
         }
     }
 
+    @Operation(summary = "Page through the messages of a conversation with a cursor",
+               description = "Walks the conversation partition newest first. The response carries an opaque 'nextCursor' " +
+                           "built from the Cassandra paging state; pass it back as 'cursor' to load older messages.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of messages"),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID, page size or cursor"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/conversations/{conversationId}/messages/page")
+    public ResponseEntity<PageDTO<ChatMessageDTO>> getMessagesPage(
+            @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
+            @PathVariable String conversationId,
+
+            @Parameter(description = "Number of messages per page (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "50") int size,
+
+            @Parameter(description = "Cursor returned by the previous page; omit to start from the newest message")
+            @RequestParam(required = false) String cursor) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            UUID uuid = UUID.fromString(conversationId);
+            PageDTO<ChatMessageDTO> page = chatService.getMessagesPage(uuid, size, cursor);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Operation(summary = "Post a message to a conversation",
+               description = "Generates a timeuuid message id on the server, then writes the message and the conversation's " +
+                           "last_message_time as one logged batch in a single round trip to the cluster; a conversation " +
+                           "that is not cached yet is first looked up, without blocking a request thread. " +
+                           "senderId and messageText are required; messageId, createdAt and isRead are ignored.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Message stored"),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID or missing senderId/messageText"),
+            @ApiResponse(responseCode = "404", description = "Conversation not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/conversations/{conversationId}/messages")
+    public CompletableFuture<ResponseEntity<ChatMessageDTO>> postMessage(
+            @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
+            @PathVariable String conversationId,
+
+            @RequestBody ChatMessageDTO message) {
+
+        try {
+            UUID uuid = UUID.fromString(conversationId);
+            return chatService.postMessage(uuid, message)
+                    .thenApply(posted -> posted == null
+                            ? new ResponseEntity<ChatMessageDTO>(HttpStatus.NOT_FOUND)
+                            : new ResponseEntity<>(posted, HttpStatus.CREATED));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    @Operation(summary = "Subscribe to new messages of a conversation (Server-Sent Events)",
+               description = "Pushes every message posted to the conversation as a 'message' event whose id is the message id. " +
+                           "On reconnect, browsers send the last event id as the Last-Event-ID header and the messages " +
+                           "posted since then are replayed first (oldest first); 'since' does the same for other clients. " +
+                           "Only messages posted through the same API instance are pushed live.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID or message ID"),
+            @ApiResponse(responseCode = "404", description = "Conversation not found")
+    })
+    @GetMapping(value = "/conversations/{conversationId}/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(
+            @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
+            @PathVariable String conversationId,
+
+            @Parameter(description = "Replay messages newer than this message ID before streaming")
+            @RequestParam(required = false) String since,
+
+            @Parameter(description = "Set by EventSource on reconnect; takes precedence over 'since'")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        UUID uuid;
+        UUID after;
+        try {
+            uuid = UUID.fromString(conversationId);
+            String resumeFrom = lastEventId != null && !lastEventId.isEmpty() ? lastEventId : since;
+            after = resumeFrom != null && !resumeFrom.isEmpty() ? UUID.fromString(resumeFrom) : null;
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (chatService.getConversationById(uuid) == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        Runnable unsubscribe = chatService.subscribe(uuid, after, message -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(message.getMessageId().toString())
+                        .name("message")
+                        .data(message, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, emitter::complete);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
+
     @Operation(summary = "Health check", 
                description = "Simple endpoint to verify the chat API is running")
     @ApiResponse(responseCode = "200", description = "API is healthy")
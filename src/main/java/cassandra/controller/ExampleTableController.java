@@ -1,47 +1,137 @@
 package cassandra.controller;
 
 import cassandra.dto.ExampleTableDTO;
+import cassandra.dto.IngestResultDTO;
 import cassandra.service.ExampleTableService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Collection;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @Tag(name = "Example Table API", description = "Operations for managing example table data")
 public class ExampleTableController {
 
     static final String TEXT_FIELD_1_ENDPOINT = "/api/text_field_1/";
+    static final String IMPORT_ENDPOINT = "/api/example_table/import";
+
+    private static final StreamingResponses.CsvColumns<ExampleTableDTO> CSV_COLUMNS = new StreamingResponses.CsvColumns<>(
+            row -> new Object[]{row.getTextField2(), row.getIntField1(), row.getIntField2(), row.getTextField1()},
+            "text_field_2", "int_field_1", "int_field_2", "text_field_1");
 
     private ExampleTableService ExampleTableService;
+    private ObjectMapper objectMapper;
 
     @Autowired
-    public ExampleTableController(ExampleTableService ExampleTableService) {
+    public ExampleTableController(ExampleTableService ExampleTableService, ObjectMapper objectMapper) {
         this.ExampleTableService = ExampleTableService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Get records by text field 1", 
-               description = "Retrieve all records that match the specified text_field_1 value")
+               description = "Retrieve all records that match the specified text_field_1 value. " +
+                           "The partition is streamed page by page as JSON, NDJSON or CSV depending on the Accept header; " +
+                           "the CSV columns match the import format.")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Successfully retrieved list"),
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
+                content = {
+                        @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                array = @ArraySchema(schema = @Schema(implementation = ExampleTableDTO.class))),
+                        @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                schema = @Schema(implementation = ExampleTableDTO.class)),
+                        @Content(mediaType = StreamingResponses.TEXT_CSV_VALUE)
+                }),
         @ApiResponse(responseCode = "404", description = "No records found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    @GetMapping(value = TEXT_FIELD_1_ENDPOINT + "{textField1}")
-    public ResponseEntity<Iterable<ExampleTableDTO>> returnExampleTablesForTextField1(
+    @GetMapping(value = TEXT_FIELD_1_ENDPOINT + "{textField1}",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                            StreamingResponses.TEXT_CSV_VALUE})
+    public ResponseEntity<StreamingResponseBody> returnExampleTablesForTextField1(
             @Parameter(description = "Text field 1 value to search for", required = true, example = "text_field_1")
-            @PathVariable String textField1) {
-        Collection<ExampleTableDTO> ExampleTableDTOs = this.ExampleTableService.findByTextField1(textField1);
-        return new ResponseEntity<>(ExampleTableDTOs, HttpStatus.OK);
+            @PathVariable String textField1,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType mediaType = StreamingResponses.negotiate(accept,
+                MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON, StreamingResponses.TEXT_CSV);
+        return StreamingResponses.stream(objectMapper, mediaType,
+                () -> this.ExampleTableService.streamByTextField1(textField1), CSV_COLUMNS);
+    }
+
+    @Operation(summary = "Bulk-import records from a CSV file upload",
+               description = "Columns: text_field_2, int_field_1, int_field_2, text_field_1. The file is parsed on a parser " +
+                           "thread in chunks and written as async unlogged batches grouped by text_field_1, with a cap on " +
+                           "in-flight requests. Rows that cannot be converted are counted as rejected. Uploads are limited " +
+                           "by spring.servlet.multipart.max-file-size; stream larger files as a text/csv request body.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import finished; see the counters for rejected or failed rows"),
+        @ApiResponse(responseCode = "400", description = "Malformed CSV"),
+        @ApiResponse(responseCode = "429", description = "Too many imports are running, retry later"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = IMPORT_ENDPOINT, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<IngestResultDTO> importCsvFile(
+            @Parameter(description = "CSV file", required = true)
+            @RequestParam("file") MultipartFile file,
+
+            @Parameter(description = "Whether the first line is a header row")
+            @RequestParam(defaultValue = "true") boolean header) throws IOException {
+        try (InputStream csv = file.getInputStream()) {
+            return importCsv(csv, header);
+        }
+    }
+
+    @Operation(summary = "Bulk-import records from a raw CSV request body",
+               description = "Same as the file upload, for clients that stream the CSV as the request body (Content-Type: text/csv), " +
+                           "which avoids spooling the upload to disk first.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import finished; see the counters for rejected or failed rows"),
+        @ApiResponse(responseCode = "400", description = "Malformed CSV"),
+        @ApiResponse(responseCode = "429", description = "Too many imports are running, retry later"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = IMPORT_ENDPOINT, consumes = StreamingResponses.TEXT_CSV_VALUE)
+    public ResponseEntity<IngestResultDTO> importCsvBody(
+            HttpServletRequest request,
+
+            @Parameter(description = "Whether the first line is a header row")
+            @RequestParam(defaultValue = "true") boolean header) throws IOException {
+        return importCsv(request.getInputStream(), header);
+    }
+
+    private ResponseEntity<IngestResultDTO> importCsv(InputStream csv, boolean header) {
+        try {
+            return new ResponseEntity<>(this.ExampleTableService.importCsv(csv, header), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
     }
 
 }
@@ -0,0 +1,138 @@
+package cassandra.controller;
+
+import cassandra.dto.ChatMessageDTO;
+import cassandra.dto.SensorMetricDTO;
+import cassandra.service.ChatService;
+import cassandra.service.SensorMetricService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+/**
+ * Non-blocking variants of the hottest sensor and chat reads.
+ * The handlers return a Flux straight from the reactive repositories, so the request thread is released
+ * as soon as the query is sent. Spring MVC still writes each element with a blocking servlet write, on the
+ * bounded executor of {@link cassandra.config.AsyncWebConfig}, one element at a time, which propagates
+ * backpressure from the client connection to the driver's paging. A slow client therefore holds an executor
+ * thread instead of a request thread; the number of such clients is capped by that executor, not unlimited.
+ */
+@RestController
+@RequestMapping("/api/reactive")
+@Tag(name = "Reactive Reads",
+     description = "Reads of sensor and chat partitions that do not hold a request thread while Cassandra " +
+                   "answers. Rows are written on a bounded async pool; when it is full the request gets 503.")
+public class ReactiveReadController {
+
+    private final SensorMetricService sensorMetricService;
+    private final ChatService chatService;
+
+    @Autowired
+    public ReactiveReadController(SensorMetricService sensorMetricService, ChatService chatService) {
+        this.sensorMetricService = sensorMetricService;
+        this.chatService = chatService;
+    }
+
+    @Operation(summary = "Stream a sensor month partition without blocking",
+               description = "Emits one metric per NDJSON line, newest first. Further driver pages are only requested " +
+                           "as the client reads, so memory stays flat for any partition size.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics streamed"),
+            @ApiResponse(responseCode = "400", description = "Invalid month"),
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Async response pool is full, retry later")
+    })
+    @GetMapping(value = "/sensors/{sensorId}/metrics/month/{year}/{month}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<SensorMetricDTO>> getMetricsByMonth(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Year", required = true, example = "2025")
+            @PathVariable int year,
+
+            @Parameter(description = "Month (1-12)", required = true, example = "11")
+            @PathVariable int month) {
+
+        if (!SensorMetricController.isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(sensorMetricService.fluxMetricsBySensorAndMonth(sensorId, year, month), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Get latest N metrics for a sensor in a month without blocking",
+               description = "Returned as a JSON array, or as NDJSON when requested with 'Accept: application/x-ndjson'.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved latest metrics"),
+            @ApiResponse(responseCode = "400", description = "Invalid month or limit"),
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Async response pool is full, retry later")
+    })
+    @GetMapping(value = "/sensors/{sensorId}/metrics/latest/{year}/{month}",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Flux<SensorMetricDTO>> getLatestMetrics(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Year", required = true, example = "2025")
+            @PathVariable int year,
+
+            @Parameter(description = "Month (1-12)", required = true, example = "11")
+            @PathVariable int month,
+
+            @Parameter(description = "Number of latest metrics to retrieve (1-" + SensorMetricController.MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (limit < 1 || limit > SensorMetricController.MAX_PAGE_SIZE || !SensorMetricController.isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(sensorMetricService.fluxLatestMetrics(sensorId, year, month, limit), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Stream all messages of a conversation without blocking",
+               description = "Emits one message per NDJSON line, newest first, paging through the partition as the client reads.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages streamed"),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID"),
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Async response pool is full, retry later")
+    })
+    @GetMapping(value = "/chat/conversations/{conversationId}/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ChatMessageDTO> getMessages(
+            @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
+            @PathVariable UUID conversationId) {
+
+        return chatService.fluxMessagesByConversationId(conversationId);
+    }
+
+    @Operation(summary = "Get latest N messages from a conversation without blocking",
+               description = "Served from the in-memory message tail when it is cached, otherwise read without blocking.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved messages"),
+            @ApiResponse(responseCode = "400", description = "Invalid conversation ID or limit"),
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Async response pool is full, retry later")
+    })
+    @GetMapping(value = "/chat/conversations/{conversationId}/messages/latest",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Flux<ChatMessageDTO>> getLatestMessages(
+            @Parameter(description = "Conversation ID", required = true, example = "11111111-1111-1111-1111-111111111111")
+            @PathVariable UUID conversationId,
+
+            @Parameter(description = "Number of messages to retrieve (1-" + ChatController.MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (limit < 1 || limit > ChatController.MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(chatService.fluxLatestMessages(conversationId, limit), HttpStatus.OK);
+    }
+}
@@ -1,19 +1,50 @@
 package cassandra.controller;
 
+import cassandra.codec.SensorSeriesWriter;
+import cassandra.dto.IngestResultDTO;
+import cassandra.dto.MultiSensorMetricsDTO;
+import cassandra.dto.PageDTO;
+import cassandra.dto.SensorLatestValueDTO;
+import cassandra.dto.SensorMetricAggregateDTO;
 import cassandra.dto.SensorMetricDTO;
+import cassandra.service.AggregateFunction;
 import cassandra.service.SensorMetricService;
+import cassandra.service.WriteBufferFullException;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/sensors")
@@ -23,25 +54,54 @@ import java.util.List;
                    "This showcases how CQL handles massive amounts of related data in one partition.")
 public class SensorMetricController {
 
+    static final int MAX_PAGE_SIZE = 5000;
+    static final int MAX_FAN_OUT_SENSORS = 500;
+
+    /**
+     * metadata is left out: a map has no flat CSV representation
+     */
+    static final StreamingResponses.CsvColumns<SensorMetricDTO> CSV_COLUMNS = new StreamingResponses.CsvColumns<>(
+            metric -> new Object[]{metric.getSensorId(), metric.getYear(), metric.getMonth(), metric.getDay(),
+                    metric.getHour(), metric.getRecordedAt() != null ? metric.getRecordedAt().toInstant() : null,
+                    metric.getMetricType(), metric.getMetricValue(), metric.getUnit(), metric.getLocation(), metric.getStatus()},
+            "sensor_id", "year", "month", "day", "hour", "recorded_at", "metric_type", "metric_value", "unit", "location", "status");
+
     private final SensorMetricService sensorMetricService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public SensorMetricController(SensorMetricService sensorMetricService) {
+    public SensorMetricController(SensorMetricService sensorMetricService, ObjectMapper objectMapper) {
         this.sensorMetricService = sensorMetricService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Get all metrics for a sensor in a specific month", 
                description = "WIDE COLUMN DEMO: Returns all metrics for a sensor+month partition. " +
                            "In production, this could return MILLIONS of records from ONE partition. " +
                            "In SQL, this would require complex joins or separate tables. " +
-                           "Cassandra stores this as wide rows with clustering columns for efficient access.")
+                           "Cassandra stores this as wide rows with clustering columns for efficient access. " +
+                           "Rows are streamed page by page as a chunked JSON array, or as NDJSON or CSV when " +
+                           "requested with 'Accept: application/x-ndjson' or 'Accept: text/csv', so memory stays flat for any partition size. " +
+                           "'Accept: application/x-sensor-series' selects a columnar binary encoding (sensor ID sent once, " +
+                           "delta-of-delta timestamps, XOR-compressed values, dictionary-encoded strings) that is typically " +
+                           "an order of magnitude smaller than JSON; decode it with cassandra.codec.SensorSeriesReader.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved sensor metrics"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved sensor metrics",
+                    content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = SensorMetricDTO.class))),
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = SensorMetricDTO.class)),
+                            @Content(mediaType = StreamingResponses.TEXT_CSV_VALUE),
+                            @Content(mediaType = SensorSeriesWriter.MEDIA_TYPE_VALUE)
+                    }),
             @ApiResponse(responseCode = "400", description = "Invalid parameters"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    @GetMapping("/{sensorId}/metrics/month/{year}/{month}")
-    public ResponseEntity<List<SensorMetricDTO>> getMetricsByMonth(
+    @GetMapping(value = "/{sensorId}/metrics/month/{year}/{month}",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                            StreamingResponses.TEXT_CSV_VALUE, SensorSeriesWriter.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getMetricsByMonth(
             @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
             @PathVariable String sensorId,
             
@@ -49,14 +109,62 @@ public class SensorMetricController {
             @PathVariable int year,
             
             @Parameter(description = "Month (1-12)", required = true, example = "11")
-            @PathVariable int month) {
-        
+            @PathVariable int month,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        if (!isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return streamMonth(sensorId, year, month, accept);
+    }
+
+    @Operation(summary = "Get metrics for a time range, across month partitions",
+               description = "Returns the metrics with from <= recordedAt < to, newest first, no matter how many " +
+                           "(sensor_id, year, month) partitions the range spans: the covering partitions and their " +
+                           "day/hour clustering bounds are worked out on the server, read a few in parallel, and " +
+                           "streamed in order until 'limit' metrics have been sent. JSON, NDJSON, CSV or the binary sensor series as with the month endpoint.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved sensor metrics",
+                    content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = SensorMetricDTO.class))),
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = SensorMetricDTO.class)),
+                            @Content(mediaType = StreamingResponses.TEXT_CSV_VALUE),
+                            @Content(mediaType = SensorSeriesWriter.MEDIA_TYPE_VALUE)
+                    }),
+            @ApiResponse(responseCode = "400", description = "from is not before to, the range is longer than " +
+                    "sensor.range.max-span-days, or invalid limit"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/{sensorId}/metrics",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                            StreamingResponses.TEXT_CSV_VALUE, SensorSeriesWriter.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getMetricsByTimeRange(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Range start (inclusive, ISO-8601)", required = true, example = "2025-10-30T00:00:00Z")
+            @RequestParam Instant from,
+
+            @Parameter(description = "Range end (exclusive, ISO-8601), defaults to now", example = "2025-11-02T00:00:00Z")
+            @RequestParam(required = false) Instant to,
+
+            @Parameter(description = "Maximum number of metrics to return")
+            @RequestParam(defaultValue = "1000") int limit,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        Instant end = to != null ? to : Instant.now();
+        Stream<SensorMetricDTO> metrics;
         try {
-            List<SensorMetricDTO> metrics = sensorMetricService.getMetricsBySensorAndMonth(sensorId, year, month);
-            return new ResponseEntity<>(metrics, HttpStatus.OK);
-        } catch (Exception e) {
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            // checks the range up front; nothing is queried until the response body is written
+            metrics = sensorMetricService.streamMetricsBySensorAndRange(sensorId, from, end, limit);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        return streamSeries(sensorId, accept, () -> metrics);
     }
 
     @Operation(summary = "Get metrics for a specific day with limit", 
@@ -85,6 +193,9 @@ public class SensorMetricController {
             @Parameter(description = "Maximum number of metrics to retrieve")
             @RequestParam(defaultValue = "100") int limit) {
         
+        if (!isValidDay(year, month, day)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
         try {
             List<SensorMetricDTO> metrics = sensorMetricService.getMetricsBySensorAndDay(sensorId, year, month, day, limit);
             return new ResponseEntity<>(metrics, HttpStatus.OK);
@@ -93,6 +204,85 @@ public class SensorMetricController {
         }
     }
 
+    @Operation(summary = "Page through a sensor+month partition with a cursor",
+               description = "Walks a (possibly multi-million row) partition newest first, one page at a time. " +
+                           "The response carries an opaque 'nextCursor' built from the Cassandra paging state; " +
+                           "pass it back as 'cursor' to get the next page. Every page costs the same, no matter how deep.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of sensor metrics"),
+            @ApiResponse(responseCode = "400", description = "Invalid date, page size or cursor"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/{sensorId}/metrics/page/{year}/{month}")
+    public ResponseEntity<PageDTO<SensorMetricDTO>> getMetricsPageByMonth(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Year", required = true, example = "2025")
+            @PathVariable int year,
+
+            @Parameter(description = "Month (1-12)", required = true, example = "11")
+            @PathVariable int month,
+
+            @Parameter(description = "Number of metrics per page (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "100") int size,
+
+            @Parameter(description = "Cursor returned by the previous page; omit to start from the newest metric")
+            @RequestParam(required = false) String cursor) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE || !isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            PageDTO<SensorMetricDTO> page = sensorMetricService.getMetricsPageBySensorAndMonth(sensorId, year, month, size, cursor);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @Operation(summary = "Page through one day of a sensor partition with a cursor",
+               description = "Same as the month cursor endpoint, restricted to the 'day' clustering column.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of sensor metrics"),
+            @ApiResponse(responseCode = "400", description = "Invalid date, page size or cursor"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/{sensorId}/metrics/day/{year}/{month}/{day}/page")
+    public ResponseEntity<PageDTO<SensorMetricDTO>> getMetricsPageByDay(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Year", required = true, example = "2025")
+            @PathVariable int year,
+
+            @Parameter(description = "Month (1-12)", required = true, example = "11")
+            @PathVariable int month,
+
+            @Parameter(description = "Day (1-31)", required = true, example = "13")
+            @PathVariable int day,
+
+            @Parameter(description = "Number of metrics per page (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "100") int size,
+
+            @Parameter(description = "Cursor returned by the previous page; omit to start from the newest metric")
+            @RequestParam(required = false) String cursor) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE || !isValidDay(year, month, day)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            PageDTO<SensorMetricDTO> page = sensorMetricService.getMetricsPageBySensorAndDay(sensorId, year, month, day, size, cursor);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @Operation(summary = "Get latest N metrics for a sensor in a month", 
                description = "Leverages DESCENDING clustering order to efficiently retrieve recent metrics. " +
                            "In Cassandra, the newest data is at the 'top' of the partition, enabling O(1) access. " +
@@ -116,6 +306,9 @@ public class SensorMetricController {
             @Parameter(description = "Number of latest metrics to retrieve")
             @RequestParam(defaultValue = "50") int limit) {
         
+        if (!isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
         try {
             List<SensorMetricDTO> metrics = sensorMetricService.getLatestMetrics(sensorId, year, month, limit);
             return new ResponseEntity<>(metrics, HttpStatus.OK);
@@ -124,6 +317,70 @@ public class SensorMetricController {
         }
     }
 
+    @Operation(summary = "Get latest N metrics for many sensors at once",
+               description = "Takes a JSON array of sensor IDs and reads each sensor's month partition concurrently " +
+                           "with async driver requests, capped per request and bounded by a deadline, so the response " +
+                           "takes as long as the slowest partition rather than the sum of all of them. Sensors whose " +
+                           "read failed or missed the deadline are listed under 'errors'; the others are still returned.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics of every sensor that could be read in time"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long sensor list, or invalid month or limit"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/metrics/latest", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<MultiSensorMetricsDTO>> getLatestMetricsForSensors(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Sensor IDs (1-" + MAX_FAN_OUT_SENSORS + ")")
+            @RequestBody List<String> sensorIds,
+
+            @Parameter(description = "Year, defaults to the current year", example = "2025")
+            @RequestParam(required = false) Integer year,
+
+            @Parameter(description = "Month (1-12), defaults to the current month", example = "11")
+            @RequestParam(required = false) Integer month,
+
+            @Parameter(description = "Number of latest metrics per sensor (1-" + MAX_PAGE_SIZE + ")")
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (sensorIds == null || sensorIds.isEmpty() || sensorIds.size() > MAX_FAN_OUT_SENSORS
+                || sensorIds.contains(null) || limit < 1 || limit > MAX_PAGE_SIZE || !isValidMonth(year, month)) {
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        LocalDate now = LocalDate.now();
+        return sensorMetricService.getLatestMetrics(sensorIds,
+                        year != null ? year : now.getYear(),
+                        month != null ? month : now.getMonthValue(),
+                        limit)
+                .map(result -> new ResponseEntity<>(result, HttpStatus.OK));
+    }
+
+    @Operation(summary = "Get the current value of every metric of many sensors",
+               description = "Served from an in-memory index of the most recent value per sensor and metric type, " +
+                           "kept up to date by the write path and reloaded periodically, so a fleet-wide dashboard costs " +
+                           "no Cassandra reads. Without 'ids' every sensor in the index is returned, at most one refresh " +
+                           "interval behind writes made through other instances; requested sensors that are unknown or " +
+                           "stale are read from Cassandra first, for at most a short timeout, and ids without any data are " +
+                           "not looked up again for a while.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current values of the known sensors"),
+            @ApiResponse(responseCode = "400", description = "Too many sensor IDs"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/latest")
+    public ResponseEntity<List<SensorLatestValueDTO>> getLatestValues(
+            @Parameter(description = "Comma-separated sensor IDs (at most " + MAX_FAN_OUT_SENSORS + "), all sensors when omitted",
+                       example = "TEMP-001,TEMP-002")
+            @RequestParam(required = false) List<String> ids) {
+
+        if (ids != null && ids.size() > MAX_FAN_OUT_SENSORS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(sensorMetricService.getLatestValues(ids), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @Operation(summary = "Get metrics for a specific hour range on a day", 
                description = "Demonstrates range queries on clustering columns. " +
                            "Cassandra can efficiently filter by hour ranges within a partition. " +
@@ -154,7 +411,8 @@ public class SensorMetricController {
             @RequestParam int hourEnd) {
         
         try {
-            if (hourStart < 0 || hourStart > 23 || hourEnd < 0 || hourEnd > 23 || hourStart > hourEnd) {
+            if (hourStart < 0 || hourStart > 23 || hourEnd < 0 || hourEnd > 23 || hourStart > hourEnd
+                    || !isValidDay(year, month, day)) {
                 return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
             }
             
@@ -166,26 +424,177 @@ public class SensorMetricController {
     }
 
     @Operation(summary = "Get current month metrics (convenience endpoint)", 
-               description = "Returns all metrics for the current month. Useful for real-time monitoring dashboards.")
+               description = "Returns all metrics for the current month. Useful for real-time monitoring dashboards. " +
+                           "Streamed the same way as the month endpoint.")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved current month metrics")
-    @GetMapping("/{sensorId}/metrics/current")
-    public ResponseEntity<List<SensorMetricDTO>> getCurrentMonthMetrics(
+    @GetMapping(value = "/{sensorId}/metrics/current",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+                            StreamingResponses.TEXT_CSV_VALUE, SensorSeriesWriter.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getCurrentMonthMetrics(
             @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
-            @PathVariable String sensorId) {
+            @PathVariable String sensorId,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
+        LocalDate now = LocalDate.now();
+        return streamMonth(sensorId, now.getYear(), now.getMonthValue(), accept);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamMonth(String sensorId, int year, int month, String accept) {
+        return streamSeries(sensorId, accept,
+                () -> sensorMetricService.streamMetricsBySensorAndMonth(sensorId, year, month));
+    }
+
+    /**
+     * JSON, NDJSON, CSV or the columnar sensor series format, as negotiated
+     */
+    private ResponseEntity<StreamingResponseBody> streamSeries(String sensorId, String accept,
+                                                               Supplier<Stream<SensorMetricDTO>> metrics) {
+        MediaType mediaType = StreamingResponses.negotiate(accept, MediaType.APPLICATION_JSON,
+                MediaType.APPLICATION_NDJSON, StreamingResponses.TEXT_CSV, SensorSeriesWriter.MEDIA_TYPE);
+        if (!SensorSeriesWriter.MEDIA_TYPE.equals(mediaType)) {
+            return StreamingResponses.stream(objectMapper, mediaType, metrics, CSV_COLUMNS);
+        }
+        StreamingResponseBody body = outputStream -> {
+            SensorSeriesWriter writer = new SensorSeriesWriter(outputStream, sensorId);
+            try (Stream<SensorMetricDTO> stream = metrics.get()) {
+                Iterator<SensorMetricDTO> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.write(iterator.next());
+                }
+            }
+            writer.finish();
+        };
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    @Operation(summary = "Downsample a sensor month or time range into time buckets",
+               description = "Computes avg/min/max/count/sum per bucket on the server and returns only the bucketed " +
+                           "series (newest bucket first). Buckets are aligned to the epoch in UTC, e.g. bucket=1h starts " +
+                           "every bucket on the hour. Whole-hour and whole-day buckets are served from the hourly/daily " +
+                           "rollup tables for the months they cover, trailing writes by about a second; other widths, " +
+                           "and months not rolled up yet, stream over the raw sensor+month partitions. " +
+                           "Pass from/to to aggregate a range spanning several months instead of a single month; " +
+                           "ranges longer than sensor.range.max-span-days are rejected.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully aggregated sensor metrics"),
+            @ApiResponse(responseCode = "400", description = "Invalid month, bucket width or aggregate function, or a " +
+                    "range that is empty or longer than the maximum span"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/{sensorId}/metrics/aggregate")
+    public ResponseEntity<List<SensorMetricAggregateDTO>> getAggregatedMetrics(
+            @Parameter(description = "Sensor ID", required = true, example = "TEMP-001")
+            @PathVariable String sensorId,
+
+            @Parameter(description = "Year, defaults to the current year", example = "2025")
+            @RequestParam(required = false) Integer year,
+
+            @Parameter(description = "Month (1-12), defaults to the current month", example = "11")
+            @RequestParam(required = false) Integer month,
+
+            @Parameter(description = "Bucket width: a number followed by s, m, h or d, or an ISO-8601 duration", example = "1h")
+            @RequestParam(defaultValue = "1h") String bucket,
+
+            @Parameter(description = "Comma separated aggregates: avg, min, max, count, sum", example = "avg,min,max,count")
+            @RequestParam(defaultValue = "avg,min,max,count") String fn,
+
+            @Parameter(description = "Only aggregate metrics of this type", example = "temperature")
+            @RequestParam(required = false) String metricType,
+
+            @Parameter(description = "Range start (inclusive, ISO-8601); takes precedence over year/month", example = "2025-01-01T00:00:00Z")
+            @RequestParam(required = false) Instant from,
+
+            @Parameter(description = "Range end (exclusive, ISO-8601), defaults to now", example = "2026-01-01T00:00:00Z")
+            @RequestParam(required = false) Instant to) {
+
+        if (from == null && !isValidMonth(year, month)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        LocalDate now = LocalDate.now();
         try {
-            LocalDate now = LocalDate.now();
-            List<SensorMetricDTO> metrics = sensorMetricService.getMetricsBySensorAndMonth(
-                sensorId, 
-                now.getYear(), 
-                now.getMonthValue()
-            );
-            return new ResponseEntity<>(metrics, HttpStatus.OK);
+            List<SensorMetricAggregateDTO> buckets = from != null
+                    ? sensorMetricService.aggregateMetrics(
+                            sensorId, from, to != null ? to : Instant.now(), metricType,
+                            parseBucket(bucket), AggregateFunction.parse(fn))
+                    : sensorMetricService.aggregateMetrics(
+                            sensorId,
+                            year != null ? year : now.getYear(),
+                            month != null ? month : now.getMonthValue(),
+                            metricType,
+                            parseBucket(bucket),
+                            AggregateFunction.parse(fn));
+            return new ResponseEntity<>(buckets, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    @Operation(summary = "Bulk-ingest sensor metrics",
+               description = "Accepts a JSON array or NDJSON stream of metrics. The body is parsed incrementally, " +
+                           "rows are grouped by their (sensor_id, year, month) partition and written as unlogged " +
+                           "batches through prepared statements on the async driver API, with a cap on in-flight requests. " +
+                           "year/month/day/hour are derived from recordedAt (UTC) when omitted; rows where they disagree " +
+                           "with recordedAt, whose recordedAt is more than sensor.ingest.max-future-ms ahead of the server clock, " +
+                           "or that cannot be mapped to a metric, are rejected and the rest are still written.")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = SensorMetricDTO.class))),
+            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = SensorMetricDTO.class))
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics ingested; see the counters for rejected or failed rows"),
+            @ApiResponse(responseCode = "400", description = "Malformed request body. Rows before the malformed part " +
+                    "are written and counted in the result, whose 'error' tells where reading stopped"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/metrics/batch",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<IngestResultDTO> ingestMetrics(HttpServletRequest request) throws IOException {
+        try (MappingIterator<SensorMetricDTO> metrics =
+                     objectMapper.readerFor(SensorMetricDTO.class).readValues(request.getInputStream())) {
+            ReadableRows rows = new ReadableRows(metrics);
+            IngestResultDTO result = sensorMetricService.ingestMetrics(rows);
+            if (rows.getError() != null) {
+                result.setError(rows.getError());
+                return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (JsonProcessingException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Operation(summary = "Report sensor metrics through the write-behind buffer",
+               description = "Meant for sensors reporting every few seconds. Points are coalesced per " +
+                           "(sensor_id, year, month) partition in memory and written as one batch when the partition " +
+                           "reaches the flush size or its oldest point reaches the maximum age. " +
+                           "All points of a request are accepted or none are.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Metrics accepted for writing"),
+            @ApiResponse(responseCode = "400", description = "A metric is missing its sensorId or recordedAt, or its " +
+                    "year/month/day/hour disagree with recordedAt, or its recordedAt is in the future, or the request has " +
+                    "more points than the buffer can hold"),
+            @ApiResponse(responseCode = "429", description = "Write buffer is full, retry later"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/metrics", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> reportMetrics(@RequestBody List<SensorMetricDTO> metrics) {
+        try {
+            sensorMetricService.bufferMetrics(metrics);
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (WriteBufferFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+
     @Operation(summary = "Health check", 
                description = "Simple endpoint to verify the sensor metrics API is running")
     @ApiResponse(responseCode = "200", description = "API is healthy")
@@ -193,4 +602,106 @@ public class SensorMetricController {
     public ResponseEntity<String> healthCheck() {
         return new ResponseEntity<>("Sensor Metrics API is running! Wide column power activated! 🚀", HttpStatus.OK);
     }
+
+    /**
+     * Checked before the service builds a YearMonth from path or query parameters, which would throw a
+     * DateTimeException, answered with 500 or in the middle of a streamed response
+     *
+     * @param year  null when defaulted
+     * @param month null when defaulted
+     */
+    static boolean isValidMonth(Integer year, Integer month) {
+        return (year == null || (year >= Year.MIN_VALUE && year <= Year.MAX_VALUE))
+                && (month == null || (month >= 1 && month <= 12));
+    }
+
+    static boolean isValidDay(int year, int month, int day) {
+        return isValidMonth(year, month) && day >= 1 && day <= YearMonth.of(year, month).lengthOfMonth();
+    }
+
+    /**
+     * Accepts shorthand such as 30s, 15m, 1h or 1d as well as ISO-8601 durations (PT1H)
+     */
+    static Duration parseBucket(String bucket) {
+        String value = bucket.trim().toUpperCase(Locale.ROOT);
+        Duration duration;
+        try {
+            if (value.startsWith("P")) {
+                duration = Duration.parse(value);
+            } else if (value.endsWith("D")) {
+                duration = Duration.parse("P" + value);
+            } else {
+                duration = Duration.parse("PT" + value);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid bucket width: " + bucket, e);
+        }
+        if (duration.getSeconds() < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least one second");
+        }
+        return duration;
+    }
+
+    /**
+     * The rows of a JSON array or NDJSON body as they are parsed. A value that is well-formed JSON but cannot be
+     * mapped to a metric (e.g. a malformed timestamp) is handed on as null, which the service counts as rejected,
+     * and reading goes on with the next value. A syntax error ends the rows, as nothing after it can be trusted,
+     * and is kept for the response; the value it was found in is handed on as null as well.
+     */
+    static final class ReadableRows implements Iterator<SensorMetricDTO> {
+
+        private final MappingIterator<SensorMetricDTO> metrics;
+        private long read;
+        private String error;
+
+        ReadableRows(MappingIterator<SensorMetricDTO> metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (error != null) {
+                return false;
+            }
+            try {
+                return metrics.hasNext();
+            } catch (RuntimeException e) {
+                stop(e);
+                return false;
+            }
+        }
+
+        @Override
+        public SensorMetricDTO next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                SensorMetricDTO metric = metrics.next();
+                read++;
+                return metric;
+            } catch (RuntimeJsonMappingException e) {
+                read++;
+                return null;
+            } catch (RuntimeException e) {
+                // MappingIterator rethrows syntax errors found mid-stream wrapped in a plain RuntimeException
+                stop(e);
+                return null;
+            }
+        }
+
+        String getError() {
+            return error;
+        }
+
+        private void stop(RuntimeException e) {
+            if (!(e.getCause() instanceof JsonProcessingException)) {
+                throw e;
+            }
+            JsonLocation location = ((JsonProcessingException) e.getCause()).getLocation();
+            error = "Malformed input after " + read + " rows" + (location != null
+                    ? " at line " + location.getLineNr() + ", column " + location.getColumnNr() : "")
+                    + "; the rest of the body was not read";
+        }
+    }
 }
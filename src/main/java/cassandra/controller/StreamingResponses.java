@@ -0,0 +1,156 @@
+package cassandra.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Helpers for writing partition reads straight to the servlet output stream.
+ * The row stream is only opened once the response body is being written, so rows
+ * are converted and flushed page by page instead of being collected into a list first.
+ */
+final class StreamingResponses {
+
+    static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private StreamingResponses() {
+    }
+
+    /**
+     * Picks the first supported media type accepted by the client, in the client's order of preference.
+     * Wildcards resolve to the first supported type, which is the endpoint's default representation
+     */
+    static MediaType negotiate(String acceptHeader, MediaType... supported) {
+        if (acceptHeader == null || acceptHeader.isEmpty()) {
+            return supported[0];
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(acceptHeader);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType acceptedType : accepted) {
+            for (MediaType supportedType : supported) {
+                if (acceptedType.includes(supportedType)) {
+                    return supportedType;
+                }
+            }
+        }
+        return supported[0];
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper,
+                                                           MediaType mediaType,
+                                                           Supplier<Stream<T>> rows) {
+        StreamingResponseBody body = MediaType.APPLICATION_NDJSON.equals(mediaType)
+                ? ndjson(objectMapper, rows)
+                : jsonArray(objectMapper, rows);
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    /**
+     * Same as {@link #stream(ObjectMapper, MediaType, Supplier)}, but also supports text/csv with the given columns
+     */
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper,
+                                                           MediaType mediaType,
+                                                           Supplier<Stream<T>> rows,
+                                                           CsvColumns<T> csvColumns) {
+        if (TEXT_CSV.isCompatibleWith(mediaType)) {
+            return ResponseEntity.ok().contentType(TEXT_CSV).body(csv(rows, csvColumns));
+        }
+        return stream(objectMapper, mediaType, rows);
+    }
+
+    /**
+     * One JSON document per line (application/x-ndjson)
+     */
+    static <T> StreamingResponseBody ndjson(ObjectMapper objectMapper, Supplier<Stream<T>> rows) {
+        ObjectWriter writer = rowWriter(objectMapper);
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(null);
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+            generator.flush();
+        };
+    }
+
+    /**
+     * A regular JSON array written element by element, so the payload is chunked instead of buffered
+     */
+    static <T> StreamingResponseBody jsonArray(ObjectMapper objectMapper, Supplier<Stream<T>> rows) {
+        ObjectWriter writer = rowWriter(objectMapper);
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                }
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+    }
+
+    /**
+     * A header line followed by one CSV record per row, written with the univocity writer straight to the
+     * output stream; values are written with their toString() and null as an empty field
+     */
+    static <T> StreamingResponseBody csv(Supplier<Stream<T>> rows, CsvColumns<T> columns) {
+        return outputStream -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 65536);
+            CsvWriter writer = new CsvWriter(out, new CsvWriterSettings());
+            writer.writeHeaders(columns.headers);
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeRow(columns.values.apply(iterator.next()));
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    /**
+     * Rows go through the generator's own buffer; flushing after every row would turn
+     * each one into a separate chunk on the wire
+     */
+    private static ObjectWriter rowWriter(ObjectMapper objectMapper) {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * The CSV header and how to turn a row into the values of one record, in header order
+     */
+    static final class CsvColumns<T> {
+
+        private final String[] headers;
+        private final Function<T, Object[]> values;
+
+        CsvColumns(Function<T, Object[]> values, String... headers) {
+            this.headers = headers;
+            this.values = values;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cassandra.dto;
 
+import cassandra.entity.ChatMessage;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 import java.util.Date;
@@ -32,6 +33,18 @@ public class ChatMessageDTO {
         this.isRead = isRead;
     }
 
+    public static ChatMessageDTO instanceOf(ChatMessage message) {
+        return new ChatMessageDTO(
+                message.getConversationId(),
+                message.getMessageId(),
+                message.getSenderId(),
+                message.getSenderName(),
+                message.getMessageText(),
+                message.getCreatedAt(),
+                message.getIsRead()
+        );
+    }
+
     public UUID getConversationId() {
         return conversationId;
     }
@@ -1,5 +1,7 @@
 package cassandra.dto;
 
+import cassandra.entity.Conversation;
+
 import java.util.Date;
 import java.util.Set;
 import java.util.UUID;
@@ -25,6 +27,16 @@ public class ConversationDTO {
         this.lastMessageTime = lastMessageTime;
     }
 
+    public static ConversationDTO instanceOf(Conversation conversation) {
+        return new ConversationDTO(
+                conversation.getConversationId(),
+                conversation.getConversationName(),
+                conversation.getCreatedAt(),
+                conversation.getParticipants(),
+                conversation.getLastMessageTime()
+        );
+    }
+
     public UUID getConversationId() {
         return conversationId;
     }
@@ -9,6 +9,7 @@ import java.util.Objects;
 @Schema(description = "Example Table Data Transfer Object")
 public class ExampleTableDTO {
 
+    @Parsed(index = 3)
     @Schema(description = "Primary key text field 1", example = "text_field_1", required = true)
     private String textField1;
     
@@ -0,0 +1,86 @@
+package cassandra.dto;
+
+/**
+ * Outcome of a bulk write request
+ */
+public class IngestResultDTO {
+
+    private long received;
+    private long written;
+    private long rejected;
+    private long failed;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private String error;
+
+    public IngestResultDTO() {
+    }
+
+    public IngestResultDTO(long received, long written, long rejected, long failed, long elapsedMillis) {
+        this.received = received;
+        this.written = written;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis > 0 ? written * 1000.0 / elapsedMillis : written;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public void setWritten(long written) {
+        this.written = written;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * Why the request body was only read in part, if it was; the counters cover the rows read before it
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
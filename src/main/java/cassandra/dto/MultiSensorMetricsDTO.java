@@ -0,0 +1,48 @@
+package cassandra.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a read across several sensors. Sensors whose read failed or missed the deadline are
+ * listed in errors instead of metrics, so one slow partition does not fail the whole request
+ */
+public class MultiSensorMetricsDTO {
+
+    private Map<String, List<SensorMetricDTO>> metrics;
+    private Map<String, String> errors;
+    private long elapsedMillis;
+
+    public MultiSensorMetricsDTO() {
+    }
+
+    public MultiSensorMetricsDTO(Map<String, List<SensorMetricDTO>> metrics, Map<String, String> errors, long elapsedMillis) {
+        this.metrics = metrics;
+        this.errors = errors;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public Map<String, List<SensorMetricDTO>> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Map<String, List<SensorMetricDTO>> metrics) {
+        this.metrics = metrics;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -0,0 +1,37 @@
+package cassandra.dto;
+
+import java.util.List;
+
+/**
+ * One page of a partition walk. {@code nextCursor} is an opaque token to pass back
+ * as {@code cursor} to fetch the following page, or null when the partition is exhausted.
+ */
+public class PageDTO<T> {
+
+    private List<T> items;
+    private String nextCursor;
+
+    public PageDTO() {
+    }
+
+    public PageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,86 @@
+package cassandra.dto;
+
+/**
+ * Estimated size of one partition, extrapolated from its newest rows. Exact when its rows were all
+ * sampled or counted; the size is then still extrapolated from the sampled rows. A count that stopped
+ * at its cap is not exact, and its rows and size are lower bounds.
+ */
+public class PartitionSizeDTO {
+
+    private String table;
+    private String partition;
+    private long estimatedRows;
+    private long estimatedBytes;
+    private int sampledRows;
+    private boolean exact;
+    private boolean overThreshold;
+
+    public PartitionSizeDTO() {
+    }
+
+    public PartitionSizeDTO(String table, String partition, long estimatedRows, long estimatedBytes, int sampledRows, boolean exact, boolean overThreshold) {
+        this.table = table;
+        this.partition = partition;
+        this.estimatedRows = estimatedRows;
+        this.estimatedBytes = estimatedBytes;
+        this.sampledRows = sampledRows;
+        this.exact = exact;
+        this.overThreshold = overThreshold;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getPartition() {
+        return partition;
+    }
+
+    public void setPartition(String partition) {
+        this.partition = partition;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public void setEstimatedBytes(long estimatedBytes) {
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    public void setSampledRows(int sampledRows) {
+        this.sampledRows = sampledRows;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    public boolean isOverThreshold() {
+        return overThreshold;
+    }
+
+    public void setOverThreshold(boolean overThreshold) {
+        this.overThreshold = overThreshold;
+    }
+}
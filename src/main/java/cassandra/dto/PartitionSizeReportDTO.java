@@ -0,0 +1,72 @@
+package cassandra.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The last round of the partition size sampler: the busiest partitions, largest first,
+ * flagged when they are over the row or byte alert threshold
+ */
+public class PartitionSizeReportDTO {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "UTC")
+    private Date sampledAt;
+
+    private long rowThreshold;
+    private long byteThreshold;
+    private List<PartitionSizeDTO> partitions;
+    private List<TableSizeDTO> tables;
+
+    public PartitionSizeReportDTO() {
+    }
+
+    public PartitionSizeReportDTO(Date sampledAt, long rowThreshold, long byteThreshold, List<PartitionSizeDTO> partitions, List<TableSizeDTO> tables) {
+        this.sampledAt = sampledAt;
+        this.rowThreshold = rowThreshold;
+        this.byteThreshold = byteThreshold;
+        this.partitions = partitions;
+        this.tables = tables;
+    }
+
+    public Date getSampledAt() {
+        return sampledAt;
+    }
+
+    public void setSampledAt(Date sampledAt) {
+        this.sampledAt = sampledAt;
+    }
+
+    public long getRowThreshold() {
+        return rowThreshold;
+    }
+
+    public void setRowThreshold(long rowThreshold) {
+        this.rowThreshold = rowThreshold;
+    }
+
+    public long getByteThreshold() {
+        return byteThreshold;
+    }
+
+    public void setByteThreshold(long byteThreshold) {
+        this.byteThreshold = byteThreshold;
+    }
+
+    public List<PartitionSizeDTO> getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(List<PartitionSizeDTO> partitions) {
+        this.partitions = partitions;
+    }
+
+    public List<TableSizeDTO> getTables() {
+        return tables;
+    }
+
+    public void setTables(List<TableSizeDTO> tables) {
+        this.tables = tables;
+    }
+}
@@ -0,0 +1,60 @@
+package cassandra.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+
+/**
+ * The most recent value of one metric type of a sensor
+ */
+public class SensorLatestValueDTO {
+
+    private String sensorId;
+    private String metricType;
+    private double value;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "UTC")
+    private Date recordedAt;
+
+    public SensorLatestValueDTO() {
+    }
+
+    public SensorLatestValueDTO(String sensorId, String metricType, double value, Date recordedAt) {
+        this.sensorId = sensorId;
+        this.metricType = metricType;
+        this.value = value;
+        this.recordedAt = recordedAt;
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(String sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    public String getMetricType() {
+        return metricType;
+    }
+
+    public void setMetricType(String metricType) {
+        this.metricType = metricType;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    public Date getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(Date recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+}
@@ -0,0 +1,82 @@
+package cassandra.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Date;
+
+/**
+ * Aggregated values of one time bucket. Only the requested aggregates are set
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SensorMetricAggregateDTO {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "UTC")
+    private Date bucketStart;
+
+    private Long count;
+    private Double avg;
+    private Double min;
+    private Double max;
+    private Double sum;
+
+    public SensorMetricAggregateDTO() {
+    }
+
+    public SensorMetricAggregateDTO(Date bucketStart, Long count, Double avg, Double min, Double max, Double sum) {
+        this.bucketStart = bucketStart;
+        this.count = count;
+        this.avg = avg;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public Date getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(Date bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Double getAvg() {
+        return avg;
+    }
+
+    public void setAvg(Double avg) {
+        this.avg = avg;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public void setMin(Double min) {
+        this.min = min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public void setMax(Double max) {
+        this.max = max;
+    }
+
+    public Double getSum() {
+        return sum;
+    }
+
+    public void setSum(Double sum) {
+        this.sum = sum;
+    }
+}
@@ -1,5 +1,6 @@
 package cassandra.dto;
 
+import cassandra.entity.SensorMetric;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 import java.util.Date;
@@ -43,6 +44,23 @@ public class SensorMetricDTO {
         this.metadata = metadata;
     }
 
+    public static SensorMetricDTO instanceOf(SensorMetric metric) {
+        return new SensorMetricDTO(
+                metric.getSensorId(),
+                metric.getYear(),
+                metric.getMonth(),
+                metric.getDay(),
+                metric.getHour(),
+                metric.getRecordedAt(),
+                metric.getMetricType(),
+                metric.getMetricValue(),
+                metric.getUnit(),
+                metric.getLocation(),
+                metric.getStatus(),
+                metric.getMetadata()
+        );
+    }
+
     public String getSensorId() {
         return sensorId;
     }
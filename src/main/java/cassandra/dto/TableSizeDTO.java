@@ -0,0 +1,44 @@
+package cassandra.dto;
+
+/**
+ * Partition count and mean partition size of a table, from system.size_estimates
+ */
+public class TableSizeDTO {
+
+    private String table;
+    private long estimatedPartitions;
+    private long meanPartitionBytes;
+
+    public TableSizeDTO() {
+    }
+
+    public TableSizeDTO(String table, long estimatedPartitions, long meanPartitionBytes) {
+        this.table = table;
+        this.estimatedPartitions = estimatedPartitions;
+        this.meanPartitionBytes = meanPartitionBytes;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public long getEstimatedPartitions() {
+        return estimatedPartitions;
+    }
+
+    public void setEstimatedPartitions(long estimatedPartitions) {
+        this.estimatedPartitions = estimatedPartitions;
+    }
+
+    public long getMeanPartitionBytes() {
+        return meanPartitionBytes;
+    }
+
+    public void setMeanPartitionBytes(long meanPartitionBytes) {
+        this.meanPartitionBytes = meanPartitionBytes;
+    }
+}
@@ -1,5 +1,6 @@
 package cassandra.entity;
 
+import cassandra.dto.SensorMetricDTO;
 import org.springframework.data.cassandra.core.cql.Ordering;
 import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
 import org.springframework.data.cassandra.core.mapping.Column;
@@ -16,11 +17,15 @@ import java.util.Map;
  * can contain MILLIONS of time-series metrics.
  * 
  * Wide Column Design Explanation:
- * - Partition Key: (sensor_id, year, month) - Groups related data together
+ * - Partition Key: (sensor_id, year, month, bucket) - Groups related data together
  * - Clustering Columns: (day, hour, recorded_at) - Sorts data within partition
  * - Each sensor+month can have unlimited metrics (wide rows)
  * - In SQL, this would require multiple tables or billions of rows
  * - In Cassandra, this is ONE partition with efficient time-series access
+ *
+ * bucket splits the month of high-frequency sensors into one partition per day or hour
+ * (see {@link cassandra.repository.SensorMetricBucketRepository.Granularity}); it is 0 for sensors
+ * partitioned per month. The write path fills it in.
  */
 @Table("sensor_metrics")
 public class SensorMetric implements Serializable {
@@ -34,13 +39,16 @@ public class SensorMetric implements Serializable {
     @PrimaryKeyColumn(name = "month", ordinal = 2, type = PrimaryKeyType.PARTITIONED)
     private Integer month;
 
-    @PrimaryKeyColumn(name = "day", ordinal = 3, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+    @PrimaryKeyColumn(name = "bucket", ordinal = 3, type = PrimaryKeyType.PARTITIONED)
+    private Integer bucket;
+
+    @PrimaryKeyColumn(name = "day", ordinal = 4, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
     private Integer day;
 
-    @PrimaryKeyColumn(name = "hour", ordinal = 4, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+    @PrimaryKeyColumn(name = "hour", ordinal = 5, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
     private Integer hour;
 
-    @PrimaryKeyColumn(name = "recorded_at", ordinal = 5, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+    @PrimaryKeyColumn(name = "recorded_at", ordinal = 6, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
     private Date recordedAt;
 
     @Column("metric_type")
@@ -81,6 +89,22 @@ public class SensorMetric implements Serializable {
         this.metadata = metadata;
     }
 
+    public static SensorMetric instanceOf(SensorMetricDTO dto) {
+        return new SensorMetric(
+                dto.getSensorId(),
+                dto.getYear(),
+                dto.getMonth(),
+                dto.getDay(),
+                dto.getHour(),
+                dto.getRecordedAt(),
+                dto.getMetricType(),
+                dto.getMetricValue(),
+                dto.getUnit(),
+                dto.getLocation(),
+                dto.getStatus(),
+                dto.getMetadata());
+    }
+
     public String getSensorId() {
         return sensorId;
     }
@@ -105,6 +129,14 @@ public class SensorMetric implements Serializable {
         this.month = month;
     }
 
+    public Integer getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Integer bucket) {
+        this.bucket = bucket;
+    }
+
     public Integer getDay() {
         return day;
     }
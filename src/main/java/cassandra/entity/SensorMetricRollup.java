@@ -0,0 +1,113 @@
+package cassandra.entity;
+
+import java.util.Date;
+
+/**
+ * Pre-aggregated values of one metric type of a sensor over one time bucket, as stored in the
+ * sensor_metrics_hourly and sensor_metrics_daily rollup tables.
+ * Partial rollups of the same bucket can be combined with {@link #merge}, which is how
+ * the tables are maintained incrementally by the write path.
+ */
+public class SensorMetricRollup {
+
+    private final String sensorId;
+    private final String metricType;
+    private final long bucketStartMillis;
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double lastValue;
+    private long lastRecordedAtMillis = Long.MIN_VALUE;
+
+    public SensorMetricRollup(String sensorId, String metricType, long bucketStartMillis) {
+        this.sensorId = sensorId;
+        this.metricType = metricType;
+        this.bucketStartMillis = bucketStartMillis;
+    }
+
+    public SensorMetricRollup(String sensorId, String metricType, long bucketStartMillis,
+                              long count, double sum, double min, double max,
+                              double lastValue, long lastRecordedAtMillis) {
+        this(sensorId, metricType, bucketStartMillis);
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.lastValue = lastValue;
+        this.lastRecordedAtMillis = lastRecordedAtMillis;
+    }
+
+    public void add(long recordedAtMillis, double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (recordedAtMillis >= lastRecordedAtMillis) {
+            lastValue = value;
+            lastRecordedAtMillis = recordedAtMillis;
+        }
+    }
+
+    public void merge(SensorMetricRollup other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.lastRecordedAtMillis >= lastRecordedAtMillis) {
+            lastValue = other.lastValue;
+            lastRecordedAtMillis = other.lastRecordedAtMillis;
+        }
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public String getMetricType() {
+        return metricType;
+    }
+
+    public long getBucketStartMillis() {
+        return bucketStartMillis;
+    }
+
+    public Date getBucketStart() {
+        return new Date(bucketStartMillis);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getLastValue() {
+        return lastValue;
+    }
+
+    public long getLastRecordedAtMillis() {
+        return lastRecordedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorMetricRollup{" +
+                "sensorId='" + sensorId + '\'' +
+                ", metricType='" + metricType + '\'' +
+                ", bucketStart=" + getBucketStart() +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Iterates the rows of an async query whose request is already on its way.
+ * The next page is requested as soon as the current one arrives, so a consumer working through one page
+ * overlaps with the fetch of the next; hasNext only blocks when a page has not arrived yet.
+ * Closing the iterator cancels the page request still in flight, so a consumer that stops early does not
+ * leave a prefetch running
+ */
+class AsyncPagingIterator<T> implements CloseableIterator<T> {
+
+    private final Function<Row, T> mapper;
+    private CompletableFuture<AsyncResultSet> nextPage;
+    private Iterator<Row> rows;
+
+    AsyncPagingIterator(CompletionStage<AsyncResultSet> firstPage, Function<Row, T> mapper) {
+        this.mapper = mapper;
+        this.nextPage = firstPage.toCompletableFuture();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (rows == null || !rows.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+            AsyncResultSet page = await(nextPage);
+            nextPage = page.hasMorePages() ? page.fetchNextPage().toCompletableFuture() : null;
+            rows = page.currentPage().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mapper.apply(rows.next());
+    }
+
+    @Override
+    public void close() {
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+        rows = null;
+    }
+
+    private static AsyncResultSet await(CompletableFuture<AsyncResultSet> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            // rethrow the driver exception itself, as a synchronous execute would
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
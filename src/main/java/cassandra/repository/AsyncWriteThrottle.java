@@ -0,0 +1,50 @@
+package cassandra.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous write requests this instance has in flight against the cluster.
+ * Callers block in {@link #submit} once the cap is reached, which pushes back on whoever is
+ * producing rows instead of queueing them in the driver without limit.
+ */
+@Component
+public class AsyncWriteThrottle {
+
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    public AsyncWriteThrottle(@Value("${cassandra.write.max-in-flight:256}") int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public <T> CompletionStage<T> submit(Supplier<? extends CompletionStage<T>> request) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CompletableFuture<T> interrupted = new CompletableFuture<>();
+            interrupted.completeExceptionally(e);
+            return interrupted;
+        }
+
+        CompletionStage<T> stage;
+        try {
+            stage = request.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return stage.whenComplete((result, error) -> permits.release());
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+}
@@ -2,18 +2,20 @@ package cassandra.repository;
 
 import cassandra.entity.ChatMessage;
 import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
 import java.util.UUID;
 
+/**
+ * Plain partition reads are declared in {@link ChatMessageRepositoryCustom} and run on registered prepared
+ * statements; the paged read stays on the repository proxy, which handles the paging state of a Pageable
+ */
 @Repository
-public interface ChatMessageRepository extends CrudRepository<ChatMessage, UUID> {
+public interface ChatMessageRepository extends CrudRepository<ChatMessage, UUID>, ChatMessageRepositoryCustom {
 
-    @Query("SELECT * FROM chat_messages WHERE conversation_id=?0 LIMIT ?1")
-    List<ChatMessage> findByConversationId(UUID conversationId, int limit);
-    
     @Query("SELECT * FROM chat_messages WHERE conversation_id=?0")
-    List<ChatMessage> findAllByConversationId(UUID conversationId);
+    Slice<ChatMessage> findPageByConversationId(UUID conversationId, Pageable pageable);
 }
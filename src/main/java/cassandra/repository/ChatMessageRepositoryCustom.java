@@ -0,0 +1,61 @@
+package cassandra.repository;
+
+import cassandra.entity.ChatMessage;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+/**
+ * Operations on chat_messages that go straight to the driver through prepared statements
+ */
+public interface ChatMessageRepositoryCustom {
+
+    List<ChatMessage> findByConversationId(UUID conversationId, int limit);
+
+    List<ChatMessage> findAllByConversationId(UUID conversationId);
+
+    /**
+     * All messages of a conversation, newest first, read lazily one driver page at a time.
+     * The stream must be closed by the caller
+     */
+    Stream<ChatMessage> streamAllByConversationId(UUID conversationId);
+
+    /**
+     * Up to limit messages newer than the given message id, oldest first, so the next delta can continue
+     * from the last message returned
+     */
+    List<ChatMessage> findSince(UUID conversationId, UUID since, int limit);
+
+    /**
+     * Up to limit messages older than the given message id, newest first (clustering order)
+     */
+    List<ChatMessage> findBefore(UUID conversationId, UUID before, int limit);
+
+    /**
+     * Up to limit messages strictly between two message ids, oldest first
+     */
+    List<ChatMessage> findBetween(UUID conversationId, UUID since, UUID before, int limit);
+
+    /**
+     * Messages newer than the given message id, oldest first, read lazily page by page.
+     * The stream must be closed by the caller
+     */
+    Stream<ChatMessage> streamAfter(UUID conversationId, UUID messageId);
+
+    /**
+     * Insert a message and move its conversation's last_message_time forward, as one logged batch.
+     * last_message_time is written with the message's own timestamp as the write time, so when messages
+     * arrive out of order the newest message still wins, without a read or a lightweight transaction.
+     * The message must already carry its time-based message_id.
+     */
+    CompletionStage<Void> insertAsync(ChatMessage message);
+
+    /**
+     * Reads the newest sampleRows messages of a conversation to estimate its size and, when there are more,
+     * counts its messages up to maxCountedRows without reading their contents. The count reads one clustering
+     * key per message, so maxCountedRows bounds the cost of a sample
+     */
+    PartitionSample samplePartition(UUID conversationId, int sampleRows, int maxCountedRows);
+}
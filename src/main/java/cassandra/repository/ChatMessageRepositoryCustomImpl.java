@@ -0,0 +1,156 @@
+package cassandra.repository;
+
+import cassandra.entity.ChatMessage;
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.springframework.data.cassandra.core.convert.CassandraConverter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ChatMessageRepositoryCustomImpl implements ChatMessageRepositoryCustom {
+
+    static final String INSERT_CQL = "INSERT INTO chat_messages (conversation_id, message_id, sender_id, sender_name, " +
+            "message_text, created_at, is_read) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    static final String TOUCH_CONVERSATION_CQL = "UPDATE conversations USING TIMESTAMP ? SET last_message_time=? " +
+            "WHERE conversation_id=?";
+
+    static final String FIND_LATEST_CQL = "SELECT * FROM chat_messages WHERE conversation_id=? LIMIT ?";
+
+    static final String FIND_ALL_CQL = "SELECT * FROM chat_messages WHERE conversation_id=?";
+
+    static final String FIND_SINCE_CQL = "SELECT * FROM chat_messages WHERE conversation_id=? AND message_id > ? " +
+            "ORDER BY message_id ASC LIMIT ?";
+
+    static final String FIND_BEFORE_CQL = "SELECT * FROM chat_messages WHERE conversation_id=? AND message_id < ? LIMIT ?";
+
+    static final String FIND_BETWEEN_CQL = "SELECT * FROM chat_messages WHERE conversation_id=? AND message_id > ? " +
+            "AND message_id < ? ORDER BY message_id ASC LIMIT ?";
+
+    static final String STREAM_AFTER_CQL = "SELECT * FROM chat_messages WHERE conversation_id=? AND message_id > ? " +
+            "ORDER BY message_id ASC";
+
+    static final String COUNT_IDS_CQL = "SELECT message_id FROM chat_messages WHERE conversation_id=? LIMIT ?";
+
+    private final AsyncWriteThrottle writeThrottle;
+    private final CassandraConverter cassandraConverter;
+
+    private final RegisteredStatement insert;
+    private final RegisteredStatement touchConversation;
+    private final RegisteredStatement findLatest;
+    private final RegisteredStatement findAll;
+    private final RegisteredStatement findSince;
+    private final RegisteredStatement findBefore;
+    private final RegisteredStatement findBetween;
+    private final RegisteredStatement streamAfter;
+    private final RegisteredStatement countIds;
+
+    public ChatMessageRepositoryCustomImpl(AsyncWriteThrottle writeThrottle,
+                                           PreparedStatementRegistry statements,
+                                           CassandraConverter cassandraConverter) {
+        this.writeThrottle = writeThrottle;
+        this.cassandraConverter = cassandraConverter;
+        this.insert = statements.register("chat_messages.insert", INSERT_CQL);
+        this.touchConversation = statements.register("conversations.touch", TOUCH_CONVERSATION_CQL);
+        this.findLatest = statements.register("chat_messages.find_latest", FIND_LATEST_CQL);
+        this.findAll = statements.register("chat_messages.find_all", FIND_ALL_CQL);
+        this.findSince = statements.register("chat_messages.find_since", FIND_SINCE_CQL);
+        this.findBefore = statements.register("chat_messages.find_before", FIND_BEFORE_CQL);
+        this.findBetween = statements.register("chat_messages.find_between", FIND_BETWEEN_CQL);
+        this.streamAfter = statements.register("chat_messages.stream_after", STREAM_AFTER_CQL);
+        this.countIds = statements.register("chat_messages.count_ids", COUNT_IDS_CQL);
+    }
+
+    @Override
+    public List<ChatMessage> findByConversationId(UUID conversationId, int limit) {
+        return read(findLatest, conversationId, limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ChatMessage> findAllByConversationId(UUID conversationId) {
+        return read(findAll, conversationId).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<ChatMessage> streamAllByConversationId(UUID conversationId) {
+        return read(findAll, conversationId);
+    }
+
+    @Override
+    public List<ChatMessage> findSince(UUID conversationId, UUID since, int limit) {
+        return read(findSince, conversationId, since, limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(UUID conversationId, UUID before, int limit) {
+        return read(findBefore, conversationId, before, limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ChatMessage> findBetween(UUID conversationId, UUID since, UUID before, int limit) {
+        return read(findBetween, conversationId, since, before, limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<ChatMessage> streamAfter(UUID conversationId, UUID messageId) {
+        return read(streamAfter, conversationId, messageId);
+    }
+
+    @Override
+    public CompletionStage<Void> insertAsync(ChatMessage message) {
+        long sentAtMillis = Uuids.unixTimestamp(message.getMessageId());
+        BoundStatement insertMessage = insert.bind(
+                message.getConversationId(),
+                message.getMessageId(),
+                message.getSenderId(),
+                message.getSenderName(),
+                message.getMessageText(),
+                message.getCreatedAt() != null ? message.getCreatedAt().toInstant() : Instant.ofEpochMilli(sentAtMillis),
+                message.getIsRead() != null ? message.getIsRead() : Boolean.FALSE);
+        BoundStatement touch = touchConversation.bind(
+                TimeUnit.MILLISECONDS.toMicros(sentAtMillis),
+                Instant.ofEpochMilli(sentAtMillis),
+                message.getConversationId());
+
+        // The message id is generated by the client, so replaying the batch writes the same cells again
+        BatchStatement batch = BatchStatement.newInstance(BatchType.LOGGED, insertMessage, touch).setIdempotent(true);
+        return writeThrottle.submit(() -> insert.executeAsync(batch))
+                .thenApply(resultSet -> null);
+    }
+
+    @Override
+    public PartitionSample samplePartition(UUID conversationId, int sampleRows, int maxCountedRows) {
+        // Conversations are written in bursts, so the rate of the newest messages says little about the
+        // rest; their ids are counted instead, which reads only the clustering key of each row
+        return PartitionSample.counted(findLatest.execute(findLatest.bind(conversationId, sampleRows)), sampleRows,
+                maxCountedRows,
+                () -> {
+                    long rows = 0;
+                    for (Row ignored : countIds.execute(countIds.bind(conversationId, maxCountedRows))) {
+                        rows++;
+                    }
+                    return rows;
+                });
+    }
+
+    /**
+     * Maps rows to entities as the driver pages through the result
+     */
+    private Stream<ChatMessage> read(RegisteredStatement statement, Object... values) {
+        ResultSet rows = statement.execute(statement.bind(values));
+        return StreamSupport.stream(rows.spliterator(), false)
+                .map(row -> cassandraConverter.read(ChatMessage.class, row));
+    }
+}
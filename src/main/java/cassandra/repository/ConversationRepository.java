@@ -1,11 +1,27 @@
 package cassandra.repository;
 
 import cassandra.entity.Conversation;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface ConversationRepository extends CrudRepository<Conversation, UUID> {
+public interface ConversationRepository extends CrudRepository<Conversation, UUID>, ConversationRepositoryCustom {
+
+    /**
+     * Walk the whole table one driver page at a time, in token order. The stream must be closed by the caller
+     */
+    @Query("SELECT * FROM conversations")
+    Stream<Conversation> streamAll();
+
+    /**
+     * One page of the whole table in token order; the pageable carries the driver paging state
+     */
+    @Query("SELECT * FROM conversations")
+    Slice<Conversation> findPage(Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package cassandra.repository;
+
+import cassandra.entity.Conversation;
+
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+/**
+ * Operations on conversations that go straight to the driver
+ */
+public interface ConversationRepositoryCustom {
+
+    /**
+     * Read the whole table as parallel token range scans, see {@link TokenRangeScanner}.
+     * Conversations arrive in no particular order; the stream must be closed by the caller
+     */
+    Stream<Conversation> scanAllInParallel();
+
+    /**
+     * Read one conversation on the async driver API, so the caller can compose a write onto it without blocking
+     *
+     * @return completes with null if the conversation does not exist
+     */
+    CompletionStage<Conversation> findByIdAsync(UUID conversationId);
+}
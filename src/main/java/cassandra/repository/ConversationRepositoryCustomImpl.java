@@ -0,0 +1,43 @@
+package cassandra.repository;
+
+import cassandra.entity.Conversation;
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.data.cassandra.core.convert.CassandraConverter;
+
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+public class ConversationRepositoryCustomImpl implements ConversationRepositoryCustom {
+
+    static final String SCAN_RANGE_CQL = "SELECT conversation_id, conversation_name, created_at, participants, " +
+            "last_message_time FROM conversations WHERE token(conversation_id) > ? AND token(conversation_id) <= ?";
+    static final String FIND_BY_ID_CQL = "SELECT conversation_id, conversation_name, created_at, participants, " +
+            "last_message_time FROM conversations WHERE conversation_id=?";
+
+    private final TokenRangeScanner tokenRangeScanner;
+    private final CassandraConverter cassandraConverter;
+    private final RegisteredStatement findById;
+
+    public ConversationRepositoryCustomImpl(TokenRangeScanner tokenRangeScanner, CassandraConverter cassandraConverter,
+                                            PreparedStatementRegistry statements) {
+        this.tokenRangeScanner = tokenRangeScanner;
+        this.cassandraConverter = cassandraConverter;
+        this.findById = statements.register("conversations.find_by_id", FIND_BY_ID_CQL);
+    }
+
+    @Override
+    public Stream<Conversation> scanAllInParallel() {
+        return tokenRangeScanner.stream(SCAN_RANGE_CQL, row -> cassandraConverter.read(Conversation.class, row));
+    }
+
+    @Override
+    public CompletionStage<Conversation> findByIdAsync(UUID conversationId) {
+        return findById.executeAsync(findById.bind(conversationId))
+                .thenApply(resultSet -> {
+                    Row row = resultSet.one();
+                    return row != null ? cassandraConverter.read(Conversation.class, row) : null;
+                });
+    }
+}
@@ -0,0 +1,32 @@
+package cassandra.repository;
+
+import cassandra.entity.ExampleTable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+/**
+ * Operations on example_table that go straight to the driver through prepared statements
+ */
+public interface ExampleTableRepositoryCustom {
+
+    List<ExampleTable> findByTextField1(String textField1);
+
+    /**
+     * Same rows as {@link #findByTextField1}, read lazily one driver page at a time.
+     * The stream must be closed by the caller
+     */
+    Stream<ExampleTable> streamByTextField1(String textField1);
+
+    /**
+     * Insert rows as unlogged batches, one batch per text_field_1 partition
+     * (split further when a partition exceeds the configured batch size).
+     * Blocks while the in-flight request cap is reached.
+     *
+     * @return a stage completing with the number of rows acknowledged by the cluster;
+     * rows in failed batches are not counted
+     */
+    CompletionStage<Integer> insertAllAsync(Collection<ExampleTable> rows);
+}
@@ -0,0 +1,106 @@
+package cassandra.repository;
+
+import cassandra.entity.ExampleTable;
+import cassandra.entity.ExampleTable.ExampleTablePrimaryKey;
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.convert.CassandraConverter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ExampleTableRepositoryCustomImpl implements ExampleTableRepositoryCustom {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExampleTableRepositoryCustomImpl.class);
+
+    static final String INSERT_CQL = "INSERT INTO example_table (text_field_1, text_field_2, int_field_1, int_field_2) " +
+            "VALUES (?, ?, ?, ?)";
+
+    static final String FIND_BY_TEXT_FIELD_1_CQL = "SELECT * FROM example_table WHERE text_field_1=?";
+
+    private final AsyncWriteThrottle writeThrottle;
+    private final CassandraConverter cassandraConverter;
+    private final int maxBatchSize;
+
+    private final RegisteredStatement insert;
+    private final RegisteredStatement findByTextField1;
+
+    public ExampleTableRepositoryCustomImpl(AsyncWriteThrottle writeThrottle,
+                                            PreparedStatementRegistry statements,
+                                            CassandraConverter cassandraConverter,
+                                            @Value("${example.import.max-batch-size:100}") int maxBatchSize) {
+        this.writeThrottle = writeThrottle;
+        this.cassandraConverter = cassandraConverter;
+        this.maxBatchSize = maxBatchSize;
+        this.insert = statements.register("example_table.insert", INSERT_CQL);
+        this.findByTextField1 = statements.register("example_table.find_by_text_field_1", FIND_BY_TEXT_FIELD_1_CQL);
+    }
+
+    @Override
+    public List<ExampleTable> findByTextField1(String textField1) {
+        return streamByTextField1(textField1).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<ExampleTable> streamByTextField1(String textField1) {
+        ResultSet rows = findByTextField1.execute(findByTextField1.bind(textField1));
+        return StreamSupport.stream(rows.spliterator(), false)
+                .map(row -> cassandraConverter.read(ExampleTable.class, row));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertAllAsync(Collection<ExampleTable> rows) {
+        Map<String, List<ExampleTable>> byPartition = rows.stream()
+                .collect(Collectors.groupingBy(
+                        row -> row.getExampleTablePrimaryKey().getTextField1(),
+                        LinkedHashMap::new,
+                        Collectors.toList()));
+
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        for (List<ExampleTable> partition : byPartition.values()) {
+            for (int from = 0; from < partition.size(); from += maxBatchSize) {
+                writes.add(write(partition.subList(from, Math.min(partition.size(), from + maxBatchSize))));
+            }
+        }
+
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .thenApply(done -> writes.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    private CompletableFuture<Integer> write(List<ExampleTable> batch) {
+        Statement<?> statement = batch.size() == 1
+                ? bind(batch.get(0))
+                : BatchStatement.newInstance(BatchType.UNLOGGED,
+                        batch.stream().map(this::bind).toArray(BoundStatement[]::new));
+
+        return writeThrottle.submit(() -> insert.executeAsync(statement))
+                .handle((resultSet, error) -> {
+                    if (error != null) {
+                        LOGGER.warn("Failed to write {} rows to partition {}", batch.size(),
+                                batch.get(0).getExampleTablePrimaryKey().getTextField1(), error);
+                        return 0;
+                    }
+                    return batch.size();
+                })
+                .toCompletableFuture();
+    }
+
+    private BoundStatement bind(ExampleTable row) {
+        ExampleTablePrimaryKey key = row.getExampleTablePrimaryKey();
+        return insert.bind(key.getTextField1(), key.getTextField2(), key.getIntField1(), key.getIntField2());
+    }
+}
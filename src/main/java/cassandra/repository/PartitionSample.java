@@ -0,0 +1,120 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The newest rows of a time-ordered partition and the time its oldest row was written, from which its
+ * row count and size are extrapolated assuming the partition grew at the rate of the sampled rows.
+ * That only holds for partitions written at a steady rate; where writes come in bursts the partition's
+ * rows are counted instead, up to a cap, and only its size is extrapolated from the sampled rows; a count
+ * that reached the cap is a lower bound rather than an estimate.
+ * Sizes are the bytes of the serialized cell values, before compression and without per-cell overhead.
+ */
+public final class PartitionSample {
+
+    private final int sampledRows;
+    private final long sampledBytes;
+    private final long newestMillis;
+    private final long oldestSampledMillis;
+    private final long oldestMillis;
+    private final boolean complete;
+    private final long countedRows;
+    private final long maxCountedRows;
+
+    PartitionSample(int sampledRows, long sampledBytes, long newestMillis, long oldestSampledMillis,
+                    long oldestMillis, boolean complete) {
+        this(sampledRows, sampledBytes, newestMillis, oldestSampledMillis, oldestMillis, complete, -1, 0);
+    }
+
+    private PartitionSample(int sampledRows, long sampledBytes, long newestMillis, long oldestSampledMillis,
+                            long oldestMillis, boolean complete, long countedRows, long maxCountedRows) {
+        this.sampledRows = sampledRows;
+        this.sampledBytes = sampledBytes;
+        this.newestMillis = newestMillis;
+        this.oldestSampledMillis = oldestSampledMillis;
+        this.oldestMillis = oldestMillis;
+        this.complete = complete;
+        this.countedRows = countedRows;
+        this.maxCountedRows = maxCountedRows;
+    }
+
+    /**
+     * @param newestRows the partition in clustering order, newest first, limited to limit rows
+     * @param timestamp  when a row was written
+     * @param oldest     when the oldest row of the partition was written; only asked when the sample is not the whole partition
+     */
+    static PartitionSample of(ResultSet newestRows, int limit, ToLongFunction<Row> timestamp, LongSupplier oldest) {
+        int rows = 0;
+        long bytes = 0;
+        long newest = 0;
+        long oldestSampled = 0;
+        for (Row row : newestRows) {
+            for (int i = 0; i < row.size(); i++) {
+                ByteBuffer value = row.getBytesUnsafe(i);
+                if (value != null) {
+                    bytes += value.remaining();
+                }
+            }
+            oldestSampled = timestamp.applyAsLong(row);
+            if (rows++ == 0) {
+                newest = oldestSampled;
+            }
+        }
+        boolean complete = rows < limit;
+        return new PartitionSample(rows, bytes, newest, oldestSampled,
+                complete ? oldestSampled : oldest.getAsLong(), complete);
+    }
+
+    /**
+     * @param newestRows the partition in clustering order, newest first, limited to limit rows
+     * @param count      the rows of the partition, counting no further than maxCountedRows; only asked when the
+     *                   sample is not the whole partition
+     */
+    static PartitionSample counted(ResultSet newestRows, int limit, long maxCountedRows, LongSupplier count) {
+        PartitionSample sample = of(newestRows, limit, row -> 0, () -> 0);
+        if (sample.complete) {
+            return sample;
+        }
+        return new PartitionSample(sample.sampledRows, sample.sampledBytes, 0, 0, 0, false,
+                Math.min(count.getAsLong(), maxCountedRows), maxCountedRows);
+    }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    /**
+     * True when the sample holds every row of the partition, so the estimates are exact
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * True when the row count is exact: the whole partition was sampled, or its rows were counted without
+     * reaching the cap. A count that reached the cap is a lower bound, an extrapolated one only a rough guess.
+     */
+    public boolean isRowCountExact() {
+        return complete || (countedRows >= 0 && countedRows < maxCountedRows);
+    }
+
+    public long estimatedRows() {
+        if (countedRows >= 0) {
+            return Math.max(sampledRows, countedRows);
+        }
+        if (complete || sampledRows < 2) {
+            return sampledRows;
+        }
+        double rowsPerMilli = (double) (sampledRows - 1) / Math.max(1, newestMillis - oldestSampledMillis);
+        return Math.max(sampledRows, Math.round(rowsPerMilli * (newestMillis - oldestMillis)) + 1);
+    }
+
+    public long estimatedBytes() {
+        return sampledRows == 0 ? 0 : Math.round((double) sampledBytes / sampledRows * estimatedRows());
+    }
+}
@@ -0,0 +1,248 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The CQL statements of the custom repository fragments, each under a stable name.
+ * Statements are registered when the fragments are created and prepared once the application is ready;
+ * a statement whose table does not exist yet is prepared again on first use instead of failing startup.
+ * Bound statements carry the routing key computed from the partition key bind markers, so the
+ * token-aware load balancing policy sends them straight to a replica, and every execution is timed
+ * in the cassandra.statement histogram, tagged with the statement name, its table and the result_rows bucket
+ * (the rows in the first page of the result). result_rows is not the partition size: a LIMIT or a clustering
+ * range keeps it small on any partition, and a full read stops counting at the page size; partition sizes are
+ * estimated separately by the partition size sampler.
+ * Executions slower than cassandra.slow-query.threshold-ms are logged with their bind values and coordinator
+ * to the cassandra.slow-queries logger.
+ */
+@Component
+public class PreparedStatementRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreparedStatementRegistry.class);
+    private static final Logger SLOW_QUERIES = LoggerFactory.getLogger("cassandra.slow-queries");
+
+    private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|INTO|UPDATE)\\s+([\\w.\"]+)", Pattern.CASE_INSENSITIVE);
+    /**
+     * Upper bounds of the result_rows buckets, by rows in the first page
+     */
+    private static final int[] RESULT_ROWS_BOUNDS = {0, 10, 100, 1000, Integer.MAX_VALUE};
+    private static final String[] RESULT_ROWS_BUCKETS = {"0", "1-10", "11-100", "101-1000", "1000+"};
+    private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+
+    private final CqlSession session;
+    private final MeterRegistry meterRegistry;
+    private final boolean prepareOnStartup;
+    private final long slowQueryThresholdNanos;
+    private final Map<String, RegisteredStatement> statements = new ConcurrentHashMap<>();
+
+    public PreparedStatementRegistry(CqlSession session,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${cassandra.statements.prepare-on-startup:true}") boolean prepareOnStartup,
+                                     @Value("${cassandra.slow-query.threshold-ms:500}") long slowQueryThresholdMs) {
+        this.session = session;
+        this.meterRegistry = meterRegistry;
+        this.prepareOnStartup = prepareOnStartup;
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMs);
+    }
+
+    /**
+     * Registering the same name again returns the existing statement
+     *
+     * @throws IllegalArgumentException if the name is already registered with different CQL
+     */
+    public RegisteredStatement register(String name, String cql) {
+        RegisteredStatement statement = statements.computeIfAbsent(name, key -> new RegisteredStatement(key, cql, timers(key, cql)));
+        if (!statement.cql.equals(cql)) {
+            throw new IllegalArgumentException("Statement " + name + " is already registered as: " + statement.cql);
+        }
+        return statement;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareAll() {
+        if (!prepareOnStartup) {
+            return;
+        }
+        int prepared = 0;
+        for (RegisteredStatement statement : statements.values()) {
+            try {
+                statement.prepared();
+                prepared++;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not prepare statement {}, will retry on first use: {}", statement.name, e.getMessage());
+            }
+        }
+        LOGGER.info("Prepared {} of {} registered statements", prepared, statements.size());
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    private Timer[] timers(String name, String cql) {
+        Matcher table = TABLE.matcher(cql);
+        String tableName = table.find() ? table.group(1).replace("\"", "").toLowerCase(Locale.ROOT) : "unknown";
+        Timer[] timers = new Timer[RESULT_ROWS_BUCKETS.length];
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = Timer.builder("cassandra.statement")
+                    .description("Time until the first page of a prepared statement's result arrives")
+                    .tag("statement", name)
+                    .tag("table", tableName)
+                    .tag("result_rows", RESULT_ROWS_BUCKETS[i])
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    static int resultRowsBucket(int firstPageRows) {
+        int bucket = 0;
+        while (firstPageRows > RESULT_ROWS_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Bound values of each statement (of each child of a batch), decoded with the session's codecs
+     */
+    static List<List<Object>> boundValues(Statement<?> statement) {
+        List<List<Object>> values = new ArrayList<>();
+        if (statement instanceof BoundStatement) {
+            values.add(boundValues((BoundStatement) statement));
+        } else if (statement instanceof BatchStatement) {
+            for (BatchableStatement<?> child : (BatchStatement) statement) {
+                if (child instanceof BoundStatement) {
+                    values.add(boundValues((BoundStatement) child));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<Object> boundValues(BoundStatement statement) {
+        List<Object> values = new ArrayList<>(statement.size());
+        for (int i = 0; i < statement.size(); i++) {
+            Object value;
+            try {
+                value = statement.getObject(i);
+            } catch (RuntimeException e) {
+                value = "<undecodable>";
+            }
+            String text = String.valueOf(value);
+            values.add(text.length() > MAX_LOGGED_VALUE_LENGTH ? text.substring(0, MAX_LOGGED_VALUE_LENGTH) + "..." : value);
+        }
+        return values;
+    }
+
+    public final class RegisteredStatement {
+
+        private final String name;
+        private final String cql;
+        private final Timer[] latencyByResultRows;
+        private volatile PreparedStatement prepared;
+
+        private RegisteredStatement(String name, String cql, Timer[] latencyByResultRows) {
+            this.name = name;
+            this.cql = cql;
+            this.latencyByResultRows = latencyByResultRows;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PreparedStatement prepared() {
+            PreparedStatement statement = prepared;
+            if (statement == null) {
+                // the driver deduplicates concurrent prepares of the same query string
+                statement = session.prepare(cql);
+                prepared = statement;
+            }
+            return statement;
+        }
+
+        /**
+         * Binds the values by index
+         */
+        public BoundStatement bind(Object... values) {
+            return prepared().bind(values);
+        }
+
+        public BoundStatementBuilder boundStatementBuilder() {
+            return prepared().boundStatementBuilder();
+        }
+
+        /**
+         * Runs the statement synchronously; further pages of the result set are fetched while it is iterated
+         */
+        public ResultSet execute(Statement<?> statement) {
+            long start = System.nanoTime();
+            ResultSet resultSet;
+            try {
+                resultSet = session.execute(statement);
+            } catch (RuntimeException e) {
+                completed(statement, start, 0, null, e);
+                throw e;
+            }
+            completed(statement, start, resultSet.getAvailableWithoutFetching(), resultSet.getExecutionInfo(), null);
+            return resultSet;
+        }
+
+        public CompletionStage<AsyncResultSet> executeAsync(Statement<?> statement) {
+            long start = System.nanoTime();
+            return session.executeAsync(statement)
+                    .whenComplete((resultSet, error) -> completed(statement, start,
+                            resultSet != null ? resultSet.remaining() : 0,
+                            resultSet != null ? resultSet.getExecutionInfo() : null,
+                            error));
+        }
+
+        private void completed(Statement<?> statement, long start, int firstPageRows, ExecutionInfo executionInfo, Throwable error) {
+            long elapsed = System.nanoTime() - start;
+            latencyByResultRows[resultRowsBucket(firstPageRows)].record(elapsed, TimeUnit.NANOSECONDS);
+            if (elapsed < slowQueryThresholdNanos || !SLOW_QUERIES.isWarnEnabled()) {
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (executionInfo == null && cause instanceof DriverException) {
+                executionInfo = ((DriverException) cause).getExecutionInfo();
+            }
+            Node coordinator = executionInfo != null ? executionInfo.getCoordinator() : null;
+            SLOW_QUERIES.warn("{} took {} ms on coordinator {}, {} rows in first page{}: {} values {}",
+                    name, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    coordinator != null ? coordinator.getEndPoint() : "unknown", firstPageRows,
+                    cause != null ? ", failed with " + cause : "", cql, boundValues(statement));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cassandra.repository;
+
+import cassandra.entity.ChatMessage;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+/**
+ * Non-blocking variants of the {@link ChatMessageRepository} partition reads, newest message first
+ */
+@Repository
+public interface ReactiveChatMessageRepository extends ReactiveCassandraRepository<ChatMessage, UUID> {
+
+    @Query("SELECT * FROM chat_messages WHERE conversation_id=?0")
+    Flux<ChatMessage> findAllByConversationId(UUID conversationId);
+
+    @Query("SELECT * FROM chat_messages WHERE conversation_id=?0 LIMIT ?1")
+    Flux<ChatMessage> findByConversationId(UUID conversationId, int limit);
+}
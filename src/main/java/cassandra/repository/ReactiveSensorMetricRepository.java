@@ -0,0 +1,22 @@
+package cassandra.repository;
+
+import cassandra.entity.SensorMetric;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking variants of the {@link SensorMetricRepository} partition reads.
+ * Rows are emitted as the driver delivers them and further pages are only requested as the subscriber
+ * asks for more rows, so a slow consumer holds back the read instead of buffering the partition
+ */
+@Repository
+public interface ReactiveSensorMetricRepository extends ReactiveCassandraRepository<SensorMetric, String> {
+
+    @Query("SELECT * FROM sensor_metrics WHERE sensor_id=?0 AND year=?1 AND month=?2 AND bucket=?3")
+    Flux<SensorMetric> findBySensorAndMonth(String sensorId, int year, int month, int bucket);
+
+    @Query("SELECT * FROM sensor_metrics WHERE sensor_id=?0 AND year=?1 AND month=?2 AND bucket=?3 LIMIT ?4")
+    Flux<SensorMetric> findLatestMetrics(String sensorId, int year, int month, int bucket, int limit);
+}
@@ -0,0 +1,123 @@
+package cassandra.repository;
+
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads and records, in sensor_metric_buckets, how each (sensor_id, year, month) of sensor_metrics is split
+ * into partitions. A month is recorded the first time it is written to and never changes afterwards, so a
+ * change of configuration only applies from the next month a sensor writes to and readers always know
+ * which buckets to look in. Months without a record are read as a single {@link Granularity#MONTH} partition.
+ */
+@Repository
+public class SensorMetricBucketRepository {
+
+    /**
+     * How a sensor+month is split into sensor_metrics partitions, and the bucket number of each partition.
+     * Bucket numbers grow with time within a month: 0 for MONTH, the day of the month for DAY, and
+     * day * 100 + hour for HOUR (e.g. 1513 for the 15th, 13:00-14:00 UTC)
+     */
+    public enum Granularity {
+        MONTH(ChronoUnit.MONTHS),
+        DAY(ChronoUnit.DAYS),
+        HOUR(ChronoUnit.HOURS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        public ChronoUnit getUnit() {
+            return unit;
+        }
+
+        public int bucket(int day, int hour) {
+            switch (this) {
+                case DAY:
+                    return day;
+                case HOUR:
+                    return day * 100 + hour;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * @param to exclusive
+         * @return the buckets of the month that hold rows with from <= recorded_at < to, newest first
+         */
+        public List<Integer> buckets(YearMonth month, Instant from, Instant to) {
+            ZonedDateTime monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC);
+            Instant lower = max(from, monthStart.toInstant());
+            Instant upper = min(to, monthStart.plusMonths(1).toInstant());
+            if (!lower.isBefore(upper)) {
+                return Collections.emptyList();
+            }
+            if (this == MONTH) {
+                return Collections.singletonList(0);
+            }
+            ZonedDateTime first = lower.atZone(ZoneOffset.UTC).truncatedTo(unit);
+            List<Integer> buckets = new ArrayList<>();
+            for (ZonedDateTime start = upper.minusMillis(1).atZone(ZoneOffset.UTC).truncatedTo(unit);
+                 !start.isBefore(first); start = start.minus(1, unit)) {
+                buckets.add(bucket(start.getDayOfMonth(), start.getHour()));
+            }
+            return buckets;
+        }
+    }
+
+    static final String FIND_CQL = "SELECT granularity FROM sensor_metric_buckets WHERE sensor_id=? AND year=? AND month=?";
+
+    static final String INSERT_IF_ABSENT_CQL = "INSERT INTO sensor_metric_buckets (sensor_id, year, month, granularity) " +
+            "VALUES (?, ?, ?, ?) IF NOT EXISTS";
+
+    private final RegisteredStatement find;
+    private final RegisteredStatement insertIfAbsent;
+
+    public SensorMetricBucketRepository(PreparedStatementRegistry statements) {
+        this.find = statements.register("sensor_metric_buckets.find", FIND_CQL);
+        this.insertIfAbsent = statements.register("sensor_metric_buckets.insert_if_absent", INSERT_IF_ABSENT_CQL);
+    }
+
+    /**
+     * @return the recorded granularity, or null if nothing was written to the month through the bucketed write path
+     */
+    public Granularity find(String sensorId, int year, int month) {
+        Row row = find.execute(find.bind(sensorId, year, month)).one();
+        return row != null ? Granularity.valueOf(row.getString("granularity")) : null;
+    }
+
+    /**
+     * Records the granularity of a month with a lightweight transaction, so instances writing the same
+     * sensor concurrently agree on one
+     *
+     * @return the granularity now recorded for the month: this one, or the one another writer recorded first
+     */
+    public Granularity recordIfAbsent(String sensorId, int year, int month, Granularity granularity) {
+        ResultSet result = insertIfAbsent.execute(insertIfAbsent.bind(sensorId, year, month, granularity.name()));
+        if (result.wasApplied()) {
+            return granularity;
+        }
+        return Granularity.valueOf(result.one().getString("granularity"));
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
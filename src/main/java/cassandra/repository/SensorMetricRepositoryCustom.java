@@ -0,0 +1,166 @@
+package cassandra.repository;
+
+import cassandra.entity.SensorMetric;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+/**
+ * Operations on sensor_metrics that go straight to the driver through prepared statements,
+ * rather than through the repository proxy. Reads address one (sensor_id, year, month, bucket) partition;
+ * the service layer lists the buckets of a sensor+month and fans reads out across them
+ */
+public interface SensorMetricRepositoryCustom {
+
+    /**
+     * The key of one sensor_metrics partition
+     */
+    final class PartitionKey {
+
+        private final String sensorId;
+        private final int year;
+        private final int month;
+        private final int bucket;
+
+        public PartitionKey(String sensorId, int year, int month, int bucket) {
+            this.sensorId = sensorId;
+            this.year = year;
+            this.month = month;
+            this.bucket = bucket;
+        }
+
+        public String getSensorId() {
+            return sensorId;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public int getMonth() {
+            return month;
+        }
+
+        public int getBucket() {
+            return bucket;
+        }
+    }
+
+    /**
+     * Receives the values of a partition scan as primitives
+     */
+    @FunctionalInterface
+    interface MetricValueConsumer {
+
+        void accept(long recordedAtMillis, double value);
+    }
+
+    /**
+     * Receives the values of a partition scan along with their metric type
+     */
+    @FunctionalInterface
+    interface TypedMetricValueConsumer {
+
+        void accept(String metricType, long recordedAtMillis, double value);
+    }
+
+    /**
+     * Start reading every metric of one partition of a sensor+month (demonstrates wide column read),
+     * newest first. Rows are pulled one driver page at a time, so a partition of MILLIONS of metrics is
+     * never held in memory at once. Like {@link #readRange}, the request is sent right away and the
+     * iterator must be closed if it is not read to the end
+     */
+    CloseableIterator<SensorMetric> readBySensorAndMonth(String sensorId, int year, int month, int bucket);
+
+    /**
+     * Start reading the metrics of one day of a partition of a sensor+month, newest first.
+     * Demonstrates efficient time-series access with clustering columns
+     */
+    CloseableIterator<SensorMetric> readBySensorAndDay(String sensorId, int year, int month, int bucket, int day, int limit);
+
+    /**
+     * Start reading the latest metrics of one partition of a sensor+month.
+     * Leverages descending clustering order for efficient recent data access
+     */
+    CloseableIterator<SensorMetric> readLatestMetrics(String sensorId, int year, int month, int bucket, int limit);
+
+    /**
+     * Start reading the metrics of one partition of a sensor+month for a day and hour range, newest first.
+     * Shows how clustering columns enable efficient time range queries
+     */
+    CloseableIterator<SensorMetric> readBySensorAndHourRange(String sensorId, int year, int month, int bucket, int day,
+                                                             int hourStart, int hourEnd);
+
+    /**
+     * Read one page of a partition of a sensor+month, newest first. The pageable carries the driver
+     * paging state, so each page resumes where the previous one stopped
+     */
+    CompletionStage<Slice<SensorMetric>> readPageBySensorAndMonth(String sensorId, int year, int month, int bucket,
+                                                                  Pageable pageable);
+
+    /**
+     * Read one page of one day of a partition of a sensor+month using the driver paging state
+     */
+    CompletionStage<Slice<SensorMetric>> readPageBySensorAndDay(String sensorId, int year, int month, int bucket, int day,
+                                                                Pageable pageable);
+
+    /**
+     * Start reading the metrics of one partition of a sensor+month with from <= recorded_at < to, newest first.
+     * The range is translated into (day, hour, recorded_at) clustering bounds, so only the matching slice of
+     * the partition is read. The request is sent right away; the returned iterator blocks only while a page
+     * it needs has not arrived yet, and must be closed if it is not read to the end
+     *
+     * @param limit the most rows the caller will consume
+     */
+    CloseableIterator<SensorMetric> readRange(String sensorId, int year, int month, int bucket, Instant from, Instant to, int limit);
+
+    /**
+     * Every partition key of the table, found with SELECT DISTINCT over token subranges read in parallel.
+     * Meant for startup and admin jobs; keys arrive in no particular order and the stream must be closed
+     */
+    Stream<PartitionKey> scanPartitionKeys();
+
+    /**
+     * Reads the newest sampleRows rows of a partition, and the time of its oldest row when there are more,
+     * to estimate its row count and size without reading it whole
+     */
+    PartitionSample samplePartition(String sensorId, int year, int month, int bucket, int sampleRows);
+
+    /**
+     * Insert metrics as unlogged batches, one batch per (sensor_id, year, month, bucket) partition
+     * (split further when a partition exceeds the configured batch size).
+     * Blocks while the in-flight request cap is reached.
+     *
+     * @return a stage completing with the number of rows acknowledged by the cluster;
+     * rows in failed batches are not counted
+     */
+    CompletionStage<Integer> insertAllAsync(Collection<SensorMetric> metrics);
+
+    /**
+     * Scan recorded_at and metric_value of one partition of a sensor+month in clustering order (newest first),
+     * without materializing rows as entities. Rows without a value, and rows of another metric type
+     * when metricType is not null, are skipped. The scan runs asynchronously: the consumer is called on
+     * driver threads, one page after the other, never concurrently
+     *
+     * @return a stage completing once the consumer has seen the last row
+     */
+    CompletionStage<Void> scanValues(String sensorId, int year, int month, int bucket, String metricType,
+                                     MetricValueConsumer consumer);
+
+    /**
+     * Scan metric_type, recorded_at and metric_value of one partition of a sensor+month. Rows without a type or
+     * value are skipped
+     */
+    void scanTypedValues(String sensorId, int year, int month, int bucket, TypedMetricValueConsumer consumer);
+
+    /**
+     * Same as {@link #scanTypedValues(String, int, int, int, TypedMetricValueConsumer)}, restricted to one hour
+     */
+    void scanTypedValues(String sensorId, int year, int month, int bucket, int day, int hour, TypedMetricValueConsumer consumer);
+}
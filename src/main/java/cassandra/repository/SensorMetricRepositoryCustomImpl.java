@@ -0,0 +1,343 @@
+package cassandra.repository;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.convert.CassandraConverter;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.util.CloseableIterator;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SensorMetricRepositoryCustomImpl implements SensorMetricRepositoryCustom {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorMetricRepositoryCustomImpl.class);
+
+    static final String INSERT_CQL = "INSERT INTO sensor_metrics (sensor_id, year, month, bucket, day, hour, recorded_at, " +
+            "metric_type, metric_value, unit, location, status, metadata) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String SCAN_VALUES_CQL = "SELECT recorded_at, metric_type, metric_value FROM sensor_metrics " +
+            "WHERE sensor_id=? AND year=? AND month=? AND bucket=?";
+
+    static final String SCAN_TYPED_VALUES_CQL = "SELECT metric_type, recorded_at, metric_value FROM sensor_metrics " +
+            "WHERE sensor_id=? AND year=? AND month=? AND bucket=?";
+
+    static final String SCAN_HOUR_TYPED_VALUES_CQL = "SELECT metric_type, recorded_at, metric_value FROM sensor_metrics " +
+            "WHERE sensor_id=? AND year=? AND month=? AND bucket=? AND day=? AND hour=?";
+
+    static final String FIND_BY_MONTH_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? AND bucket=?";
+
+    static final String FIND_BY_DAY_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? AND day=? LIMIT ?";
+
+    static final String FIND_PAGE_BY_DAY_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? AND day=?";
+
+    static final String FIND_LATEST_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? LIMIT ?";
+
+    static final String FIND_BY_HOUR_RANGE_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? AND day=? AND hour >= ? AND hour <= ?";
+
+    static final String FIND_TIME_RANGE_CQL = "SELECT * FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? AND (day, hour, recorded_at) >= (?, ?, ?) AND (day, hour, recorded_at) <= (?, ?, ?) LIMIT ?";
+
+    static final String FIND_OLDEST_TIME_CQL = "SELECT recorded_at FROM sensor_metrics WHERE sensor_id=? AND year=? AND month=? " +
+            "AND bucket=? ORDER BY day ASC, hour ASC, recorded_at ASC LIMIT 1";
+
+    static final String SCAN_PARTITION_KEYS_CQL = "SELECT DISTINCT sensor_id, year, month, bucket FROM sensor_metrics " +
+            "WHERE token(sensor_id, year, month, bucket) > ? AND token(sensor_id, year, month, bucket) <= ?";
+
+    private final CqlSession session;
+    private final AsyncWriteThrottle writeThrottle;
+    private final CassandraConverter cassandraConverter;
+    private final TokenRangeScanner tokenRangeScanner;
+    private final int maxBatchSize;
+
+    private final RegisteredStatement insert;
+    private final RegisteredStatement scanValues;
+    private final RegisteredStatement scanTypedValues;
+    private final RegisteredStatement scanHourTypedValues;
+    private final RegisteredStatement findByMonth;
+    private final RegisteredStatement findByDay;
+    private final RegisteredStatement findPageByDay;
+    private final RegisteredStatement findLatest;
+    private final RegisteredStatement findByHourRange;
+    private final RegisteredStatement findTimeRange;
+    private final RegisteredStatement findOldestTime;
+
+    public SensorMetricRepositoryCustomImpl(CqlSession session,
+                                            AsyncWriteThrottle writeThrottle,
+                                            PreparedStatementRegistry statements,
+                                            CassandraConverter cassandraConverter,
+                                            TokenRangeScanner tokenRangeScanner,
+                                            @Value("${sensor.ingest.max-batch-size:100}") int maxBatchSize) {
+        this.session = session;
+        this.writeThrottle = writeThrottle;
+        this.cassandraConverter = cassandraConverter;
+        this.tokenRangeScanner = tokenRangeScanner;
+        this.maxBatchSize = maxBatchSize;
+        this.insert = statements.register("sensor_metrics.insert", INSERT_CQL);
+        this.scanValues = statements.register("sensor_metrics.scan_values", SCAN_VALUES_CQL);
+        this.scanTypedValues = statements.register("sensor_metrics.scan_typed_values", SCAN_TYPED_VALUES_CQL);
+        this.scanHourTypedValues = statements.register("sensor_metrics.scan_hour_typed_values", SCAN_HOUR_TYPED_VALUES_CQL);
+        this.findByMonth = statements.register("sensor_metrics.find_by_month", FIND_BY_MONTH_CQL);
+        this.findByDay = statements.register("sensor_metrics.find_by_day", FIND_BY_DAY_CQL);
+        this.findPageByDay = statements.register("sensor_metrics.find_page_by_day", FIND_PAGE_BY_DAY_CQL);
+        this.findLatest = statements.register("sensor_metrics.find_latest", FIND_LATEST_CQL);
+        this.findByHourRange = statements.register("sensor_metrics.find_by_hour_range", FIND_BY_HOUR_RANGE_CQL);
+        this.findTimeRange = statements.register("sensor_metrics.find_time_range", FIND_TIME_RANGE_CQL);
+        this.findOldestTime = statements.register("sensor_metrics.find_oldest_time", FIND_OLDEST_TIME_CQL);
+    }
+
+    @Override
+    public CloseableIterator<SensorMetric> readBySensorAndMonth(String sensorId, int year, int month, int bucket) {
+        return readAsync(findByMonth, sensorId, year, month, bucket);
+    }
+
+    @Override
+    public CloseableIterator<SensorMetric> readBySensorAndDay(String sensorId, int year, int month, int bucket, int day, int limit) {
+        return readAsync(findByDay, sensorId, year, month, bucket, day, limit);
+    }
+
+    @Override
+    public CloseableIterator<SensorMetric> readLatestMetrics(String sensorId, int year, int month, int bucket, int limit) {
+        return readAsync(findLatest, sensorId, year, month, bucket, limit);
+    }
+
+    @Override
+    public CloseableIterator<SensorMetric> readBySensorAndHourRange(String sensorId, int year, int month, int bucket, int day,
+                                                                    int hourStart, int hourEnd) {
+        return readAsync(findByHourRange, sensorId, year, month, bucket, day, hourStart, hourEnd);
+    }
+
+    @Override
+    public CompletionStage<Slice<SensorMetric>> readPageBySensorAndMonth(String sensorId, int year, int month, int bucket,
+                                                                         Pageable pageable) {
+        return readPage(findByMonth, pageable, sensorId, year, month, bucket);
+    }
+
+    @Override
+    public CompletionStage<Slice<SensorMetric>> readPageBySensorAndDay(String sensorId, int year, int month, int bucket, int day,
+                                                                       Pageable pageable) {
+        return readPage(findPageByDay, pageable, sensorId, year, month, bucket, day);
+    }
+
+    @Override
+    public CloseableIterator<SensorMetric> readRange(String sensorId, int year, int month, int bucket, Instant from, Instant to, int limit) {
+        YearMonth partition = YearMonth.of(year, month);
+        Instant partitionStart = partition.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant partitionEnd = partition.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        // timestamps have millisecond precision, so the exclusive end is the inclusive end minus one millisecond
+        ZonedDateTime lower = max(from, partitionStart).atZone(ZoneOffset.UTC);
+        ZonedDateTime upper = min(to, partitionEnd).minusMillis(1).atZone(ZoneOffset.UTC);
+
+        BoundStatement statement = findTimeRange.bind(sensorId, year, month, bucket,
+                lower.getDayOfMonth(), lower.getHour(), lower.toInstant(),
+                upper.getDayOfMonth(), upper.getHour(), upper.toInstant(),
+                limit);
+        return new AsyncPagingIterator<>(findTimeRange.executeAsync(statement),
+                row -> cassandraConverter.read(SensorMetric.class, row));
+    }
+
+    @Override
+    public Stream<PartitionKey> scanPartitionKeys() {
+        return tokenRangeScanner.stream(SCAN_PARTITION_KEYS_CQL,
+                row -> new PartitionKey(row.getString(0), row.getInt(1), row.getInt(2), row.getInt(3)));
+    }
+
+    @Override
+    public PartitionSample samplePartition(String sensorId, int year, int month, int bucket, int sampleRows) {
+        return PartitionSample.of(findLatest.execute(findLatest.bind(sensorId, year, month, bucket, sampleRows)), sampleRows,
+                row -> row.getInstant("recorded_at").toEpochMilli(),
+                () -> {
+                    Row oldest = findOldestTime.execute(findOldestTime.bind(sensorId, year, month, bucket)).one();
+                    return oldest != null ? oldest.getInstant("recorded_at").toEpochMilli() : 0;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertAllAsync(Collection<SensorMetric> metrics) {
+        Map<List<Object>, List<SensorMetric>> byPartition = metrics.stream()
+                .collect(Collectors.groupingBy(
+                        metric -> Arrays.<Object>asList(metric.getSensorId(), metric.getYear(), metric.getMonth(), metric.getBucket()),
+                        LinkedHashMap::new,
+                        Collectors.toList()));
+
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        for (List<SensorMetric> partition : byPartition.values()) {
+            for (int from = 0; from < partition.size(); from += maxBatchSize) {
+                List<SensorMetric> batch = partition.subList(from, Math.min(partition.size(), from + maxBatchSize));
+                writes.add(write(batch));
+            }
+        }
+
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .thenApply(done -> writes.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    private CompletableFuture<Integer> write(List<SensorMetric> batch) {
+        Statement<?> statement = batch.size() == 1
+                ? bind(batch.get(0))
+                : BatchStatement.newInstance(BatchType.UNLOGGED,
+                        batch.stream().map(this::bind).toArray(BoundStatement[]::new));
+
+        return writeThrottle.submit(() -> insert.executeAsync(statement))
+                .handle((resultSet, error) -> {
+                    if (error != null) {
+                        SensorMetric first = batch.get(0);
+                        LOGGER.warn("Failed to write {} metrics to partition ({}, {}, {}, {})", batch.size(),
+                                first.getSensorId(), first.getYear(), first.getMonth(), first.getBucket(), error);
+                        return 0;
+                    }
+                    return batch.size();
+                })
+                .toCompletableFuture();
+    }
+
+    @Override
+    public CompletionStage<Void> scanValues(String sensorId, int year, int month, int bucket, String metricType,
+                                            MetricValueConsumer consumer) {
+        ByteBuffer wantedType = metricType == null ? null : TypeCodecs.TEXT.encode(metricType, session.getContext().getProtocolVersion());
+        return scanValues.executeAsync(scanValues.bind(sensorId, year, month, bucket))
+                .thenCompose(page -> scanValues(page, wantedType, consumer));
+    }
+
+    /**
+     * Reads the raw cell bytes instead of going through the codecs: a timestamp cell is the
+     * epoch millis as a big-endian long, and the metric type only needs a byte comparison
+     */
+    private static CompletionStage<Void> scanValues(AsyncResultSet page, ByteBuffer wantedType, MetricValueConsumer consumer) {
+        for (Row row : page.currentPage()) {
+            ByteBuffer recordedAt = row.getBytesUnsafe(0);
+            if (recordedAt == null || row.isNull(2)) {
+                continue;
+            }
+            if (wantedType != null && !wantedType.equals(row.getBytesUnsafe(1))) {
+                continue;
+            }
+            consumer.accept(recordedAt.getLong(recordedAt.position()), row.getDouble(2));
+        }
+        if (!page.hasMorePages()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return page.fetchNextPage().thenCompose(next -> scanValues(next, wantedType, consumer));
+    }
+
+    @Override
+    public void scanTypedValues(String sensorId, int year, int month, int bucket, TypedMetricValueConsumer consumer) {
+        scanTypedValues(scanTypedValues.execute(scanTypedValues.bind(sensorId, year, month, bucket)), consumer);
+    }
+
+    @Override
+    public void scanTypedValues(String sensorId, int year, int month, int bucket, int day, int hour,
+                                TypedMetricValueConsumer consumer) {
+        scanTypedValues(scanHourTypedValues.execute(scanHourTypedValues.bind(sensorId, year, month, bucket, day, hour)), consumer);
+    }
+
+    private static void scanTypedValues(ResultSet rows, TypedMetricValueConsumer consumer) {
+        for (Row row : rows) {
+            if (row.isNull(0) || row.isNull(1) || row.isNull(2)) {
+                continue;
+            }
+            consumer.accept(row.getString(0), row.getInstant(1).toEpochMilli(), row.getDouble(2));
+        }
+    }
+
+    /**
+     * Null fields are left unset rather than bound to null, so they don't write tombstones
+     */
+    private BoundStatement bind(SensorMetric metric) {
+        BoundStatementBuilder builder = insert.boundStatementBuilder()
+                .setString(0, metric.getSensorId())
+                .setInt(1, metric.getYear())
+                .setInt(2, metric.getMonth())
+                .setInt(3, metric.getBucket())
+                .setInt(4, metric.getDay())
+                .setInt(5, metric.getHour())
+                .setInstant(6, metric.getRecordedAt().toInstant());
+        if (metric.getMetricType() != null) {
+            builder = builder.setString(7, metric.getMetricType());
+        }
+        if (metric.getMetricValue() != null) {
+            builder = builder.setDouble(8, metric.getMetricValue());
+        }
+        if (metric.getUnit() != null) {
+            builder = builder.setString(9, metric.getUnit());
+        }
+        if (metric.getLocation() != null) {
+            builder = builder.setString(10, metric.getLocation());
+        }
+        if (metric.getStatus() != null) {
+            builder = builder.setString(11, metric.getStatus());
+        }
+        if (metric.getMetadata() != null) {
+            builder = builder.setMap(12, metric.getMetadata(), String.class, String.class);
+        }
+        return builder.build();
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Sends the query right away and maps rows to entities as the iterator pages through the result
+     */
+    private CloseableIterator<SensorMetric> readAsync(RegisteredStatement statement, Object... values) {
+        return new AsyncPagingIterator<>(statement.executeAsync(statement.bind(values)),
+                row -> cassandraConverter.read(SensorMetric.class, row));
+    }
+
+    /**
+     * The same slice the repository proxy builds for a paged query: the next pageable carries the driver
+     * paging state, and there is a next page only when the driver has one
+     */
+    private CompletionStage<Slice<SensorMetric>> readPage(RegisteredStatement statement, Pageable pageable, Object... values) {
+        BoundStatement bound = statement.bind(values).setPageSize(pageable.getPageSize());
+        if (pageable instanceof CassandraPageRequest && ((CassandraPageRequest) pageable).getPagingState() != null) {
+            bound = bound.setPagingState(((CassandraPageRequest) pageable).getPagingState());
+        }
+        return statement.executeAsync(bound).thenApply(page -> {
+            List<SensorMetric> content = new ArrayList<>(page.remaining());
+            for (Row row : page.currentPage()) {
+                content.add(cassandraConverter.read(SensorMetric.class, row));
+            }
+            ByteBuffer pagingState = page.hasMorePages() ? page.getExecutionInfo().getPagingState() : null;
+            return new SliceImpl<>(content, CassandraPageRequest.of(pageable, pagingState), pagingState != null);
+        });
+    }
+}
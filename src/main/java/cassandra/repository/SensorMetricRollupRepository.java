@@ -0,0 +1,206 @@
+package cassandra.repository;
+
+import cassandra.entity.SensorMetricRollup;
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads and maintains the sensor_metrics_hourly and sensor_metrics_daily rollup tables, along with the
+ * bookkeeping that says which months they can answer for (sensor_metric_rollup_coverage) and which hours still
+ * have to be rolled up (sensor_metric_rollup_dirty).
+ * Rollup rows are partitioned by (sensor_id, year), so a range read touches one partition per calendar year.
+ * Rows are only ever replaced by values recomputed from the raw rows, never incremented, and are written with an
+ * explicit write time: the time the recomputation started reading. When two recomputations of the same bucket
+ * race, the one that read later, and so saw at least as many raw rows, wins.
+ */
+@Repository
+public class SensorMetricRollupRepository {
+
+    public enum Resolution {
+        HOURLY("sensor_metrics_hourly", Duration.ofHours(1)),
+        DAILY("sensor_metrics_daily", Duration.ofDays(1));
+
+        private final String table;
+        private final Duration width;
+
+        Resolution(String table, Duration width) {
+            this.table = table;
+            this.width = width;
+        }
+
+        public Duration getWidth() {
+            return width;
+        }
+
+        public long bucketStart(long epochMillis) {
+            long widthMillis = width.toMillis();
+            return Math.floorDiv(epochMillis, widthMillis) * widthMillis;
+        }
+    }
+
+    /**
+     * An hour of a sensor whose raw rows were written but may not be rolled up yet
+     */
+    public static final class DirtyHour {
+
+        private final String sensorId;
+        private final long hourStartMillis;
+
+        public DirtyHour(String sensorId, long hourStartMillis) {
+            this.sensorId = sensorId;
+            this.hourStartMillis = hourStartMillis;
+        }
+
+        public String getSensorId() {
+            return sensorId;
+        }
+
+        public long getHourStartMillis() {
+            return hourStartMillis;
+        }
+    }
+
+    private static final String SELECT_RANGE_CQL = "SELECT bucket_start, metric_type, value_count, value_sum, min_value, " +
+            "max_value, last_value, last_recorded_at FROM %s WHERE sensor_id=? AND year=? AND bucket_start>=? AND bucket_start<?";
+
+    private static final String UPSERT_CQL = "INSERT INTO %s (sensor_id, year, bucket_start, metric_type, value_count, " +
+            "value_sum, min_value, max_value, last_value, last_recorded_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) USING TIMESTAMP ?";
+
+    static final String SELECT_COVERED_CQL = "SELECT year, month FROM sensor_metric_rollup_coverage WHERE sensor_id=?";
+
+    static final String INSERT_COVERED_CQL = "INSERT INTO sensor_metric_rollup_coverage (sensor_id, year, month, covered_at) " +
+            "VALUES (?, ?, ?, ?)";
+
+    static final String INSERT_DIRTY_CQL = "INSERT INTO sensor_metric_rollup_dirty (sensor_id, year, month, hour_start) " +
+            "VALUES (?, ?, ?, ?) USING TIMESTAMP ?";
+
+    static final String DELETE_DIRTY_CQL = "DELETE FROM sensor_metric_rollup_dirty USING TIMESTAMP ? " +
+            "WHERE sensor_id=? AND year=? AND month=? AND hour_start=?";
+
+    static final String SCAN_DIRTY_CQL = "SELECT sensor_id, hour_start FROM sensor_metric_rollup_dirty " +
+            "WHERE token(sensor_id, year, month) > ? AND token(sensor_id, year, month) <= ?";
+
+    private final TokenRangeScanner tokenRangeScanner;
+    private final Map<Resolution, RegisteredStatement> selectRange = new EnumMap<>(Resolution.class);
+    private final Map<Resolution, RegisteredStatement> upsert = new EnumMap<>(Resolution.class);
+    private final RegisteredStatement selectCovered;
+    private final RegisteredStatement insertCovered;
+    private final RegisteredStatement insertDirty;
+    private final RegisteredStatement deleteDirty;
+
+    public SensorMetricRollupRepository(PreparedStatementRegistry statements, TokenRangeScanner tokenRangeScanner) {
+        this.tokenRangeScanner = tokenRangeScanner;
+        for (Resolution resolution : Resolution.values()) {
+            selectRange.put(resolution, statements.register(resolution.table + ".select_range",
+                    String.format(SELECT_RANGE_CQL, resolution.table)));
+            upsert.put(resolution, statements.register(resolution.table + ".upsert",
+                    String.format(UPSERT_CQL, resolution.table)));
+        }
+        this.selectCovered = statements.register("sensor_metric_rollup_coverage.select", SELECT_COVERED_CQL);
+        this.insertCovered = statements.register("sensor_metric_rollup_coverage.insert", INSERT_COVERED_CQL);
+        this.insertDirty = statements.register("sensor_metric_rollup_dirty.insert", INSERT_DIRTY_CQL);
+        this.deleteDirty = statements.register("sensor_metric_rollup_dirty.delete", DELETE_DIRTY_CQL);
+    }
+
+    /**
+     * Replaces bucket rows with recomputed ones
+     *
+     * @param writeTimeMicros when the recomputation started reading the rows it is based on
+     */
+    public CompletableFuture<Void> replaceAsync(Resolution resolution, Collection<SensorMetricRollup> rollups,
+                                                long writeTimeMicros) {
+        RegisteredStatement write = upsert.get(resolution);
+        List<CompletableFuture<?>> writes = new ArrayList<>(rollups.size());
+        for (SensorMetricRollup rollup : rollups) {
+            Instant bucketStart = Instant.ofEpochMilli(rollup.getBucketStartMillis());
+            writes.add(write.executeAsync(write.bind(rollup.getSensorId(), bucketStart.atZone(ZoneOffset.UTC).getYear(),
+                    bucketStart, rollup.getMetricType(), rollup.getCount(), rollup.getSum(), rollup.getMin(),
+                    rollup.getMax(), rollup.getLastValue(), Instant.ofEpochMilli(rollup.getLastRecordedAtMillis()),
+                    writeTimeMicros)).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Visits the rollup rows of a sensor with from <= bucket_start < to, newest bucket first
+     *
+     * @param metricType only visit rows of this metric type, or all of them if null
+     */
+    public void scan(Resolution resolution, String sensorId, Instant from, Instant to, String metricType,
+                     Consumer<SensorMetricRollup> consumer) {
+        RegisteredStatement select = selectRange.get(resolution);
+        int firstYear = from.atZone(ZoneOffset.UTC).getYear();
+        int lastYear = to.minusMillis(1).atZone(ZoneOffset.UTC).getYear();
+        for (int year = lastYear; year >= firstYear; year--) {
+            for (Row row : select.execute(select.bind(sensorId, year, from, to))) {
+                String rowType = row.getString(1);
+                if (metricType != null && !metricType.equals(rowType)) {
+                    continue;
+                }
+                consumer.accept(new SensorMetricRollup(sensorId, rowType, row.getInstant(0).toEpochMilli(),
+                        row.getLong(2), row.getDouble(3), row.getDouble(4), row.getDouble(5),
+                        row.getDouble(6), row.getInstant(7).toEpochMilli()));
+            }
+        }
+    }
+
+    /**
+     * @return the months of the sensor whose raw rows are all reflected in the rollup tables
+     */
+    public Set<YearMonth> coveredMonths(String sensorId) {
+        Set<YearMonth> months = new HashSet<>();
+        for (Row row : selectCovered.execute(selectCovered.bind(sensorId))) {
+            months.add(YearMonth.of(row.getInt(0), row.getInt(1)));
+        }
+        return months;
+    }
+
+    public void markCovered(String sensorId, YearMonth month) {
+        insertCovered.execute(insertCovered.bind(sensorId, month.getYear(), month.getMonthValue(), Instant.now()));
+    }
+
+    /**
+     * Records that raw rows are about to be written to an hour, so the hour is rolled up even if this instance
+     * stops before it gets to it
+     */
+    public CompletableFuture<Void> markDirtyAsync(String sensorId, long hourStartMillis, long writeTimeMicros) {
+        ZonedDateTime hourStart = Instant.ofEpochMilli(hourStartMillis).atZone(ZoneOffset.UTC);
+        return insertDirty.executeAsync(insertDirty.bind(sensorId, hourStart.getYear(), hourStart.getMonthValue(),
+                hourStart.toInstant(), writeTimeMicros)).toCompletableFuture().thenApply(resultSet -> null);
+    }
+
+    /**
+     * Removes the marker of an hour unless it was written after the given time, i.e. by a write the
+     * recomputation that started then cannot have seen
+     */
+    public void clearDirty(String sensorId, long hourStartMillis, long writeTimeMicros) {
+        ZonedDateTime hourStart = Instant.ofEpochMilli(hourStartMillis).atZone(ZoneOffset.UTC);
+        deleteDirty.execute(deleteDirty.bind(writeTimeMicros, sensorId, hourStart.getYear(), hourStart.getMonthValue(),
+                hourStart.toInstant()));
+    }
+
+    /**
+     * Every marked hour of every sensor, meant for recovery at startup. The stream must be closed
+     */
+    public Stream<DirtyHour> scanDirty() {
+        return tokenRangeScanner.stream(SCAN_DIRTY_CQL,
+                row -> new DirtyHour(row.getString(0), row.getInstant(1).toEpochMilli()));
+    }
+}
@@ -0,0 +1,61 @@
+package cassandra.repository;
+
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads system.size_estimates, which every node refreshes periodically from its own SSTables.
+ * The table is node-local: the estimates are those of whichever node coordinates the query,
+ * which is representative as long as data is spread evenly.
+ */
+@Repository
+public class SizeEstimatesRepository {
+
+    static final String FIND_BY_TABLE_CQL = "SELECT partitions_count, mean_partition_size FROM system.size_estimates " +
+            "WHERE keyspace_name=? AND table_name=?";
+
+    private final CqlSession session;
+    private final RegisteredStatement findByTable;
+
+    public SizeEstimatesRepository(CqlSession session, PreparedStatementRegistry statements) {
+        this.session = session;
+        this.findByTable = statements.register("size_estimates.find_by_table", FIND_BY_TABLE_CQL);
+    }
+
+    /**
+     * Sums the token ranges of the table in the session keyspace
+     */
+    public Estimate estimate(String table) {
+        String keyspace = session.getKeyspace().map(CqlIdentifier::asInternal).orElse("");
+        long partitions = 0;
+        double bytes = 0;
+        for (Row row : findByTable.execute(findByTable.bind(keyspace, table))) {
+            long rangePartitions = row.getLong("partitions_count");
+            partitions += rangePartitions;
+            bytes += (double) rangePartitions * row.getLong("mean_partition_size");
+        }
+        return new Estimate(partitions, partitions == 0 ? 0 : Math.round(bytes / partitions));
+    }
+
+    public static final class Estimate {
+
+        private final long partitions;
+        private final long meanPartitionBytes;
+
+        public Estimate(long partitions, long meanPartitionBytes) {
+            this.partitions = partitions;
+            this.meanPartitionBytes = meanPartitionBytes;
+        }
+
+        public long getPartitions() {
+            return partitions;
+        }
+
+        public long getMeanPartitionBytes() {
+            return meanPartitionBytes;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Full-table scans split along the token ring.
+ * Instead of one coordinator walking the whole table, the ring is cut into subranges that are read
+ * concurrently on a bounded pool, each with a {@code token(pk) > ? AND token(pk) <= ?} query that is
+ * routed to a replica owning the range. Meant for admin and export jobs, not for request paths.
+ * <p>
+ * The pool is shared by all scans, so no scan may hold its threads hostage: each scan runs at most
+ * {@code cassandra.scan.reads-per-scan} reads at a time, and a read that finds the scan's buffer full
+ * gives its thread back and is resumed from its paging state once the consumer has drained the buffer.
+ */
+@Component
+public class TokenRangeScanner {
+
+    private static final Object END = new Object();
+
+    private final CqlSession session;
+    private final int splits;
+    private final int bufferSize;
+    private final int readsPerScan;
+    private final ExecutorService executor;
+    private final Map<String, PreparedStatement> preparedStatements = new ConcurrentHashMap<>();
+
+    public TokenRangeScanner(CqlSession session,
+                             @Value("${cassandra.scan.parallelism:8}") int parallelism,
+                             @Value("${cassandra.scan.reads-per-scan:2}") int readsPerScan,
+                             @Value("${cassandra.scan.splits:64}") int splits,
+                             @Value("${cassandra.scan.buffer-size:10000}") int bufferSize) {
+        this.session = session;
+        this.splits = splits;
+        this.bufferSize = bufferSize;
+        this.readsPerScan = Math.max(1, Math.min(readsPerScan, parallelism));
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "token-range-scan-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Rows of all subranges, in no particular order. Subranges are read ahead into a bounded buffer,
+     * so a slow consumer holds back its own scan instead of filling the heap or blocking other scans;
+     * callers must close the stream
+     *
+     * @param cql a query whose only bind markers are the exclusive start and inclusive end token,
+     *            e.g. {@code SELECT * FROM t WHERE token(pk) > ? AND token(pk) <= ?}
+     */
+    public <T> Stream<T> stream(String cql, Function<Row, T> mapper) {
+        PreparedStatement statement = preparedStatements.computeIfAbsent(cql, session::prepare);
+        Scan<T> scan = new Scan<>(statement, mapper, split());
+        scan.schedule();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan, Spliterator.NONNULL), false)
+                .onClose(scan::close);
+    }
+
+    /**
+     * Splits every range of the token map evenly so there are about {@link #splits} subranges in total,
+     * and unwraps the range that wraps around the end of the ring, since CQL token bounds cannot wrap
+     */
+    List<TokenRange> split() {
+        TokenMap tokenMap = session.getMetadata().getTokenMap()
+                .orElseThrow(() -> new IllegalStateException("Token metadata is not available; enable it in the driver configuration"));
+        List<TokenRange> result = new ArrayList<>();
+        for (TokenRange range : tokenMap.getTokenRanges()) {
+            int pieces = Math.max(range.isFullRing() ? 2 : 1, (int) Math.ceil((double) splits / tokenMap.getTokenRanges().size()));
+            for (TokenRange piece : range.splitEvenly(pieces)) {
+                result.addAll(piece.unwrap());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called on a pool thread when a read has found the buffer full, before it is parked
+     */
+    void beforePark() {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One running scan: the ranges still to read, the reads parked on a full buffer,
+     * and the buffer the consumer iterates
+     */
+    private final class Scan<T> implements Iterator<T> {
+
+        private final PreparedStatement statement;
+        private final Function<Row, T> mapper;
+        private final BlockingQueue<Object> rows = new ArrayBlockingQueue<>(bufferSize);
+        private final Deque<RangeRead> pending = new ConcurrentLinkedDeque<>();
+        private final Queue<RangeRead> parked = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final int resumeAt = Math.max(1, bufferSize / 2);
+        private volatile boolean closed;
+        private Object next;
+
+        Scan(PreparedStatement statement, Function<Row, T> mapper, List<TokenRange> ranges) {
+            this.statement = statement;
+            this.mapper = mapper;
+            this.remaining = new AtomicInteger(ranges.size());
+            for (TokenRange range : ranges) {
+                pending.add(new RangeRead(range));
+            }
+            if (ranges.isEmpty()) {
+                rows.add(END);
+            }
+        }
+
+        /**
+         * Starts reads until this scan uses its share of the pool or nothing is left to start
+         */
+        void schedule() {
+            while (!closed && !pending.isEmpty()) {
+                int current = running.get();
+                if (current >= readsPerScan) {
+                    return;
+                }
+                if (running.compareAndSet(current, current + 1)) {
+                    RangeRead read = pending.poll();
+                    if (read == null) {
+                        running.decrementAndGet();
+                        return;
+                    }
+                    executor.execute(() -> run(read));
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            pending.clear();
+            parked.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                if (!parked.isEmpty() && rows.remainingCapacity() >= resumeAt) {
+                    resume();
+                }
+                try {
+                    next = rows.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for token range scan rows", e);
+                }
+            }
+            if (next instanceof ScanFailure) {
+                throw ((ScanFailure) next).toException();
+            }
+            return next != END;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T row = (T) next;
+            next = null;
+            return row;
+        }
+
+        /**
+         * Parked reads go ahead of ranges not started yet, so open paging states are finished first
+         */
+        private void resume() {
+            RangeRead read;
+            while ((read = parked.poll()) != null) {
+                pending.addFirst(read);
+            }
+            schedule();
+        }
+
+        /**
+         * Reads ranges on a pool thread until the buffer is full or nothing is left to read
+         */
+        private void run(RangeRead first) {
+            RangeRead read = first;
+            while (read != null && !closed) {
+                if (!advance(read)) {
+                    beforePark();
+                    parked.add(read);
+                    // the consumer may have drained the buffer before the read was parked, and only
+                    // looks for parked reads before it waits
+                    if (rows.remainingCapacity() >= resumeAt) {
+                        resume();
+                    }
+                    break;
+                }
+                read = pending.poll();
+            }
+            running.decrementAndGet();
+            // the consumer may have resumed reads while this one still counted as running
+            schedule();
+        }
+
+        /**
+         * @return false if the buffer filled up before the range was read to its end
+         */
+        private boolean advance(RangeRead read) {
+            while (!closed) {
+                Object row;
+                while ((row = read.buffered.peek()) != null) {
+                    if (!rows.offer(row)) {
+                        return false;
+                    }
+                    read.buffered.poll();
+                }
+                if (read.done) {
+                    return true;
+                }
+                if (read.exhausted) {
+                    read.done = true;
+                    if (remaining.decrementAndGet() == 0) {
+                        read.buffered.add(END);
+                    }
+                } else {
+                    try {
+                        fetchPage(read);
+                    } catch (RuntimeException e) {
+                        read.buffered.add(new ScanFailure(read.range, e));
+                        read.exhausted = true;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Buffers the rows of the next page only, so a parked read holds at most one page
+         */
+        private void fetchPage(RangeRead read) {
+            BoundStatementBuilder builder = statement.boundStatementBuilder()
+                    .setToken(0, read.range.getStart())
+                    .setToken(1, read.range.getEnd());
+            if (read.pagingState != null) {
+                builder.setPagingState(read.pagingState);
+            }
+            ResultSet page = session.execute(builder.build());
+            for (int available = page.getAvailableWithoutFetching(); available > 0; available--) {
+                read.buffered.add(mapper.apply(page.one()));
+            }
+            read.pagingState = page.getExecutionInfo().getPagingState();
+            read.exhausted = read.pagingState == null;
+        }
+    }
+
+    /**
+     * Position of one subrange read; touched by one pool thread at a time
+     */
+    private static final class RangeRead {
+
+        private final TokenRange range;
+        private final Queue<Object> buffered = new ArrayDeque<>();
+        private ByteBuffer pagingState;
+        private boolean exhausted;
+        private boolean done;
+
+        RangeRead(TokenRange range) {
+            this.range = range;
+        }
+    }
+
+    private static final class ScanFailure {
+
+        private final TokenRange range;
+        private final RuntimeException cause;
+
+        ScanFailure(TokenRange range, RuntimeException cause) {
+            this.range = range;
+            this.cause = cause;
+        }
+
+        IllegalStateException toException() {
+            return new IllegalStateException("Failed to scan token range " + range, cause);
+        }
+    }
+}
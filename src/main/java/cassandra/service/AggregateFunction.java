@@ -0,0 +1,30 @@
+package cassandra.service;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Aggregates that can be computed per time bucket over sensor metric values
+ */
+public enum AggregateFunction {
+    AVG, MIN, MAX, COUNT, SUM;
+
+    /**
+     * Parse a comma separated list such as {@code avg,min,max,count}
+     *
+     * @throws IllegalArgumentException on an unknown or empty function list
+     */
+    public static Set<AggregateFunction> parse(String functions) {
+        Set<AggregateFunction> parsed = EnumSet.noneOf(AggregateFunction.class);
+        for (String function : functions.split(",")) {
+            if (!function.trim().isEmpty()) {
+                parsed.add(valueOf(function.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("At least one aggregate function is required");
+        }
+        return parsed;
+    }
+}
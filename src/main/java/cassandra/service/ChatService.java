@@ -2,19 +2,38 @@ package cassandra.service;
 
 import cassandra.dto.ChatMessageDTO;
 import cassandra.dto.ConversationDTO;
+import cassandra.dto.PageDTO;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface ChatService {
 
     /**
-     * Get all conversations
+     * Stream all conversations in token order without materializing the table.
+     * Rows are fetched page by page as the stream is consumed; callers must close the stream
      */
-    List<ConversationDTO> getAllConversations();
+    Stream<ConversationDTO> streamAllConversations();
 
     /**
-     * Get a specific conversation by ID
+     * Get one page of all conversations, in token order.
+     * Pass the returned cursor back to continue; a null or empty cursor starts from the beginning
+     */
+    PageDTO<ConversationDTO> getConversationsPage(int size, String cursor);
+
+    /**
+     * Stream all conversations for export, reading token subranges of the table in parallel.
+     * Conversations arrive in no particular order; callers must close the stream
+     */
+    Stream<ConversationDTO> exportAllConversations();
+
+    /**
+     * Get a specific conversation by ID.
+     * Read through the conversations cache, so results may be up to the cache TTL old
      */
     ConversationDTO getConversationById(UUID conversationId);
 
@@ -24,7 +43,64 @@ public interface ChatService {
     List<ChatMessageDTO> getMessagesByConversationId(UUID conversationId);
 
     /**
-     * Get the latest N messages from a conversation
+     * Stream all messages of a conversation, newest first, without materializing the partition.
+     * Rows are fetched page by page as the stream is consumed; callers must close the stream
+     */
+    Stream<ChatMessageDTO> streamMessagesByConversationId(UUID conversationId);
+
+    /**
+     * Get a bounded slice of a conversation relative to messages the client already holds.
+     * With since only, returns messages newer than since, oldest first (continue with the last one returned);
+     * with before only, returns messages older than before, newest first (continue with the last one returned);
+     * with both, returns the messages between them, oldest first
+     *
+     * @throws IllegalArgumentException if since or before is not a time-based UUID
+     */
+    List<ChatMessageDTO> getMessagesInRange(UUID conversationId, UUID since, UUID before, int limit);
+
+    /**
+     * Get the latest N messages from a conversation, newest first.
+     * Limits up to the message tail size are served from the in-memory tail of the conversation
      */
     List<ChatMessageDTO> getLatestMessages(UUID conversationId, int limit);
+
+    /**
+     * Non-blocking read of all messages of a conversation, newest first.
+     * Driver pages are requested as the subscriber demands rows, so no thread waits on the cluster
+     */
+    Flux<ChatMessageDTO> fluxMessagesByConversationId(UUID conversationId);
+
+    /**
+     * Non-blocking variant of {@link #getLatestMessages}; a cached message tail is used when present,
+     * but a missing tail is read without loading it into the cache
+     */
+    Flux<ChatMessageDTO> fluxLatestMessages(UUID conversationId, int limit);
+
+    /**
+     * Get one page of messages from a conversation, newest first.
+     * Pass the returned cursor back to continue; a null or empty cursor starts from the newest message
+     */
+    PageDTO<ChatMessageDTO> getMessagesPage(UUID conversationId, int size, String cursor);
+
+    /**
+     * Post a message to a conversation. The message id is a timeuuid generated here, and the message
+     * and the conversation's last_message_time are written in a single logged batch. A conversation that is
+     * not cached is read first, asynchronously, since writing the batch for one that does not exist would create it
+     *
+     * @return a future completing with the stored message once the cluster acknowledged the write,
+     * or with null if the conversation does not exist
+     * @throws IllegalArgumentException if the message has no senderId or messageText
+     */
+    CompletableFuture<ChatMessageDTO> postMessage(UUID conversationId, ChatMessageDTO message);
+
+    /**
+     * Push new messages of a conversation to a listener as they are posted through this instance.
+     * When afterMessageId is given, messages newer than it are replayed first, oldest first, so a reconnecting
+     * client resumes where it stopped. The listener is called one message at a time on a push thread;
+     * if it throws, or falls too far behind, the subscription is closed
+     *
+     * @param onClose called once when the subscription is closed for any reason
+     * @return an action that closes the subscription
+     */
+    Runnable subscribe(UUID conversationId, UUID afterMessageId, Consumer<ChatMessageDTO> listener, Runnable onClose);
 }
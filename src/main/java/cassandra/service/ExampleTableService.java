@@ -1,11 +1,31 @@
 package cassandra.service;
 
 import cassandra.dto.ExampleTableDTO;
+import cassandra.dto.IngestResultDTO;
 
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 public interface ExampleTableService {
 
     Collection<ExampleTableDTO> findByTextField1(String textField1);
 
+    /**
+     * Stream a whole text_field_1 partition without materializing it.
+     * Rows are fetched page by page as the stream is consumed; callers must close the stream
+     */
+    Stream<ExampleTableDTO> streamByTextField1(String textField1);
+
+    /**
+     * Bulk-load CSV rows with the columns text_field_2, int_field_1, int_field_2, text_field_1.
+     * The input is parsed and written incrementally, so it is never held in memory as a whole.
+     * Rows that cannot be converted or lack text_field_1/text_field_2 are counted as rejected
+     *
+     * @throws IllegalArgumentException   if the input is not parseable CSV
+     * @throws RejectedExecutionException if the maximum number of concurrent imports is already running
+     */
+    IngestResultDTO importCsv(InputStream csv, boolean headerRow);
+
 }
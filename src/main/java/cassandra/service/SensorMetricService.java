@@ -1,8 +1,21 @@
 package cassandra.service;
 
+import cassandra.dto.IngestResultDTO;
+import cassandra.dto.MultiSensorMetricsDTO;
+import cassandra.dto.PageDTO;
+import cassandra.dto.SensorLatestValueDTO;
+import cassandra.dto.SensorMetricAggregateDTO;
 import cassandra.dto.SensorMetricDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface SensorMetricService {
 
@@ -12,18 +25,115 @@ public interface SensorMetricService {
      */
     List<SensorMetricDTO> getMetricsBySensorAndMonth(String sensorId, int year, int month);
 
+    /**
+     * Stream all metrics for a sensor in a specific month without materializing the partition.
+     * Rows are fetched page by page as the stream is consumed; callers must close the stream
+     */
+    Stream<SensorMetricDTO> streamMetricsBySensorAndMonth(String sensorId, int year, int month);
+
+    /**
+     * Stream the metrics of a sensor with from <= recordedAt < to, newest first, across every month partition
+     * the range covers. Partitions are read a few at a time ahead of the consumer, and reading stops once
+     * limit metrics have been returned; callers must close the stream. The arguments are checked when the
+     * stream is created, before any partition is queried
+     *
+     * @throws IllegalArgumentException if from is not before to, the range is longer than
+     *                                  sensor.range.max-span-days or limit is not positive
+     */
+    Stream<SensorMetricDTO> streamMetricsBySensorAndRange(String sensorId, Instant from, Instant to, int limit);
+
+    /**
+     * Non-blocking read of a whole sensor+month partition, newest first.
+     * Driver pages are requested as the subscriber demands rows, so no thread waits on the cluster
+     */
+    Flux<SensorMetricDTO> fluxMetricsBySensorAndMonth(String sensorId, int year, int month);
+
     /**
      * Get metrics for a specific day with pagination
      */
     List<SensorMetricDTO> getMetricsBySensorAndDay(String sensorId, int year, int month, int day, int limit);
 
+    /**
+     * Get one page of a sensor+month partition, newest first.
+     * Pass the returned cursor back to continue; a null or empty cursor starts from the newest metric
+     */
+    PageDTO<SensorMetricDTO> getMetricsPageBySensorAndMonth(String sensorId, int year, int month, int size, String cursor);
+
+    /**
+     * Get one page of the metrics for a specific day, continuing from the given cursor
+     */
+    PageDTO<SensorMetricDTO> getMetricsPageBySensorAndDay(String sensorId, int year, int month, int day, int size, String cursor);
+
     /**
      * Get the latest N metrics for a sensor in a month
      */
     List<SensorMetricDTO> getLatestMetrics(String sensorId, int year, int month, int limit);
 
+    /**
+     * Non-blocking variant of {@link #getLatestMetrics}
+     */
+    Flux<SensorMetricDTO> fluxLatestMetrics(String sensorId, int year, int month, int limit);
+
+    /**
+     * Get the latest N metrics of several sensors at once. The partitions are read concurrently under a
+     * per-request concurrency cap and deadline; sensors that fail or miss the deadline are reported in the
+     * result's errors while the others are still returned
+     */
+    Mono<MultiSensorMetricsDTO> getLatestMetrics(Collection<String> sensorIds, int year, int month, int limit);
+
+    /**
+     * Get the most recent value of every metric type of the given sensors from the in-memory index.
+     * Requested sensors the index does not know, or has not reloaded within sensor.latest-index.ttl-ms,
+     * are read from Cassandra first, waiting at most sensor.latest-index.read-through-timeout-ms for all of them
+     * together; without sensor IDs the index is returned as it is, at most
+     * sensor.latest-index.refresh-ms behind writes made through other instances
+     *
+     * @param sensorIds the sensors to return, or null for every known sensor
+     */
+    List<SensorLatestValueDTO> getLatestValues(Collection<String> sensorIds);
+
     /**
      * Get metrics for a specific hour range on a day
      */
     List<SensorMetricDTO> getMetricsByHourRange(String sensorId, int year, int month, int day, int hourStart, int hourEnd);
+
+    /**
+     * Downsample a sensor+month partition into fixed-width buckets (aligned to the epoch, UTC), newest bucket first.
+     * Aggregates are computed while streaming over the partition, so the result size depends on the number
+     * of buckets rather than the number of rows
+     *
+     * @param metricType only aggregate rows of this metric type, or all rows when null
+     */
+    List<SensorMetricAggregateDTO> aggregateMetrics(String sensorId, int year, int month, String metricType,
+                                                    Duration bucket, Set<AggregateFunction> functions);
+
+    /**
+     * Downsample a sensor over the range from (inclusive) to to (exclusive), which may span several months.
+     * When the bucket width and the range are whole hours or days, the result is computed from the coarsest
+     * matching rollup table, so the cost depends on the number of buckets rather than the number of rows;
+     * otherwise, and for months the rollups do not cover yet, the raw month partitions are scanned
+     *
+     * @param metricType only aggregate rows of this metric type, or all rows when null
+     */
+    List<SensorMetricAggregateDTO> aggregateMetrics(String sensorId, Instant from, Instant to, String metricType,
+                                                    Duration bucket, Set<AggregateFunction> functions);
+
+    /**
+     * Bulk-write metrics, consuming the iterator in chunks so arbitrarily large uploads are never held in memory.
+     * year/month/day/hour are derived from recordedAt (UTC); rows without a sensorId or recordedAt, rows
+     * whose year/month/day/hour disagree with recordedAt and null rows (values the caller could not read)
+     * are rejected
+     */
+    IngestResultDTO ingestMetrics(Iterator<SensorMetricDTO> metrics);
+
+    /**
+     * Queue metrics in the write-behind buffer; they are written coalesced per partition shortly after.
+     * All metrics are accepted or none are
+     *
+     * @throws IllegalArgumentException if a metric has no sensorId or recordedAt, or a year, month, day or hour
+     *                                  that disagrees with recordedAt, or if there are more metrics than the
+     *                                  buffer can hold
+     * @throws WriteBufferFullException if the buffer has no room for the metrics
+     */
+    void bufferMetrics(List<SensorMetricDTO> metrics);
 }
@@ -0,0 +1,11 @@
+package cassandra.service;
+
+/**
+ * Thrown when the write-behind buffer has no room left for the submitted points
+ */
+public class WriteBufferFullException extends RuntimeException {
+
+    public WriteBufferFullException(int points, int capacity) {
+        super("Write buffer cannot take " + points + " more points (capacity " + capacity + ")");
+    }
+}
@@ -0,0 +1,104 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ChatMessageDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * In-process fan-out of newly written chat messages to the subscribers of their conversation.
+ * Conversations without subscribers have no entry, so publishing to them is a single map lookup.
+ * Only messages written through this application instance are published.
+ */
+@Component
+public class ChatMessageBroadcaster {
+
+    private final Map<UUID, Set<Consumer<ChatMessageDTO>>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService pushExecutor;
+    private final ExecutorService sendExecutor;
+    private final int maxQueuedPerSubscriber;
+    private final long maxSendMillis;
+
+    public ChatMessageBroadcaster(@Value("${chat.push.threads:4}") int pushThreads,
+                                  @Value("${chat.push.max-queued:1000}") int maxQueuedPerSubscriber,
+                                  @Value("${chat.push.max-send-ms:1000}") long maxSendMillis) {
+        this.maxQueuedPerSubscriber = maxQueuedPerSubscriber;
+        this.maxSendMillis = maxSendMillis;
+        AtomicInteger threads = new AtomicInteger();
+        this.pushExecutor = Executors.newFixedThreadPool(pushThreads, runnable -> {
+            Thread thread = new Thread(runnable, "chat-push-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // one thread per send in progress: at most one per push thread, plus one per stalled client until
+        // its write fails, which subscriptions give up on after chat.push.max-send-ms
+        AtomicInteger senders = new AtomicInteger();
+        this.sendExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "chat-push-send-" + senders.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a subscriber whose listener is called one message at a time on behalf of the push pool.
+     * Delivery starts once {@link ChatMessageSubscription#start} has replayed any missed messages
+     *
+     * @param onClose called once when the subscription is closed, by the subscriber or because it fell behind
+     *                or took longer than chat.push.max-send-ms for one message
+     */
+    ChatMessageSubscription open(UUID conversationId, Consumer<ChatMessageDTO> listener, Runnable onClose) {
+        AtomicReference<ChatMessageSubscription> self = new AtomicReference<>();
+        ChatMessageSubscription subscription = new ChatMessageSubscription(listener, pushExecutor, sendExecutor, maxQueuedPerSubscriber, maxSendMillis, () -> {
+            unsubscribe(conversationId, self.get());
+            onClose.run();
+        });
+        self.set(subscription);
+        subscribe(conversationId, subscription);
+        return subscription;
+    }
+
+    /**
+     * Listeners are called on the publishing thread and must not block
+     */
+    public void subscribe(UUID conversationId, Consumer<ChatMessageDTO> listener) {
+        subscribers.computeIfAbsent(conversationId, id -> new CopyOnWriteArraySet<>()).add(listener);
+    }
+
+    public void unsubscribe(UUID conversationId, Consumer<ChatMessageDTO> listener) {
+        subscribers.computeIfPresent(conversationId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    public void publish(ChatMessageDTO message) {
+        Set<Consumer<ChatMessageDTO>> listeners = subscribers.get(message.getConversationId());
+        if (listeners != null) {
+            for (Consumer<ChatMessageDTO> listener : listeners) {
+                listener.accept(message);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pushExecutor.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,201 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ChatMessageDTO;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * One subscriber of a conversation. Messages from the broadcaster are queued and handed to the
+ * listener one at a time on the push executor, so a slow listener never blocks the writer that
+ * published the message. The push executor is shared by all subscribers, so a subscriber gets it
+ * for at most {@link #DRAIN_BATCH} messages at a time, replayed history included, and a subscriber
+ * is closed when it falls more than the queue limit behind or when one delivery takes longer than
+ * the send limit; it can reconnect and resume from the last message it received.
+ * The listener may block, e.g. on a socket write to a stalled client, so it is called on a separate send
+ * executor while the push thread waits for it for at most the send limit; past that the push thread
+ * goes back to the other subscribers and leaves the stalled write, and the close callback, to the send thread.
+ */
+final class ChatMessageSubscription implements Consumer<ChatMessageDTO> {
+
+    static final int DRAIN_BATCH = 32;
+
+    private final Consumer<ChatMessageDTO> listener;
+    private final Executor executor;
+    private final Executor sendExecutor;
+    private final int maxQueued;
+    private final long maxSendNanos;
+    private final Runnable onClose;
+
+    private final Queue<ChatMessageDTO> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(true);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Missed messages still to replay; only touched by the thread that holds {@link #draining}
+     */
+    private Stream<ChatMessageDTO> replay;
+    private Iterator<ChatMessageDTO> replayed;
+
+    /**
+     * Newest replayed message; live messages up to it were already delivered by the replay
+     */
+    private UUID replayedUpTo;
+
+    /**
+     * @param executor     the shared push executor, which drains the queue
+     * @param sendExecutor calls the listener; needs a free thread for every send that can block at once
+     */
+    ChatMessageSubscription(Consumer<ChatMessageDTO> listener, Executor executor, Executor sendExecutor, int maxQueued,
+                            long maxSendMillis, Runnable onClose) {
+        this.listener = listener;
+        this.executor = executor;
+        this.sendExecutor = sendExecutor;
+        this.maxQueued = maxQueued;
+        this.maxSendNanos = TimeUnit.MILLISECONDS.toNanos(maxSendMillis);
+        this.onClose = onClose;
+    }
+
+    /**
+     * Delivers the replayed messages, oldest first, then everything published since the subscription
+     * was registered. Live delivery is held back until the replay is done
+     */
+    void start(Supplier<Stream<ChatMessageDTO>> replay) {
+        executor.execute(() -> {
+            if (!closed.get()) {
+                try {
+                    this.replay = replay.get();
+                    this.replayed = this.replay.iterator();
+                } catch (RuntimeException e) {
+                    close();
+                }
+            }
+            drain();
+        });
+    }
+
+    @Override
+    public void accept(ChatMessageDTO message) {
+        if (closed.get()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            close();
+            return;
+        }
+        queue.add(message);
+        scheduleDrain();
+    }
+
+    void close() {
+        close(Runnable::run);
+    }
+
+    /**
+     * @param callbacks runs onClose
+     */
+    private void close(Executor callbacks) {
+        if (closed.compareAndSet(false, true)) {
+            queue.clear();
+            // a running drain closes the replay itself once it sees the flag
+            if (draining.compareAndSet(false, true)) {
+                closeReplay();
+                draining.set(false);
+            }
+            callbacks.execute(onClose);
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    private void scheduleDrain() {
+        if (!closed.get() && (replayed != null || !queue.isEmpty()) && draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Delivers up to one batch, then gives the thread back and queues the rest behind other subscribers
+     */
+    private void drain() {
+        try {
+            ChatMessageDTO message;
+            for (int budget = DRAIN_BATCH; budget > 0 && !closed.get() && (message = nextMessage()) != null; budget--) {
+                send(message);
+            }
+        } catch (RuntimeException e) {
+            close();
+        } finally {
+            if (closed.get()) {
+                closeReplay();
+            }
+            draining.set(false);
+        }
+        scheduleDrain();
+    }
+
+    private void send(ChatMessageDTO message) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> send = CompletableFuture.runAsync(() -> listener.accept(message), sendExecutor);
+        try {
+            send.get(maxSendNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // the write is still blocked, and closing the client's stream usually waits for it
+            close(sendExecutor);
+            return;
+        } catch (ExecutionException e) {
+            close();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            return;
+        }
+        if (System.nanoTime() - started > maxSendNanos) {
+            close();
+        }
+    }
+
+    private ChatMessageDTO nextMessage() {
+        if (replayed != null) {
+            if (replayed.hasNext()) {
+                ChatMessageDTO message = replayed.next();
+                replayedUpTo = message.getMessageId();
+                return message;
+            }
+            closeReplay();
+        }
+        ChatMessageDTO message;
+        while ((message = queue.poll()) != null) {
+            queued.decrementAndGet();
+            if (replayedUpTo == null
+                    || ChatMessageTailCache.MESSAGE_ID_DESC.compare(message.getMessageId(), replayedUpTo) < 0) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private void closeReplay() {
+        if (replay != null) {
+            replay.close();
+            replay = null;
+            replayed = null;
+        }
+    }
+}
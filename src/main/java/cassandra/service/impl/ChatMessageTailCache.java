@@ -0,0 +1,174 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ChatMessageDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The newest N messages of each recently read conversation, in message_id DESC order like the
+ * chat_messages clustering order. A conversation's tail is loaded on its first read and kept current
+ * by {@link #onMessageWritten}; tails are evicted across conversations once their estimated size
+ * exceeds the memory budget.
+ * Messages written through another application instance only show up once the tail expires, ttl-seconds
+ * after it was loaded; adding messages written through this instance does not postpone that.
+ */
+@Component
+public class ChatMessageTailCache {
+
+    /**
+     * Newest first, by the time component of the timeuuid and then by the rest of its bits
+     */
+    static final Comparator<UUID> MESSAGE_ID_DESC = Comparator.comparingLong(UUID::timestamp)
+            .thenComparing(Comparator.naturalOrder())
+            .reversed();
+
+    private final int tailSize;
+    private final Cache<UUID, MessageTail> tails;
+
+    @Autowired
+    public ChatMessageTailCache(MeterRegistry meterRegistry,
+                                @Value("${chat.cache.message-tail.size:50}") int tailSize,
+                                @Value("${chat.cache.message-tail.max-weight-bytes:67108864}") long maxWeightBytes,
+                                @Value("${chat.cache.message-tail.ttl-seconds:300}") long ttlSeconds) {
+        this(meterRegistry, tailSize, maxWeightBytes, ttlSeconds, Ticker.systemTicker());
+    }
+
+    ChatMessageTailCache(MeterRegistry meterRegistry, int tailSize, long maxWeightBytes, long ttlSeconds, Ticker ticker) {
+        this.tailSize = tailSize;
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.tails = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((UUID conversationId, MessageTail tail) -> tail.weight)
+                // like expireAfterWrite, except that a tail updated by onMessageWritten keeps its load time:
+                // restarting the clock on every local message would keep a busy tail forever
+                .expireAfter(new Expiry<UUID, MessageTail>() {
+                    @Override
+                    public long expireAfterCreate(UUID conversationId, MessageTail tail, long currentTime) {
+                        return ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID conversationId, MessageTail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID conversationId, MessageTail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tails, "chat.message_tail");
+    }
+
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * @param limit at most {@link #getTailSize()}
+     * @param loader loads the newest messages of the conversation, newest first, when its tail is not cached
+     */
+    public List<ChatMessageDTO> getLatest(UUID conversationId, int limit, Function<Integer, List<ChatMessageDTO>> loader) {
+        if (limit > tailSize) {
+            throw new IllegalArgumentException("limit " + limit + " exceeds the cached tail size " + tailSize);
+        }
+        MessageTail tail = tails.get(conversationId, id -> new MessageTail(loader.apply(tailSize).toArray(new ChatMessageDTO[0])));
+        return tail.newest(limit);
+    }
+
+    /**
+     * @param limit at most {@link #getTailSize()}
+     * @return the newest messages of the conversation, or null if its tail is not cached
+     */
+    public List<ChatMessageDTO> getLatestIfPresent(UUID conversationId, int limit) {
+        MessageTail tail = tails.getIfPresent(conversationId);
+        return tail != null ? tail.newest(limit) : null;
+    }
+
+    /**
+     * Adds a newly written message to its conversation's tail, if that tail is cached.
+     * Safe to call for a message the tail already holds
+     */
+    public void onMessageWritten(ChatMessageDTO message) {
+        tails.asMap().computeIfPresent(message.getConversationId(), (id, tail) -> tail.with(message, tailSize));
+    }
+
+    public void evict(UUID conversationId) {
+        tails.invalidate(conversationId);
+    }
+
+    /**
+     * Immutable, so readers never need to lock; writes replace the whole tail
+     */
+    static final class MessageTail {
+
+        private final ChatMessageDTO[] messages;
+        private final int weight;
+
+        MessageTail(ChatMessageDTO[] messages) {
+            this.messages = messages;
+            int size = 64;
+            for (ChatMessageDTO message : messages) {
+                size += estimateSize(message);
+            }
+            this.weight = size;
+        }
+
+        List<ChatMessageDTO> newest(int limit) {
+            return Collections.unmodifiableList(new ArrayList<>(
+                    Arrays.asList(messages).subList(0, Math.min(limit, messages.length))));
+        }
+
+        MessageTail with(ChatMessageDTO message, int tailSize) {
+            int position = 0;
+            while (position < messages.length) {
+                int order = MESSAGE_ID_DESC.compare(message.getMessageId(), messages[position].getMessageId());
+                if (order == 0) {
+                    return this;
+                }
+                if (order < 0) {
+                    break;
+                }
+                position++;
+            }
+            if (position >= tailSize) {
+                return this;
+            }
+            ChatMessageDTO[] updated = new ChatMessageDTO[Math.min(tailSize, messages.length + 1)];
+            System.arraycopy(messages, 0, updated, 0, position);
+            updated[position] = message;
+            System.arraycopy(messages, position, updated, position + 1, updated.length - position - 1);
+            return new MessageTail(updated);
+        }
+
+        /**
+         * Rough retained size in bytes: object headers and references, plus two bytes per character of text
+         */
+        private static int estimateSize(ChatMessageDTO message) {
+            return 200 + 2 * (length(message.getSenderId()) + length(message.getSenderName()) + length(message.getMessageText()));
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
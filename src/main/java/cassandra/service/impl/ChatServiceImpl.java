@@ -1,66 +1,89 @@
 package cassandra.service.impl;
 
+import cassandra.config.CacheConfig;
 import cassandra.dto.ChatMessageDTO;
 import cassandra.dto.ConversationDTO;
+import cassandra.dto.PageDTO;
 import cassandra.entity.ChatMessage;
 import cassandra.entity.Conversation;
 import cassandra.repository.ChatMessageRepository;
 import cassandra.repository.ConversationRepository;
+import cassandra.repository.ReactiveChatMessageRepository;
 import cassandra.service.ChatService;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
-import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ChatServiceImpl implements ChatService {
 
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ReactiveChatMessageRepository reactiveChatMessageRepository;
+    private final ChatMessageTailCache messageTailCache;
+    private final ChatMessageBroadcaster broadcaster;
+    private final PartitionWriteTracker partitionWriteTracker;
+    private final Cache conversationCache;
+    private final ConcurrentMap<Object, Object> conversationEntries;
 
     @Autowired
     public ChatServiceImpl(ConversationRepository conversationRepository,
-                          ChatMessageRepository chatMessageRepository) {
+                          ChatMessageRepository chatMessageRepository,
+                          ReactiveChatMessageRepository reactiveChatMessageRepository,
+                          ChatMessageTailCache messageTailCache,
+                          ChatMessageBroadcaster broadcaster,
+                          PartitionWriteTracker partitionWriteTracker,
+                          CacheManager cacheManager) {
         this.conversationRepository = conversationRepository;
         this.chatMessageRepository = chatMessageRepository;
+        this.reactiveChatMessageRepository = reactiveChatMessageRepository;
+        this.messageTailCache = messageTailCache;
+        this.broadcaster = broadcaster;
+        this.partitionWriteTracker = partitionWriteTracker;
+        this.conversationCache = cacheManager.getCache(CacheConfig.CONVERSATIONS);
+        this.conversationEntries = ((CaffeineCache) conversationCache).getNativeCache().asMap();
     }
 
     @Override
-    public List<ConversationDTO> getAllConversations() {
-        List<ConversationDTO> conversationDTOs = new ArrayList<>();
-        Iterable<Conversation> conversations = conversationRepository.findAll();
-        
-        for (Conversation conversation : conversations) {
-            ConversationDTO dto = new ConversationDTO(
-                    conversation.getConversationId(),
-                    conversation.getConversationName(),
-                    conversation.getCreatedAt(),
-                    conversation.getParticipants(),
-                    conversation.getLastMessageTime()
-            );
-            conversationDTOs.add(dto);
-        }
-        
-        return conversationDTOs;
+    public Stream<ConversationDTO> streamAllConversations() {
+        return conversationRepository.streamAll().map(ConversationDTO::instanceOf);
+    }
+
+    @Override
+    public PageDTO<ConversationDTO> getConversationsPage(int size, String cursor) {
+        Slice<Conversation> slice = PagingStateCursor.readPage(PagingStateCursor.toPageable(cursor, size),
+                conversationRepository::findPage);
+        return PagingStateCursor.toPage(slice, ConversationDTO::instanceOf);
+    }
+
+    @Override
+    public Stream<ConversationDTO> exportAllConversations() {
+        return conversationRepository.scanAllInParallel().map(ConversationDTO::instanceOf);
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.CONVERSATIONS, unless = "#result == null")
     public ConversationDTO getConversationById(UUID conversationId) {
-        Conversation conversation = conversationRepository.findById(conversationId).orElse(null);
-        
-        if (conversation == null) {
-            return null;
-        }
-        
-        return new ConversationDTO(
-                conversation.getConversationId(),
-                conversation.getConversationName(),
-                conversation.getCreatedAt(),
-                conversation.getParticipants(),
-                conversation.getLastMessageTime()
-        );
+        return conversationRepository.findById(conversationId)
+                .map(ConversationDTO::instanceOf)
+                .orElse(null);
     }
 
     @Override
@@ -69,28 +92,169 @@ public class ChatServiceImpl implements ChatService {
         return convertToMessageDTOs(messages);
     }
 
+    @Override
+    public Stream<ChatMessageDTO> streamMessagesByConversationId(UUID conversationId) {
+        return chatMessageRepository.streamAllByConversationId(conversationId).map(ChatMessageDTO::instanceOf);
+    }
+
+    @Override
+    public List<ChatMessageDTO> getMessagesInRange(UUID conversationId, UUID since, UUID before, int limit) {
+        requireTimeBased(since);
+        requireTimeBased(before);
+        List<ChatMessage> messages;
+        if (since != null && before != null) {
+            messages = chatMessageRepository.findBetween(conversationId, since, before, limit);
+        } else if (since != null) {
+            messages = chatMessageRepository.findSince(conversationId, since, limit);
+        } else if (before != null) {
+            messages = chatMessageRepository.findBefore(conversationId, before, limit);
+        } else {
+            messages = chatMessageRepository.findByConversationId(conversationId, limit);
+        }
+        return convertToMessageDTOs(messages);
+    }
+
+    /**
+     * message_id is a timeuuid column, which the cluster rejects other UUID versions for
+     */
+    private static void requireTimeBased(UUID messageId) {
+        if (messageId != null && messageId.version() != 1) {
+            throw new IllegalArgumentException("Message ids are time-based (version 1) UUIDs: " + messageId);
+        }
+    }
+
     @Override
     public List<ChatMessageDTO> getLatestMessages(UUID conversationId, int limit) {
+        if (limit > 0 && limit <= messageTailCache.getTailSize()) {
+            return messageTailCache.getLatest(conversationId, limit, tailSize ->
+                    convertToMessageDTOs(chatMessageRepository.findByConversationId(conversationId, tailSize)));
+        }
         List<ChatMessage> messages = chatMessageRepository.findByConversationId(conversationId, limit);
         return convertToMessageDTOs(messages);
     }
 
-    private List<ChatMessageDTO> convertToMessageDTOs(List<ChatMessage> messages) {
-        List<ChatMessageDTO> messageDTOs = new ArrayList<>();
-        
-        for (ChatMessage message : messages) {
-            ChatMessageDTO dto = new ChatMessageDTO(
-                    message.getConversationId(),
-                    message.getMessageId(),
-                    message.getSenderId(),
-                    message.getSenderName(),
-                    message.getMessageText(),
-                    message.getCreatedAt(),
-                    message.getIsRead()
-            );
-            messageDTOs.add(dto);
+    @Override
+    public Flux<ChatMessageDTO> fluxMessagesByConversationId(UUID conversationId) {
+        return reactiveChatMessageRepository.findAllByConversationId(conversationId)
+                .map(ChatMessageDTO::instanceOf);
+    }
+
+    @Override
+    public Flux<ChatMessageDTO> fluxLatestMessages(UUID conversationId, int limit) {
+        if (limit > 0 && limit <= messageTailCache.getTailSize()) {
+            List<ChatMessageDTO> cached = messageTailCache.getLatestIfPresent(conversationId, limit);
+            if (cached != null) {
+                return Flux.fromIterable(cached);
+            }
         }
-        
-        return messageDTOs;
+        return reactiveChatMessageRepository.findByConversationId(conversationId, limit)
+                .map(ChatMessageDTO::instanceOf);
+    }
+
+    @Override
+    public PageDTO<ChatMessageDTO> getMessagesPage(UUID conversationId, int size, String cursor) {
+        Slice<ChatMessage> slice = PagingStateCursor.readPage(PagingStateCursor.toPageable(cursor, size),
+                pageable -> chatMessageRepository.findPageByConversationId(conversationId, pageable));
+        return PagingStateCursor.toPage(slice, ChatMessageDTO::instanceOf);
+    }
+
+    @Override
+    public CompletableFuture<ChatMessageDTO> postMessage(UUID conversationId, ChatMessageDTO request) {
+        if (request == null || isBlank(request.getSenderId()) || isBlank(request.getMessageText())) {
+            throw new IllegalArgumentException("A message needs a senderId and a messageText");
+        }
+
+        // a conversation that is not cached is looked up first, without blocking the request thread
+        CompletableFuture<ConversationDTO> conversation = findConversationAsync(conversationId).toCompletableFuture();
+        Function<ConversationDTO, CompletionStage<ChatMessageDTO>> insert = found -> found == null
+                ? CompletableFuture.<ChatMessageDTO>completedFuture(null)
+                : insertMessage(conversationId, request);
+        // the write throttle blocks when it is full, which must not happen on the driver thread that
+        // completed the lookup
+        return conversation.isDone()
+                ? conversation.thenCompose(insert)
+                : conversation.thenComposeAsync(insert);
+    }
+
+    private CompletionStage<ChatMessageDTO> insertMessage(UUID conversationId, ChatMessageDTO request) {
+        UUID messageId = Uuids.timeBased();
+        ChatMessage message = new ChatMessage(
+                conversationId,
+                messageId,
+                request.getSenderId(),
+                request.getSenderName(),
+                request.getMessageText(),
+                new Date(Uuids.unixTimestamp(messageId)),
+                false);
+        ChatMessageDTO posted = ChatMessageDTO.instanceOf(message);
+
+        return chatMessageRepository.insertAsync(message)
+                .thenApply(done -> {
+                    touchCachedConversation(conversationId, posted.getCreatedAt());
+                    messageTailCache.onMessageWritten(posted);
+                    broadcaster.publish(posted);
+                    partitionWriteTracker.recordMessage(conversationId);
+                    return posted;
+                });
+    }
+
+    @Override
+    public Runnable subscribe(UUID conversationId, UUID afterMessageId,
+                              Consumer<ChatMessageDTO> listener, Runnable onClose) {
+        ChatMessageSubscription subscription = broadcaster.open(conversationId, listener, onClose);
+        subscription.start(afterMessageId == null
+                ? Stream::empty
+                : () -> chatMessageRepository.streamAfter(conversationId, afterMessageId).map(ChatMessageDTO::instanceOf));
+        return subscription::close;
+    }
+
+    /**
+     * Same lookup as {@link #getConversationById}, which cannot be called from inside this bean
+     * without bypassing its caching proxy, on the async driver API
+     */
+    private CompletionStage<ConversationDTO> findConversationAsync(UUID conversationId) {
+        ConversationDTO cached = conversationCache.get(conversationId, ConversationDTO.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return conversationRepository.findByIdAsync(conversationId)
+                .thenApply(conversation -> {
+                    if (conversation == null) {
+                        return null;
+                    }
+                    ConversationDTO loaded = ConversationDTO.instanceOf(conversation);
+                    conversationCache.put(conversationId, loaded);
+                    return loaded;
+                });
+    }
+
+    /**
+     * Moves last_message_time of a cached conversation forward instead of evicting it,
+     * so busy conversations stay cached. Cached instances are shared, so the entry is replaced, not mutated.
+     * The check and the replace run atomically inside Caffeine, so concurrent posts keep the latest time
+     */
+    private void touchCachedConversation(UUID conversationId, Date messageTime) {
+        conversationEntries.computeIfPresent(conversationId, (key, value) -> {
+            ConversationDTO cached = (ConversationDTO) value;
+            if (cached.getLastMessageTime() != null && !cached.getLastMessageTime().before(messageTime)) {
+                return cached;
+            }
+            return new ConversationDTO(
+                    cached.getConversationId(),
+                    cached.getConversationName(),
+                    cached.getCreatedAt(),
+                    cached.getParticipants(),
+                    messageTime);
+        });
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    static List<ChatMessageDTO> convertToMessageDTOs(List<ChatMessage> messages) {
+        return messages.stream()
+                .map(ChatMessageDTO::instanceOf)
+                .collect(Collectors.toList());
     }
 }
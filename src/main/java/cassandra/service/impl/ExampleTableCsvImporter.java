@@ -0,0 +1,189 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ExampleTableDTO;
+import cassandra.dto.IngestResultDTO;
+import cassandra.entity.ExampleTable;
+import cassandra.repository.ExampleTableRepository;
+import com.univocity.parsers.common.ParsingContext;
+import com.univocity.parsers.common.RowProcessorErrorHandler;
+import com.univocity.parsers.common.processor.BeanProcessor;
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams CSV rows (text_field_2, int_field_1, int_field_2, text_field_1) into example_table.
+ * The input is parsed on a parser thread into chunks of beans handed over through a small bounded queue,
+ * while the calling thread validates each chunk and writes it as async batches grouped by partition.
+ * Only a few chunks are ever held in memory, so the file size is not limited by the heap.
+ * Each import holds one parser thread for its whole duration, so there are at most as many concurrent imports
+ * as parser threads; further imports are rejected instead of queueing up behind them.
+ */
+@Component
+public class ExampleTableCsvImporter {
+
+    private static final List<ExampleTableDTO> END = Collections.emptyList();
+
+    private final ExampleTableRepository exampleTableRepository;
+    private final int chunkSize;
+    private final ExecutorService parsers;
+
+    public ExampleTableCsvImporter(ExampleTableRepository exampleTableRepository,
+                                   @Value("${example.import.chunk-size:5000}") int chunkSize,
+                                   @Value("${example.import.parser-threads:2}") int parserThreads) {
+        this.exampleTableRepository = exampleTableRepository;
+        this.chunkSize = chunkSize;
+        AtomicInteger threads = new AtomicInteger();
+        this.parsers = new ThreadPoolExecutor(parserThreads, parserThreads, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "csv-import-parser-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param headerRow whether the first line holds column names and must be skipped
+     * @throws IllegalArgumentException   if the input is not parseable CSV; rows written before the
+     *                                    malformed part are kept
+     * @throws RejectedExecutionException if every parser thread is busy with another import
+     */
+    public IngestResultDTO importCsv(InputStream csv, boolean headerRow) {
+        long start = System.nanoTime();
+        BlockingQueue<List<ExampleTableDTO>> chunks = new ArrayBlockingQueue<>(4);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        AtomicLong unparseable = new AtomicLong();
+
+        Future<?> parsing = parsers.submit(() -> {
+            try {
+                parser(chunks, abandoned, unparseable, headerRow)
+                        .parse(new InputStreamReader(csv, StandardCharsets.UTF_8));
+            } finally {
+                put(chunks, END, abandoned);
+            }
+        });
+
+        long received = 0;
+        long rejected = 0;
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        try {
+            List<ExampleTableDTO> chunk;
+            while ((chunk = chunks.take()) != END) {
+                received += chunk.size();
+                List<ExampleTable> rows = new ArrayList<>(chunk.size());
+                for (ExampleTableDTO dto : chunk) {
+                    if (isBlank(dto.getTextField1()) || dto.getTextField2() == null) {
+                        rejected++;
+                    } else {
+                        rows.add(ExampleTable.instanceOf(dto));
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    // a chunk whose write fails as a whole is reported as failed rows, like a failed batch within it
+                    writes.add(exampleTableRepository.insertAllAsync(rows).toCompletableFuture()
+                            .exceptionally(error -> 0));
+                }
+            }
+            parsing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing CSV", e);
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Malformed CSV input", e.getCause());
+        } finally {
+            abandoned.set(true);
+            parsing.cancel(true);
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        }
+
+        received += unparseable.get();
+        rejected += unparseable.get();
+        long written = writes.stream().mapToLong(CompletableFuture::join).sum();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestResultDTO(received, written, rejected, received - rejected - written, elapsedMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsers.shutdownNow();
+    }
+
+    /**
+     * Rows whose values cannot be converted (e.g. a non-numeric int field) are counted and skipped
+     * instead of aborting the import
+     */
+    private CsvParser parser(BlockingQueue<List<ExampleTableDTO>> chunks, AtomicBoolean abandoned,
+                             AtomicLong unparseable, boolean headerRow) {
+        CsvParserSettings settings = new CsvParserSettings();
+        settings.setHeaderExtractionEnabled(headerRow);
+        settings.setLineSeparatorDetectionEnabled(true);
+        settings.setProcessorErrorHandler((RowProcessorErrorHandler) (error, row, context) -> unparseable.incrementAndGet());
+        settings.setProcessor(new BeanProcessor<ExampleTableDTO>(ExampleTableDTO.class) {
+            private List<ExampleTableDTO> chunk = new ArrayList<>(chunkSize);
+
+            @Override
+            public void beanProcessed(ExampleTableDTO bean, ParsingContext context) {
+                chunk.add(bean);
+                if (chunk.size() >= chunkSize) {
+                    if (!put(chunks, chunk, abandoned)) {
+                        context.stop();
+                    }
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+
+            @Override
+            public void processEnded(ParsingContext context) {
+                super.processEnded(context);
+                if (!chunk.isEmpty()) {
+                    put(chunks, chunk, abandoned);
+                }
+            }
+        });
+        return new CsvParser(settings);
+    }
+
+    /**
+     * Waits for queue space until the consumer gives up
+     *
+     * @return false if the consumer abandoned the import
+     */
+    private static boolean put(BlockingQueue<List<ExampleTableDTO>> chunks, List<ExampleTableDTO> chunk, AtomicBoolean abandoned) {
+        try {
+            while (!abandoned.get()) {
+                if (chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
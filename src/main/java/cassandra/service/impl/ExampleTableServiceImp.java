@@ -1,22 +1,28 @@
 package cassandra.service.impl;
 
 import cassandra.dto.ExampleTableDTO;
+import cassandra.dto.IngestResultDTO;
 import cassandra.repository.ExampleTableRepository;
 import cassandra.service.ExampleTableService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ExampleTableServiceImp implements ExampleTableService {
 
     private ExampleTableRepository ExampleTableRepository;
+    private ExampleTableCsvImporter csvImporter;
 
     @Autowired
-    public ExampleTableServiceImp(ExampleTableRepository ExampleTableRepository) {
+    public ExampleTableServiceImp(ExampleTableRepository ExampleTableRepository,
+                                  ExampleTableCsvImporter csvImporter) {
         this.ExampleTableRepository = ExampleTableRepository;
+        this.csvImporter = csvImporter;
     }
 
     @Override
@@ -27,4 +33,15 @@ public class ExampleTableServiceImp implements ExampleTableService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Stream<ExampleTableDTO> streamByTextField1(String textField1) {
+        return this.ExampleTableRepository.streamByTextField1(textField1)
+                .map(ExampleTableDTO::instanceOf);
+    }
+
+    @Override
+    public IngestResultDTO importCsv(InputStream csv, boolean headerRow) {
+        return csvImporter.importCsv(csv, headerRow);
+    }
+
 }
@@ -0,0 +1,100 @@
+package cassandra.service.impl;
+
+import cassandra.dto.SensorMetricAggregateDTO;
+import cassandra.entity.SensorMetricRollup;
+import cassandra.repository.SensorMetricRepositoryCustom;
+import cassandra.service.AggregateFunction;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Folds a time-ordered stream of values into fixed-width, epoch-aligned buckets using primitive accumulators.
+ * Only one bucket is open at a time, so memory depends on the number of buckets, not the number of rows.
+ * Values must arrive grouped by bucket, which the clustering order of a partition scan guarantees.
+ * Pre-aggregated rollup rows can be folded in as well, as long as their width divides the bucket width,
+ * and so can the buckets of aggregators of the same width that each folded one partition.
+ */
+final class MetricBucketAggregator implements SensorMetricRepositoryCustom.MetricValueConsumer {
+
+    private final long bucketMillis;
+    private final Set<AggregateFunction> functions;
+    private final List<SensorMetricAggregateDTO> buckets = new ArrayList<>();
+
+    private long bucketStart;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+
+    MetricBucketAggregator(long bucketMillis, Set<AggregateFunction> functions) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.functions = functions;
+    }
+
+    @Override
+    public void accept(long recordedAtMillis, double value) {
+        add(recordedAtMillis, 1, value, value, value);
+    }
+
+    void acceptRollup(SensorMetricRollup rollup) {
+        add(rollup.getBucketStartMillis(), rollup.getCount(), rollup.getSum(), rollup.getMin(), rollup.getMax());
+    }
+
+    /**
+     * @param bucket a bucket of an aggregator that computed every function
+     */
+    void acceptBucket(SensorMetricAggregateDTO bucket) {
+        add(bucket.getBucketStart().getTime(), bucket.getCount(), bucket.getSum(), bucket.getMin(), bucket.getMax());
+    }
+
+    boolean isEmpty() {
+        return count == 0 && buckets.isEmpty();
+    }
+
+    /**
+     * @return the buckets in the order their values arrived
+     */
+    List<SensorMetricAggregateDTO> finish() {
+        emit();
+        return buckets;
+    }
+
+    private void add(long timestampMillis, long valueCount, double valueSum, double valueMin, double valueMax) {
+        long bucket = Math.floorDiv(timestampMillis, bucketMillis) * bucketMillis;
+        if (count == 0 || bucket != bucketStart) {
+            emit();
+            bucketStart = bucket;
+            sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+        count += valueCount;
+        sum += valueSum;
+        if (valueMin < min) {
+            min = valueMin;
+        }
+        if (valueMax > max) {
+            max = valueMax;
+        }
+    }
+
+    private void emit() {
+        if (count == 0) {
+            return;
+        }
+        buckets.add(new SensorMetricAggregateDTO(
+                new Date(bucketStart),
+                functions.contains(AggregateFunction.COUNT) ? count : null,
+                functions.contains(AggregateFunction.AVG) ? sum / count : null,
+                functions.contains(AggregateFunction.MIN) ? min : null,
+                functions.contains(AggregateFunction.MAX) ? max : null,
+                functions.contains(AggregateFunction.SUM) ? sum : null));
+        count = 0;
+    }
+}
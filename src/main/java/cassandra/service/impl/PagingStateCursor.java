@@ -0,0 +1,178 @@
+package cassandra.service.impl;
+
+import cassandra.dto.PageDTO;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.servererrors.ProtocolError;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Translates between the driver's paging state and the opaque cursor handed out to API clients.
+ * Resuming from a paging state continues the partition scan where the previous page stopped,
+ * so a page deep inside a wide partition costs the same as the first one.
+ * Reads that span several partitions prefix the paging state with the partition it belongs to.
+ * A cursor is only decoded here; whether its paging state is one Cassandra issued is only known when the page
+ * is read, so reads resuming from a cursor go through {@link #readPage} to report a forged or corrupted one
+ * as an invalid argument rather than a server error.
+ */
+final class PagingStateCursor {
+
+    private PagingStateCursor() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is not one previously issued by {@link #toPage}
+     */
+    static Pageable toPageable(String cursor, int size) {
+        if (cursor == null || cursor.isEmpty()) {
+            return CassandraPageRequest.first(size);
+        }
+        ByteBuffer pagingState = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        return CassandraPageRequest.of(PageRequest.of(0, size), pagingState);
+    }
+
+    /**
+     * Reads the page a {@link #toPageable} result points at
+     *
+     * @throws IllegalArgumentException if Cassandra rejects the paging state of the cursor
+     */
+    static <E> Slice<E> readPage(Pageable pageable, Function<Pageable, Slice<E>> read) {
+        try {
+            return read.apply(pageable);
+        } catch (RuntimeException e) {
+            if (pageable instanceof CassandraPageRequest
+                    && ((CassandraPageRequest) pageable).getPagingState() != null
+                    && isRejectedPagingState(e)) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads one page across partitions, filling it from the next partitions when one runs out. The partition
+     * the page resumes in and the first page of up to maxInFlight - 1 partitions after it are requested at
+     * once, each as large as what is left of the page; when a partition then has more rows than still fit,
+     * it is read again for just those, so the next cursor points at the row after the last one returned.
+     *
+     * @param buckets  the partitions in read order
+     * @param readPage starts reading a page of one partition
+     * @throws IllegalArgumentException if the cursor is not one previously issued for these partitions
+     */
+    static <E, D> PageDTO<D> toPage(List<Integer> buckets, String cursor, int size, int maxInFlight,
+                                    BiFunction<Integer, Pageable, ? extends CompletionStage<Slice<E>>> readPage,
+                                    Function<E, D> mapper) {
+        int index = 0;
+        ByteBuffer pagingState = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            ByteBuffer position = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (position.remaining() < Integer.BYTES) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            index = buckets.indexOf(position.getInt());
+            if (index < 0) {
+                throw new IllegalArgumentException("The cursor does not belong to this read");
+            }
+            pagingState = position.hasRemaining() ? position.slice() : null;
+        }
+
+        List<D> items = new ArrayList<>(size);
+        while (index < buckets.size()) {
+            int end = Math.min(buckets.size(), index + Math.max(1, maxInFlight));
+            List<Pageable> pageables = new ArrayList<>();
+            List<CompletableFuture<Slice<E>>> reads = new ArrayList<>();
+            for (int i = index; i < end; i++) {
+                Pageable pageable = i == index && pagingState != null
+                        ? CassandraPageRequest.of(PageRequest.of(0, size - items.size()), pagingState)
+                        : CassandraPageRequest.first(size - items.size());
+                pageables.add(pageable);
+                reads.add(readPage.apply(buckets.get(i), pageable).toCompletableFuture());
+            }
+            try {
+                for (int i = index; i < end; i++) {
+                    int bucket = buckets.get(i);
+                    Slice<E> slice = awaitPage(pageables.get(i - index), reads.get(i - index));
+                    if (slice.getNumberOfElements() > size - items.size()) {
+                        Pageable rest = CassandraPageRequest.first(size - items.size());
+                        slice = awaitPage(rest, readPage.apply(bucket, rest));
+                    }
+                    slice.getContent().stream().map(mapper).forEach(items::add);
+                    if (slice.hasNext()) {
+                        return new PageDTO<>(items, encode(bucket,
+                                ((CassandraPageRequest) slice.nextPageable()).getPagingState()));
+                    }
+                    if (items.size() == size) {
+                        return new PageDTO<>(items, i + 1 < buckets.size() ? encode(buckets.get(i + 1), null) : null);
+                    }
+                }
+            } finally {
+                reads.forEach(read -> read.cancel(false));
+            }
+            index = end;
+            pagingState = null;
+        }
+        return new PageDTO<>(items, null);
+    }
+
+    static <E, D> PageDTO<D> toPage(Slice<E> slice, Function<E, D> mapper) {
+        List<D> items = slice.getContent().stream()
+                .map(mapper)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            ByteBuffer pagingState = ((CassandraPageRequest) slice.nextPageable()).getPagingState();
+            nextCursor = encode(pagingState);
+        }
+        return new PageDTO<>(items, nextCursor);
+    }
+
+    /**
+     * Waits for a page read by {@link #toPage}, reporting a rejected paging state the way {@link #readPage} does
+     */
+    private static <E> Slice<E> awaitPage(Pageable pageable, CompletionStage<Slice<E>> read) {
+        return readPage(pageable, p -> PartitionReads.await(read));
+    }
+
+    /**
+     * Cassandra answers a paging state it cannot deserialize with a protocol error, or an invalid query
+     * error when it belongs to another statement; both reach us wrapped in Spring's DataAccessException
+     */
+    private static boolean isRejectedPagingState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ProtocolError || cause instanceof InvalidQueryException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param pagingState null to start at the beginning of the partition
+     */
+    private static String encode(int bucket, ByteBuffer pagingState) {
+        ByteBuffer state = pagingState == null ? ByteBuffer.allocate(0) : pagingState.duplicate();
+        ByteBuffer position = ByteBuffer.allocate(Integer.BYTES + state.remaining());
+        position.putInt(bucket).put(state).flip();
+        return encode(position);
+    }
+
+    private static String encode(ByteBuffer pagingState) {
+        ByteBuffer copy = pagingState.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,157 @@
+package cassandra.service.impl;
+
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntFunction;
+
+/**
+ * Reads several sensor_metrics partitions of one query at once instead of one after the other, which for a
+ * month split into hourly partitions would take hundreds of round trips in a row.
+ */
+final class PartitionReads {
+
+    private PartitionReads() {
+    }
+
+    /**
+     * K-way merges the ordered reads of several partitions into one sequence in the given order.
+     * At most maxInFlight partitions are read at a time; the next one is started as soon as one runs out.
+     * A partition is only started once every partition listed before it has been, so the buckets must be
+     * listed in read order, as {@link SensorBucketing} lists them: no row of a partition may come before
+     * a row of a partition listed earlier. Closing the iterator closes the reads still in flight.
+     *
+     * @param read starts reading one partition; the request should be sent right away
+     */
+    static <T> CloseableIterator<T> merge(List<Integer> buckets, int maxInFlight, Comparator<? super T> order,
+                                          IntFunction<CloseableIterator<T>> read) {
+        return new Merge<>(buckets.iterator(), Math.max(1, maxInFlight), order, read);
+    }
+
+    /**
+     * Reads up to limit elements of an iterator and closes it
+     */
+    static <T> List<T> collect(CloseableIterator<T> iterator, int limit) {
+        try {
+            List<T> elements = new ArrayList<>();
+            while (elements.size() < limit && iterator.hasNext()) {
+                elements.add(iterator.next());
+            }
+            return elements;
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Waits for an async read, rethrowing the driver exception itself as a synchronous read would
+     */
+    static <T> T await(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Merge<T> implements CloseableIterator<T> {
+
+        private final Iterator<Integer> buckets;
+        private final int maxInFlight;
+        private final IntFunction<CloseableIterator<T>> read;
+        private final PriorityQueue<Source<T>> heads;
+        private final Deque<Source<T>> unpositioned = new ArrayDeque<>();
+        private final List<Source<T>> open = new ArrayList<>();
+        private Source<T> taken;
+        private int started;
+
+        Merge(Iterator<Integer> buckets, int maxInFlight, Comparator<? super T> order, IntFunction<CloseableIterator<T>> read) {
+            this.buckets = buckets;
+            this.maxInFlight = maxInFlight;
+            this.read = read;
+            // equal rows come out in the order of their partitions
+            this.heads = new PriorityQueue<>(Comparator.<Source<T>, T>comparing(source -> source.head, order)
+                    .thenComparingInt(source -> source.index));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (taken != null) {
+                advance(taken);
+                taken = null;
+            }
+            startReads();
+            // every read in flight has to show its first row before the smallest one can be taken
+            while (!unpositioned.isEmpty()) {
+                advance(unpositioned.pollFirst());
+                startReads();
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            taken = heads.poll();
+            return taken.head;
+        }
+
+        @Override
+        public void close() {
+            while (buckets.hasNext()) {
+                buckets.next();
+            }
+            for (Source<T> source : open) {
+                source.rows.close();
+            }
+            open.clear();
+            unpositioned.clear();
+            heads.clear();
+            taken = null;
+        }
+
+        private void startReads() {
+            while (open.size() < maxInFlight && buckets.hasNext()) {
+                Source<T> source = new Source<>(started++, read.apply(buckets.next()));
+                open.add(source);
+                unpositioned.addLast(source);
+            }
+        }
+
+        private void advance(Source<T> source) {
+            if (source.rows.hasNext()) {
+                source.head = source.rows.next();
+                heads.add(source);
+            } else {
+                source.rows.close();
+                open.remove(source);
+            }
+        }
+    }
+
+    private static final class Source<T> {
+
+        private final int index;
+        private final CloseableIterator<T> rows;
+        private T head;
+
+        Source(int index, CloseableIterator<T> rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package cassandra.service.impl;
+
+import cassandra.dto.PartitionSizeDTO;
+import cassandra.dto.PartitionSizeReportDTO;
+import cassandra.dto.TableSizeDTO;
+import cassandra.repository.ChatMessageRepository;
+import cassandra.repository.PartitionSample;
+import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SizeEstimatesRepository;
+import cassandra.repository.SizeEstimatesRepository.Estimate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically estimates the size of the sensor_metrics partitions and conversations this instance writes
+ * to most, so partitions can be re-bucketed before they grow large enough to make reads time out.
+ * Each round samples the newest rows of the busiest partitions (see {@link PartitionSample}), counting the
+ * messages of a conversation since they are written in bursts, reads the table-wide averages from
+ * system.size_estimates, publishes both as gauges and keeps the result for /actuator/partitions.
+ * The count stops at max-counted-rows, well below the row threshold by default, so a round reads at most
+ * top * max-counted-rows message ids; a conversation that reaches it is reported with that lower bound and
+ * not marked exact. A partition over the row or byte threshold is logged and counted as an alert.
+ */
+@Component
+public class PartitionSizeSampler {
+
+    static final String SENSOR_METRICS = "sensor_metrics";
+    static final String CHAT_MESSAGES = "chat_messages";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionSizeSampler.class);
+
+    private final SensorMetricRepository sensorMetricRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final SizeEstimatesRepository sizeEstimatesRepository;
+    private final PartitionWriteTracker partitionWriteTracker;
+    private final int top;
+    private final int sampleRows;
+    private final int maxCountedRows;
+    private final long rowThreshold;
+    private final long byteThreshold;
+
+    private final MultiGauge partitionRows;
+    private final MultiGauge partitionBytes;
+    private final MultiGauge tablePartitions;
+    private final MultiGauge tableMeanBytes;
+    private final Counter alerts;
+    private final ScheduledExecutorService sampler;
+
+    private volatile PartitionSizeReportDTO report;
+
+    public PartitionSizeSampler(SensorMetricRepository sensorMetricRepository,
+                                ChatMessageRepository chatMessageRepository,
+                                SizeEstimatesRepository sizeEstimatesRepository,
+                                PartitionWriteTracker partitionWriteTracker,
+                                MeterRegistry meterRegistry,
+                                @Value("${partitions.sampler.enabled:true}") boolean enabled,
+                                @Value("${partitions.sampler.interval-ms:300000}") long intervalMillis,
+                                @Value("${partitions.sampler.top:20}") int top,
+                                @Value("${partitions.sampler.sample-rows:1000}") int sampleRows,
+                                @Value("${partitions.sampler.max-counted-rows:10000}") int maxCountedRows,
+                                @Value("${partitions.alert.rows:1000000}") long rowThreshold,
+                                @Value("${partitions.alert.bytes:104857600}") long byteThreshold) {
+        this.sensorMetricRepository = sensorMetricRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.sizeEstimatesRepository = sizeEstimatesRepository;
+        this.partitionWriteTracker = partitionWriteTracker;
+        this.top = top;
+        this.sampleRows = Math.max(2, sampleRows);
+        this.maxCountedRows = Math.max(this.sampleRows, maxCountedRows);
+        this.rowThreshold = rowThreshold;
+        this.byteThreshold = byteThreshold;
+        this.report = new PartitionSizeReportDTO(null, rowThreshold, byteThreshold,
+                Collections.<PartitionSizeDTO>emptyList(), Collections.<TableSizeDTO>emptyList());
+
+        this.partitionRows = MultiGauge.builder("cassandra.partition.estimated_rows")
+                .description("Estimated rows of the most written partitions, as of the last sample")
+                .register(meterRegistry);
+        this.partitionBytes = MultiGauge.builder("cassandra.partition.estimated_bytes")
+                .description("Estimated uncompressed size of the most written partitions, as of the last sample")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.tablePartitions = MultiGauge.builder("cassandra.table.estimated_partitions")
+                .description("Partitions per table according to system.size_estimates")
+                .register(meterRegistry);
+        this.tableMeanBytes = MultiGauge.builder("cassandra.table.mean_partition_bytes")
+                .description("Mean partition size per table according to system.size_estimates")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.alerts = Counter.builder("cassandra.partition.alerts")
+                .description("Sampled partitions found over the row or byte threshold")
+                .register(meterRegistry);
+
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-size-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            this.sampler.scheduleWithFixedDelay(this::sampleQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the last round, with no partitions before the first one has run
+     */
+    public PartitionSizeReportDTO getReport() {
+        return report;
+    }
+
+    /**
+     * Runs a round now instead of waiting for the next one
+     */
+    public synchronized PartitionSizeReportDTO sample() {
+        List<PartitionSizeDTO> partitions = new ArrayList<>();
+        for (List<Object> key : partitionWriteTracker.busiestSensorPartitions(top)) {
+            String sensorId = (String) key.get(0);
+            int year = (Integer) key.get(1);
+            int month = (Integer) key.get(2);
+            int bucket = (Integer) key.get(3);
+            addSample(partitions, SENSOR_METRICS, sensorId + "/" + year + "/" + month + "/" + bucket,
+                    () -> sensorMetricRepository.samplePartition(sensorId, year, month, bucket, sampleRows));
+        }
+        for (UUID conversationId : partitionWriteTracker.busiestConversations(top)) {
+            addSample(partitions, CHAT_MESSAGES, conversationId.toString(),
+                    () -> chatMessageRepository.samplePartition(conversationId, sampleRows, maxCountedRows));
+        }
+        partitions.sort(Comparator.comparingLong(PartitionSizeDTO::getEstimatedBytes).reversed());
+
+        List<TableSizeDTO> tables = new ArrayList<>();
+        for (String table : Arrays.asList(SENSOR_METRICS, CHAT_MESSAGES)) {
+            try {
+                Estimate estimate = sizeEstimatesRepository.estimate(table);
+                tables.add(new TableSizeDTO(table, estimate.getPartitions(), estimate.getMeanPartitionBytes()));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not read size estimates of {}", table, e);
+            }
+        }
+
+        partitionRows.register(partitions.stream()
+                .map(p -> MultiGauge.Row.of(Tags.of("table", p.getTable(), "partition", p.getPartition()), p.getEstimatedRows()))
+                .collect(Collectors.toList()), true);
+        partitionBytes.register(partitions.stream()
+                .map(p -> MultiGauge.Row.of(Tags.of("table", p.getTable(), "partition", p.getPartition()), p.getEstimatedBytes()))
+                .collect(Collectors.toList()), true);
+        tablePartitions.register(tables.stream()
+                .map(t -> MultiGauge.Row.of(Tags.of("table", t.getTable()), t.getEstimatedPartitions()))
+                .collect(Collectors.toList()), true);
+        tableMeanBytes.register(tables.stream()
+                .map(t -> MultiGauge.Row.of(Tags.of("table", t.getTable()), t.getMeanPartitionBytes()))
+                .collect(Collectors.toList()), true);
+
+        partitionWriteTracker.decay();
+        report = new PartitionSizeReportDTO(new Date(), rowThreshold, byteThreshold, partitions, tables);
+        return report;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Partition size sampling failed", e);
+        }
+    }
+
+    /**
+     * A partition that cannot be read is left out of this round rather than failing it
+     */
+    private void addSample(List<PartitionSizeDTO> partitions, String table, String partition, Supplier<PartitionSample> read) {
+        PartitionSample sample;
+        try {
+            sample = read.get();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not sample partition {} of {}", partition, table, e);
+            return;
+        }
+        long rows = sample.estimatedRows();
+        long bytes = sample.estimatedBytes();
+        boolean overThreshold = rows > rowThreshold || bytes > byteThreshold;
+        if (overThreshold) {
+            alerts.increment();
+            LOGGER.warn("Partition {} of {} is about {} rows and {} bytes, over the alert threshold of {} rows or {} bytes",
+                    partition, table, rows, bytes, rowThreshold, byteThreshold);
+        }
+        partitions.add(new PartitionSizeDTO(table, partition, rows, bytes, sample.getSampledRows(), sample.isRowCountExact(), overThreshold));
+    }
+}
@@ -0,0 +1,75 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the rows this instance writes to each sensor_metrics partition and each conversation, so the
+ * partition size sampler knows which partitions are growing fastest. Counts are halved on every
+ * {@link #decay()}, so partitions that stop receiving writes fall out of the ranking and their entries
+ * are eventually dropped.
+ */
+@Component
+public class PartitionWriteTracker {
+
+    private final ConcurrentMap<List<Object>, AtomicLong> sensorPartitions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, AtomicLong> conversations = new ConcurrentHashMap<>();
+
+    /**
+     * @param partition metrics of one (sensor_id, year, month, bucket) partition
+     */
+    public void recordSensorWrite(List<SensorMetric> partition) {
+        if (partition.isEmpty()) {
+            return;
+        }
+        SensorMetric first = partition.get(0);
+        List<Object> key = Arrays.<Object>asList(first.getSensorId(), first.getYear(), first.getMonth(), first.getBucket());
+        sensorPartitions.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(partition.size());
+    }
+
+    public void recordMessage(UUID conversationId) {
+        conversations.computeIfAbsent(conversationId, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @return (sensor_id, year, month, bucket) keys, most written first
+     */
+    public List<List<Object>> busiestSensorPartitions(int limit) {
+        return busiest(sensorPartitions, limit);
+    }
+
+    public List<UUID> busiestConversations(int limit) {
+        return busiest(conversations, limit);
+    }
+
+    public void decay() {
+        decay(sensorPartitions.values());
+        decay(conversations.values());
+        sensorPartitions.values().removeIf(count -> count.get() == 0);
+        conversations.values().removeIf(count -> count.get() == 0);
+    }
+
+    private static void decay(Collection<AtomicLong> counts) {
+        for (AtomicLong count : counts) {
+            count.updateAndGet(value -> value / 2);
+        }
+    }
+
+    private static <K> List<K> busiest(Map<K, AtomicLong> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
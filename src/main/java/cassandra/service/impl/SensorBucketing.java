@@ -0,0 +1,165 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricBucketRepository;
+import cassandra.repository.SensorMetricBucketRepository.Granularity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides how the months of each sensor are split into sensor_metrics partitions.
+ * The granularity is configured per sensor class, the part of the sensor ID before the first '-'
+ * (VIB for VIB-001), and recorded per sensor+month in sensor_metric_buckets the first time the month is
+ * written to; readers follow the record, so months written under an earlier configuration stay readable.
+ * Recorded granularities never change, so they are cached once seen.
+ * Points more than sensor.ingest.max-future-ms ahead of the clock are not writable, which lets reads skip
+ * every partition that starts after that.
+ */
+@Component
+public class SensorBucketing {
+
+    private final SensorMetricBucketRepository bucketRepository;
+    private final Granularity defaultGranularity;
+    private final Map<String, Granularity> classGranularities;
+    private final Cache<List<Object>, Granularity> recorded;
+    private final Duration maxFuture;
+    private final Clock clock;
+
+    @Autowired
+    public SensorBucketing(SensorMetricBucketRepository bucketRepository,
+                           @Value("${sensor.bucketing.default:month}") String defaultGranularity,
+                           @Value("${sensor.bucketing.classes:}") String classGranularities,
+                           @Value("${sensor.bucketing.cache-size:100000}") long cacheSize,
+                           @Value("${sensor.ingest.max-future-ms:300000}") long maxFutureMillis) {
+        this(bucketRepository, defaultGranularity, classGranularities, cacheSize, maxFutureMillis, Clock.systemUTC());
+    }
+
+    SensorBucketing(SensorMetricBucketRepository bucketRepository, String defaultGranularity,
+                    String classGranularities, long cacheSize, long maxFutureMillis, Clock clock) {
+        this.bucketRepository = bucketRepository;
+        this.defaultGranularity = parse(defaultGranularity);
+        this.classGranularities = parseClasses(classGranularities);
+        this.recorded = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.maxFuture = Duration.ofMillis(Math.max(0, maxFutureMillis));
+        this.clock = clock;
+    }
+
+    /**
+     * The granularity configured for new months of a sensor
+     */
+    public Granularity configured(String sensorId) {
+        int dash = sensorId.indexOf('-');
+        String sensorClass = dash < 0 ? sensorId : sensorId.substring(0, dash);
+        return classGranularities.getOrDefault(sensorClass, defaultGranularity);
+    }
+
+    /**
+     * False for points recorded more than the allowed clock skew ahead of now; they must be rejected rather
+     * than written, as reads do not look for them
+     */
+    public boolean isWritable(Instant recordedAt) {
+        return !recordedAt.isAfter(latestWritable());
+    }
+
+    /**
+     * Fills in the bucket of metrics that do not have one yet, recording the granularity of months
+     * written to for the first time
+     */
+    public void assignBuckets(Collection<SensorMetric> metrics) {
+        for (SensorMetric metric : metrics) {
+            if (metric.getBucket() == null) {
+                Granularity granularity = forWrite(metric.getSensorId(), metric.getYear(), metric.getMonth());
+                metric.setBucket(granularity.bucket(metric.getDay(), metric.getHour()));
+            }
+        }
+    }
+
+    Granularity forWrite(String sensorId, int year, int month) {
+        return recorded.get(Arrays.<Object>asList(sensorId, year, month), key -> {
+            Granularity granularity = bucketRepository.find(sensorId, year, month);
+            return granularity != null
+                    ? granularity
+                    : bucketRepository.recordIfAbsent(sensorId, year, month, configured(sensorId));
+        });
+    }
+
+    /**
+     * A month with no record has only been written as a single partition, if at all. That is not cached,
+     * as another instance may record the month at any time
+     */
+    Granularity forRead(String sensorId, int year, int month) {
+        List<Object> key = Arrays.<Object>asList(sensorId, year, month);
+        Granularity granularity = recorded.getIfPresent(key);
+        if (granularity == null) {
+            granularity = bucketRepository.find(sensorId, year, month);
+            if (granularity == null) {
+                return Granularity.MONTH;
+            }
+            recorded.put(key, granularity);
+        }
+        return granularity;
+    }
+
+    /**
+     * The partitions of a sensor+month that hold rows with from <= recorded_at < to, newest first.
+     * Buckets that start after the latest writable time are left out, so reading the current month of an hourly
+     * sensor does not query the hundreds of partitions that cannot have been written yet
+     *
+     * @param to exclusive
+     */
+    public List<Integer> buckets(String sensorId, YearMonth month, Instant from, Instant to) {
+        Granularity granularity = forRead(sensorId, month.getYear(), month.getMonthValue());
+        if (granularity != Granularity.MONTH) {
+            Instant horizon = latestWritable().truncatedTo(granularity.getUnit()).plus(1, granularity.getUnit());
+            to = to.isBefore(horizon) ? to : horizon;
+        }
+        return granularity.buckets(month, from, to);
+    }
+
+    /**
+     * Every partition of a sensor+month, newest first
+     */
+    public List<Integer> buckets(String sensorId, YearMonth month) {
+        return buckets(sensorId, month, Instant.MIN, Instant.MAX);
+    }
+
+    private Instant latestWritable() {
+        return clock.instant().plus(maxFuture);
+    }
+
+    private static Granularity parse(String granularity) {
+        return Granularity.valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @param classGranularities comma-separated class:granularity pairs, e.g. VIB:hour,PWR:day
+     */
+    private static Map<String, Granularity> parseClasses(String classGranularities) {
+        Map<String, Granularity> granularities = new HashMap<>();
+        for (String entry : classGranularities.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected class:granularity in sensor.bucketing.classes, got " + entry);
+            }
+            granularities.put(entry.substring(0, colon).trim(), parse(entry.substring(colon + 1)));
+        }
+        return granularities;
+    }
+}
@@ -0,0 +1,105 @@
+package cassandra.service.impl;
+
+import cassandra.dto.MultiSensorMetricsDTO;
+import cassandra.dto.SensorMetricDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Reads one partition per sensor concurrently and merges the results.
+ * At most maxConcurrency reads of a request are in flight at once, and all of them share one deadline
+ * counted from the start of the request, so the response time is bounded by the slowest read (or the
+ * deadline) rather than by the sum of the reads. Failed and late sensors are reported per sensor.
+ */
+@Component
+public class SensorFanOutReader {
+
+    private final int maxConcurrency;
+    private final long timeoutMillis;
+
+    public SensorFanOutReader(@Value("${sensor.fan-out.max-concurrency:32}") int maxConcurrency,
+                              @Value("${sensor.fan-out.timeout-ms:2000}") long timeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param read the non-blocking read of one sensor's partition
+     */
+    public Mono<MultiSensorMetricsDTO> read(Collection<String> sensorIds, Function<String, Flux<SensorMetricDTO>> read) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            LinkedHashSet<String> distinct = new LinkedHashSet<>(sensorIds);
+
+            return Flux.fromIterable(distinct)
+                    .flatMap(sensorId -> readOne(sensorId, read, deadline), maxConcurrency)
+                    .collectMap(SensorRead::getSensorId)
+                    .map(reads -> {
+                        // keep the order of the request rather than the order of completion
+                        Map<String, List<SensorMetricDTO>> metrics = new LinkedHashMap<>();
+                        Map<String, String> errors = new LinkedHashMap<>();
+                        for (String sensorId : distinct) {
+                            SensorRead sensorRead = reads.get(sensorId);
+                            if (sensorRead.error != null) {
+                                errors.put(sensorId, sensorRead.error);
+                            } else {
+                                metrics.put(sensorId, sensorRead.metrics);
+                            }
+                        }
+                        return new MultiSensorMetricsDTO(metrics, errors,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    });
+        });
+    }
+
+    private static Mono<SensorRead> readOne(String sensorId, Function<String, Flux<SensorMetricDTO>> read, long deadline) {
+        return Mono.defer(() -> {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Mono.just(new SensorRead(sensorId, null, "Deadline exceeded before the read started"));
+            }
+            return read.apply(sensorId)
+                    .collectList()
+                    .timeout(Duration.ofNanos(remaining))
+                    .map(metrics -> new SensorRead(sensorId, metrics, null))
+                    .onErrorResume(error -> Mono.just(new SensorRead(sensorId, null, describe(error))));
+        });
+    }
+
+    private static String describe(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return "Deadline exceeded";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private static final class SensorRead {
+
+        private final String sensorId;
+        private final List<SensorMetricDTO> metrics;
+        private final String error;
+
+        SensorRead(String sensorId, List<SensorMetricDTO> metrics, String error) {
+            this.sensorId = sensorId;
+            this.metrics = metrics;
+            this.error = error;
+        }
+
+        String getSensorId() {
+            return sensorId;
+        }
+    }
+}
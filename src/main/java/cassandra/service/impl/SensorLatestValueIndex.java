@@ -0,0 +1,335 @@
+package cassandra.service.impl;
+
+import cassandra.dto.SensorLatestValueDTO;
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SensorMetricRepositoryCustom.PartitionKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * The most recent value of every (sensor_id, metric_type), for dashboards that only need the current reading.
+ * Entries are immutable (timestamp, value) pairs replaced by compare-and-set, so readers never lock and a late,
+ * older point never overwrites a newer one.
+ * The index is fed by the write path of this instance, and every known sensor is reloaded from Cassandra
+ * periodically to pick up points written through other instances. A load only reads the newest rows-per-load
+ * points of a sensor, newest partition first: within the last window-hours on its first load, and since the
+ * previous load afterwards, so a load costs one small query per partition it reaches whatever the sensor's rate.
+ * A metric type reported so rarely that none of its points are among them shows up with its next point.
+ * The sensors to load are listed by a scan of the partition keys once, on startup; after that only the sensors
+ * already in the index are reloaded.
+ * A requested sensor that is unknown, or was last loaded longer than ttl-ms ago, is loaded on a small pool of
+ * its own, and the request waits at most read-through-timeout-ms for all its loads together before answering
+ * with what the index holds. Sensors found without any point are remembered for ttl-ms, up to max-unknown-sensors
+ * of them, so requests for ids that do not exist neither query Cassandra every time nor grow the index.
+ */
+@Component
+public class SensorLatestValueIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorLatestValueIndex.class);
+
+    /**
+     * Reloads go back this far before the previous load, for points that reach Cassandra shortly after their recorded_at
+     */
+    private static final Duration RELOAD_OVERLAP = Duration.ofMinutes(5);
+
+    /**
+     * Points stamped slightly ahead of this instance's clock are still read
+     */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    private final SensorMetricRepository sensorMetricRepository;
+    private final SensorMetricRangeReader rangeReader;
+    private final boolean warmOnStartup;
+    private final Duration window;
+    private final int rowsPerLoad;
+    private final long refreshMillis;
+    private final long ttlMillis;
+    private final long readThroughTimeoutMillis;
+    private final ConcurrentMap<String, ConcurrentMap<String, LatestValue>> latest = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Instant> loadedAt = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> unknown;
+    private final ConcurrentMap<String, CompletableFuture<Void>> loading = new ConcurrentHashMap<>();
+    private final ExecutorService readThrough;
+    /**
+     * Only used on the refresher thread
+     */
+    private boolean sensorsListed;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sensor-latest-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SensorLatestValueIndex(SensorMetricRepository sensorMetricRepository,
+                                  SensorMetricRangeReader rangeReader,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${sensor.latest-index.warm-on-startup:true}") boolean warmOnStartup,
+                                  @Value("${sensor.latest-index.window-hours:24}") int windowHours,
+                                  @Value("${sensor.latest-index.rows-per-load:100}") int rowsPerLoad,
+                                  @Value("${sensor.latest-index.refresh-ms:60000}") long refreshMillis,
+                                  @Value("${sensor.latest-index.ttl-ms:120000}") long ttlMillis,
+                                  @Value("${sensor.latest-index.read-through-timeout-ms:200}") long readThroughTimeoutMillis,
+                                  @Value("${sensor.latest-index.read-through-threads:4}") int readThroughThreads,
+                                  @Value("${sensor.latest-index.max-unknown-sensors:10000}") int maxUnknownSensors) {
+        this.sensorMetricRepository = sensorMetricRepository;
+        this.rangeReader = rangeReader;
+        this.warmOnStartup = warmOnStartup;
+        this.window = Duration.ofHours(windowHours);
+        this.rowsPerLoad = Math.max(1, rowsPerLoad);
+        this.refreshMillis = refreshMillis;
+        this.ttlMillis = ttlMillis;
+        this.readThroughTimeoutMillis = readThroughTimeoutMillis;
+        this.unknown = Caffeine.newBuilder()
+                .maximumSize(maxUnknownSensors)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        AtomicInteger threads = new AtomicInteger();
+        // the queue bounds the loads a burst of requests can line up; beyond it, requests answer from the index
+        this.readThrough = new ThreadPoolExecutor(readThroughThreads, readThroughThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxUnknownSensors / 10)), runnable -> {
+            Thread thread = new Thread(runnable, "sensor-latest-read-through-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("sensor.latest_index.sensors", latest, Map::size)
+                .description("Sensors with at least one value in the latest-value index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Points without a metric type or value are ignored
+     */
+    public void record(Collection<SensorMetric> metrics) {
+        metrics.forEach(this::record);
+    }
+
+    private void record(SensorMetric metric) {
+        if (metric.getMetricType() != null && metric.getMetricValue() != null && metric.getRecordedAt() != null) {
+            record(metric.getSensorId(), metric.getMetricType(), metric.getRecordedAt().getTime(), metric.getMetricValue());
+        }
+    }
+
+    void record(String sensorId, String metricType, long recordedAtMillis, double value) {
+        ConcurrentMap<String, LatestValue> byType = latest.computeIfAbsent(sensorId, id -> new ConcurrentHashMap<>());
+        LatestValue candidate = new LatestValue(recordedAtMillis, value);
+        while (true) {
+            LatestValue current = byType.putIfAbsent(metricType, candidate);
+            if (current == null) {
+                return;
+            }
+            if (current.recordedAtMillis >= recordedAtMillis || byType.replace(metricType, current, candidate)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param sensorIds the sensors to return, or null for every sensor in the index; requested sensors that are
+     *                  unknown or stale are read from Cassandra first, all at once, for at most
+     *                  read-through-timeout-ms; loads that take longer complete in the background
+     * @return one entry per (sensor, metric type), grouped by sensor in the requested order
+     */
+    public List<SensorLatestValueDTO> snapshot(Collection<String> sensorIds) {
+        List<SensorLatestValueDTO> values = new ArrayList<>();
+        if (sensorIds == null) {
+            latest.forEach((sensorId, byType) -> addAll(values, sensorId, byType));
+            return values;
+        }
+        Instant now = Instant.now();
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (String sensorId : sensorIds) {
+            Instant loaded = loadedAt.get(sensorId);
+            if ((loaded == null || loaded.plusMillis(ttlMillis).isBefore(now)) && unknown.getIfPresent(sensorId) == null) {
+                CompletableFuture<Void> load = loadInBackground(sensorId);
+                if (load != null) {
+                    loads.add(load);
+                }
+            }
+        }
+        awaitQuietly(loads);
+        for (String sensorId : sensorIds) {
+            Map<String, LatestValue> byType = latest.get(sensorId);
+            if (byType != null) {
+                addAll(values, sensorId, byType);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Starts a load of the sensor on the read-through pool, or joins the one already running
+     *
+     * @return null if the pool's queue is full
+     */
+    private CompletableFuture<Void> loadInBackground(String sensorId) {
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        CompletableFuture<Void> running = loading.putIfAbsent(sensorId, load);
+        if (running != null) {
+            return running;
+        }
+        try {
+            readThrough.execute(() -> {
+                try {
+                    loadQuietly(sensorId, Instant.now());
+                } finally {
+                    loading.remove(sensorId, load);
+                    load.complete(null);
+                }
+            });
+            return load;
+        } catch (RejectedExecutionException e) {
+            loading.remove(sensorId, load);
+            load.complete(null);
+            return null;
+        }
+    }
+
+    private void awaitQuietly(List<CompletableFuture<Void>> loads) {
+        if (loads.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                    .get(readThroughTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Answering from the latest-value index with {} sensor loads still running", loads.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // loadQuietly does not throw; a failed load leaves the sensor as it was
+        }
+    }
+
+    /**
+     * Loads every sensor that has a partition for the current or the previous month, then reloads the sensors
+     * in the index every refresh-ms. Runs once the application is ready on the index's own thread, so a slow scan
+     * delays neither startup nor the first requests; values written in the meantime are kept if they are newer
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!warmOnStartup) {
+            return;
+        }
+        if (refreshMillis > 0) {
+            refresher.scheduleWithFixedDelay(this::load, 0, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresher.execute(this::load);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        readThrough.shutdownNow();
+    }
+
+    /**
+     * Lists the sensors by a scan of every partition key until one scan has succeeded, and only reloads the
+     * sensors in the index after that
+     */
+    void load() {
+        Set<String> sensorIds = new HashSet<>(latest.keySet());
+        if (!sensorsListed) {
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            YearMonth previous = current.minusMonths(1);
+            try (Stream<PartitionKey> keys = sensorMetricRepository.scanPartitionKeys()) {
+                keys.forEach(key -> {
+                    YearMonth month = YearMonth.of(key.getYear(), key.getMonth());
+                    if (month.equals(current) || month.equals(previous)) {
+                        sensorIds.add(key.getSensorId());
+                    }
+                });
+                sensorsListed = true;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not list sensors for the latest-value index; reloading the known ones only", e);
+            }
+        }
+        Instant now = Instant.now();
+        int loaded = 0;
+        for (String sensorId : sensorIds) {
+            if (loadQuietly(sensorId, now)) {
+                loaded++;
+            }
+        }
+        LOGGER.info("Loaded {} of {} sensors into the latest-value index", loaded, sensorIds.size());
+    }
+
+    /**
+     * Reads the newest rows-per-load points of one sensor recorded since its previous load, or within the window
+     * on its first load. A sensor without any is remembered as unknown instead of being marked as loaded
+     *
+     * @return false if the read failed; the sensor keeps the values it has and is retried on its next load
+     */
+    boolean loadQuietly(String sensorId, Instant now) {
+        Instant previousLoad = loadedAt.get(sensorId);
+        Instant from = now.minus(window);
+        if (previousLoad != null && previousLoad.minus(RELOAD_OVERLAP).isAfter(from)) {
+            from = previousLoad.minus(RELOAD_OVERLAP);
+        }
+        try (Stream<SensorMetric> metrics = rangeReader.stream(sensorId, from, now.plus(CLOCK_SKEW), rowsPerLoad)) {
+            metrics.forEach(this::record);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not load sensor {} into the latest-value index", sensorId, e);
+            return false;
+        }
+        if (latest.containsKey(sensorId)) {
+            loadedAt.merge(sensorId, now, (a, b) -> a.isAfter(b) ? a : b);
+            unknown.invalidate(sensorId);
+        } else {
+            unknown.put(sensorId, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    private static void addAll(List<SensorLatestValueDTO> values, String sensorId, Map<String, LatestValue> byType) {
+        byType.forEach((metricType, value) ->
+                values.add(new SensorLatestValueDTO(sensorId, metricType, value.value, new Date(value.recordedAtMillis))));
+    }
+
+    private static final class LatestValue {
+
+        private final long recordedAtMillis;
+        private final double value;
+
+        LatestValue(long recordedAtMillis, double value) {
+            this.recordedAtMillis = recordedAtMillis;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a time range of one sensor across all (sensor_id, year, month, bucket) partitions it covers, newest first.
+ * Partitions never overlap in time, so merging them in recorded_at DESC order comes down to reading
+ * them newest month and bucket first. Up to readAhead partitions are queried in parallel ahead of the consumer,
+ * and partitions beyond the point where the consumer stops are never queried at all; the buckets of a month
+ * are only looked up once the reader gets to it. Reads still in flight are cancelled as soon as the limit is
+ * reached or the stream is closed, e.g. because the client disconnected. Ranges longer than
+ * sensor.range.max-span-days are rejected, so one request cannot enumerate an unbounded number of partitions.
+ */
+@Component
+public class SensorMetricRangeReader {
+
+    private final SensorMetricRepository sensorMetricRepository;
+    private final SensorBucketing sensorBucketing;
+    private final int readAhead;
+    private final Duration maxSpan;
+
+    public SensorMetricRangeReader(SensorMetricRepository sensorMetricRepository,
+                                   SensorBucketing sensorBucketing,
+                                   @Value("${sensor.range.read-ahead-partitions:3}") int readAhead,
+                                   @Value("${sensor.range.max-span-days:366}") int maxSpanDays) {
+        this.sensorMetricRepository = sensorMetricRepository;
+        this.sensorBucketing = sensorBucketing;
+        this.readAhead = Math.max(1, readAhead);
+        this.maxSpan = Duration.ofDays(maxSpanDays);
+    }
+
+    /**
+     * The range is checked right away, but no partition is queried before the stream is consumed
+     *
+     * @param to    exclusive
+     * @param limit the stream ends after this many metrics
+     * @throws IllegalArgumentException if the range is empty or longer than the maximum span, or the limit is not positive
+     */
+    public Stream<SensorMetric> stream(String sensorId, Instant from, Instant to, int limit) {
+        checkRange(from, to);
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        List<YearMonth> months = coveringMonths(from, to);
+        CloseableIterator<SensorMetric> metrics = new CloseableIterator<SensorMetric>() {
+            private final Deque<CloseableIterator<SensorMetric>> started = new ArrayDeque<>();
+            private final Deque<Integer> buckets = new ArrayDeque<>();
+            private YearMonth month;
+            private int nextMonth;
+            private int returned;
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                if (returned >= limit) {
+                    // the reads started ahead are not needed any more
+                    close();
+                }
+                startReads();
+                while (!started.isEmpty()) {
+                    if (started.peekFirst().hasNext()) {
+                        return true;
+                    }
+                    started.pollFirst().close();
+                    startReads();
+                }
+                return false;
+            }
+
+            @Override
+            public SensorMetric next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                returned++;
+                return started.peekFirst().next();
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+                buckets.clear();
+                while (!started.isEmpty()) {
+                    started.pollFirst().close();
+                }
+            }
+
+            private void startReads() {
+                while (!closed && started.size() < readAhead) {
+                    while (buckets.isEmpty() && nextMonth < months.size()) {
+                        month = months.get(nextMonth++);
+                        buckets.addAll(sensorBucketing.buckets(sensorId, month, from, to));
+                    }
+                    if (buckets.isEmpty()) {
+                        return;
+                    }
+                    started.addLast(sensorMetricRepository.readRange(
+                            sensorId, month.getYear(), month.getMonthValue(), buckets.pollFirst(), from, to, limit));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(metrics, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(metrics::close);
+    }
+
+    /**
+     * Also applied to aggregates over a time range, which enumerate the same partitions
+     *
+     * @throws IllegalArgumentException if the range is empty or longer than the maximum span
+     */
+    void checkRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxSpan) > 0) {
+            throw new IllegalArgumentException("Range is longer than " + maxSpan.toDays() + " days");
+        }
+    }
+
+    /**
+     * Newest month first
+     */
+    static List<YearMonth> coveringMonths(Instant from, Instant to) {
+        YearMonth first = YearMonth.from(from.atZone(ZoneOffset.UTC));
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(to.minusMillis(1).atZone(ZoneOffset.UTC)); !month.isBefore(first); month = month.minusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+}
@@ -1,70 +1,393 @@
 package cassandra.service.impl;
 
+import cassandra.dto.IngestResultDTO;
+import cassandra.dto.MultiSensorMetricsDTO;
+import cassandra.dto.PageDTO;
+import cassandra.dto.SensorLatestValueDTO;
+import cassandra.dto.SensorMetricAggregateDTO;
 import cassandra.dto.SensorMetricDTO;
 import cassandra.entity.SensorMetric;
+import cassandra.repository.ReactiveSensorMetricRepository;
 import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SensorMetricRollupRepository;
+import cassandra.repository.SensorMetricRollupRepository.Resolution;
+import cassandra.service.AggregateFunction;
 import cassandra.service.SensorMetricService;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * The months of a sensor may be split into several (sensor_id, year, month, bucket) partitions; every read
+ * asks {@link SensorBucketing} which partitions hold the requested time span, reads up to
+ * sensor.read.max-in-flight-partitions of them at a time and merges them newest first,
+ * so callers see one time-ordered sequence whatever the bucketing of the sensor.
+ */
 @Service
 public class SensorMetricServiceImpl implements SensorMetricService {
 
+    /**
+     * Coarsest first
+     */
+    private static final Resolution[] ROLLUPS = {Resolution.DAILY, Resolution.HOURLY};
+
+    private static final Comparator<SensorMetric> NEWEST_FIRST =
+            Comparator.comparing(SensorMetric::getRecordedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
     private final SensorMetricRepository sensorMetricRepository;
+    private final ReactiveSensorMetricRepository reactiveSensorMetricRepository;
+    private final SensorMetricRollupRepository rollupRepository;
+    private final SensorRollupMaintainer rollupMaintainer;
+    private final SensorMetricWriter sensorMetricWriter;
+    private final SensorMetricWriteBuffer writeBuffer;
+    private final SensorFanOutReader fanOutReader;
+    private final SensorMetricRangeReader rangeReader;
+    private final SensorLatestValueIndex latestValueIndex;
+    private final SensorBucketing sensorBucketing;
+    private final int ingestChunkSize;
+    private final boolean rollupsEnabled;
+    private final int maxInFlightPartitions;
 
     @Autowired
-    public SensorMetricServiceImpl(SensorMetricRepository sensorMetricRepository) {
+    public SensorMetricServiceImpl(SensorMetricRepository sensorMetricRepository,
+                                   ReactiveSensorMetricRepository reactiveSensorMetricRepository,
+                                   SensorMetricRollupRepository rollupRepository,
+                                   SensorRollupMaintainer rollupMaintainer,
+                                   SensorMetricWriter sensorMetricWriter,
+                                   SensorMetricWriteBuffer writeBuffer,
+                                   SensorFanOutReader fanOutReader,
+                                   SensorMetricRangeReader rangeReader,
+                                   SensorLatestValueIndex latestValueIndex,
+                                   SensorBucketing sensorBucketing,
+                                   @Value("${sensor.ingest.chunk-size:5000}") int ingestChunkSize,
+                                   @Value("${sensor.rollup.enabled:true}") boolean rollupsEnabled,
+                                   @Value("${sensor.read.max-in-flight-partitions:8}") int maxInFlightPartitions) {
         this.sensorMetricRepository = sensorMetricRepository;
+        this.reactiveSensorMetricRepository = reactiveSensorMetricRepository;
+        this.rollupRepository = rollupRepository;
+        this.rollupMaintainer = rollupMaintainer;
+        this.sensorMetricWriter = sensorMetricWriter;
+        this.writeBuffer = writeBuffer;
+        this.fanOutReader = fanOutReader;
+        this.rangeReader = rangeReader;
+        this.latestValueIndex = latestValueIndex;
+        this.sensorBucketing = sensorBucketing;
+        this.ingestChunkSize = ingestChunkSize;
+        this.rollupsEnabled = rollupsEnabled;
+        this.maxInFlightPartitions = Math.max(1, maxInFlightPartitions);
     }
 
     @Override
     public List<SensorMetricDTO> getMetricsBySensorAndMonth(String sensorId, int year, int month) {
-        List<SensorMetric> metrics = sensorMetricRepository.findBySensorAndMonth(sensorId, year, month);
-        return convertToMetricDTOs(metrics);
+        return convertToMetricDTOs(PartitionReads.collect(merge(sensorBucketing.buckets(sensorId, YearMonth.of(year, month)),
+                bucket -> sensorMetricRepository.readBySensorAndMonth(sensorId, year, month, bucket)), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public Stream<SensorMetricDTO> streamMetricsBySensorAndMonth(String sensorId, int year, int month) {
+        CloseableIterator<SensorMetric> metrics = merge(sensorBucketing.buckets(sensorId, YearMonth.of(year, month)),
+                bucket -> sensorMetricRepository.readBySensorAndMonth(sensorId, year, month, bucket));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(metrics, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(metrics::close)
+                .map(SensorMetricDTO::instanceOf);
+    }
+
+    @Override
+    public Stream<SensorMetricDTO> streamMetricsBySensorAndRange(String sensorId, Instant from, Instant to, int limit) {
+        return rangeReader.stream(sensorId, from, to, limit).map(SensorMetricDTO::instanceOf);
+    }
+
+    @Override
+    public Flux<SensorMetricDTO> fluxMetricsBySensorAndMonth(String sensorId, int year, int month) {
+        return mergeBuckets(sensorId, year, month,
+                bucket -> reactiveSensorMetricRepository.findBySensorAndMonth(sensorId, year, month, bucket))
+                .map(SensorMetricDTO::instanceOf);
+    }
+
+    @Override
+    public Flux<SensorMetricDTO> fluxLatestMetrics(String sensorId, int year, int month, int limit) {
+        return mergeBuckets(sensorId, year, month,
+                bucket -> reactiveSensorMetricRepository.findLatestMetrics(sensorId, year, month, bucket, limit))
+                .take(limit)
+                .map(SensorMetricDTO::instanceOf);
     }
 
     @Override
     public List<SensorMetricDTO> getMetricsBySensorAndDay(String sensorId, int year, int month, int day, int limit) {
-        List<SensorMetric> metrics = sensorMetricRepository.findBySensorAndDay(sensorId, year, month, day, limit);
-        return convertToMetricDTOs(metrics);
+        return convertToMetricDTOs(PartitionReads.collect(merge(bucketsOfHours(sensorId, year, month, day, 0, 23),
+                bucket -> sensorMetricRepository.readBySensorAndDay(sensorId, year, month, bucket, day, limit)), limit));
+    }
+
+    @Override
+    public PageDTO<SensorMetricDTO> getMetricsPageBySensorAndMonth(String sensorId, int year, int month, int size, String cursor) {
+        return PagingStateCursor.toPage(sensorBucketing.buckets(sensorId, YearMonth.of(year, month)), cursor, size,
+                maxInFlightPartitions,
+                (bucket, pageable) -> sensorMetricRepository.readPageBySensorAndMonth(sensorId, year, month, bucket, pageable),
+                SensorMetricDTO::instanceOf);
+    }
+
+    @Override
+    public PageDTO<SensorMetricDTO> getMetricsPageBySensorAndDay(String sensorId, int year, int month, int day, int size, String cursor) {
+        return PagingStateCursor.toPage(bucketsOfHours(sensorId, year, month, day, 0, 23), cursor, size,
+                maxInFlightPartitions,
+                (bucket, pageable) -> sensorMetricRepository.readPageBySensorAndDay(sensorId, year, month, bucket, day, pageable),
+                SensorMetricDTO::instanceOf);
     }
 
     @Override
     public List<SensorMetricDTO> getLatestMetrics(String sensorId, int year, int month, int limit) {
-        List<SensorMetric> metrics = sensorMetricRepository.findLatestMetrics(sensorId, year, month, limit);
-        return convertToMetricDTOs(metrics);
+        return convertToMetricDTOs(PartitionReads.collect(merge(sensorBucketing.buckets(sensorId, YearMonth.of(year, month)),
+                bucket -> sensorMetricRepository.readLatestMetrics(sensorId, year, month, bucket, limit)), limit));
+    }
+
+    @Override
+    public Mono<MultiSensorMetricsDTO> getLatestMetrics(Collection<String> sensorIds, int year, int month, int limit) {
+        return fanOutReader.read(sensorIds, sensorId -> fluxLatestMetrics(sensorId, year, month, limit));
+    }
+
+    @Override
+    public List<SensorLatestValueDTO> getLatestValues(Collection<String> sensorIds) {
+        return latestValueIndex.snapshot(sensorIds);
     }
 
     @Override
     public List<SensorMetricDTO> getMetricsByHourRange(String sensorId, int year, int month, int day, int hourStart, int hourEnd) {
-        List<SensorMetric> metrics = sensorMetricRepository.findBySensorAndHourRange(sensorId, year, month, day, hourStart, hourEnd);
-        return convertToMetricDTOs(metrics);
-    }
-
-    private List<SensorMetricDTO> convertToMetricDTOs(List<SensorMetric> metrics) {
-        List<SensorMetricDTO> metricDTOs = new ArrayList<>();
-        
-        for (SensorMetric metric : metrics) {
-            SensorMetricDTO dto = new SensorMetricDTO(
-                    metric.getSensorId(),
-                    metric.getYear(),
-                    metric.getMonth(),
-                    metric.getDay(),
-                    metric.getHour(),
-                    metric.getRecordedAt(),
-                    metric.getMetricType(),
-                    metric.getMetricValue(),
-                    metric.getUnit(),
-                    metric.getLocation(),
-                    metric.getStatus(),
-                    metric.getMetadata()
-            );
-            metricDTOs.add(dto);
+        return convertToMetricDTOs(PartitionReads.collect(merge(bucketsOfHours(sensorId, year, month, day, hourStart, hourEnd),
+                bucket -> sensorMetricRepository.readBySensorAndHourRange(sensorId, year, month, bucket, day, hourStart, hourEnd)),
+                Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<SensorMetricAggregateDTO> aggregateMetrics(String sensorId, int year, int month, String metricType,
+                                                           Duration bucket, Set<AggregateFunction> functions) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return aggregateMetrics(sensorId,
+                yearMonth.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant(),
+                yearMonth.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant(),
+                metricType, bucket, functions);
+    }
+
+    @Override
+    public List<SensorMetricAggregateDTO> aggregateMetrics(String sensorId, Instant from, Instant to, String metricType,
+                                                           Duration bucket, Set<AggregateFunction> functions) {
+        rangeReader.checkRange(from, to);
+        Resolution rollup = coarsestRollup(from, to, bucket);
+        MetricBucketAggregator aggregator = new MetricBucketAggregator(bucket.toMillis(), functions);
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        // Newest month first, each read from the rollups when they cover it and from its raw partitions otherwise,
+        // so buckets come out in the same order either way
+        for (YearMonth month : SensorMetricRangeReader.coveringMonths(from, to)) {
+            if (rollup != null && rollupMaintainer.isCovered(sensorId, month)) {
+                Instant monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+                Instant monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+                rollupRepository.scan(rollup, sensorId, from.isAfter(monthStart) ? from : monthStart,
+                        to.isBefore(monthEnd) ? to : monthEnd, metricType, aggregator::acceptRollup);
+                continue;
+            }
+            AtomicBoolean rawRows = new AtomicBoolean();
+            // Partitions are scanned maxInFlightPartitions at a time, each into its own aggregator, whose buckets
+            // are folded in partition order; a bucket that spans two partitions is completed by the older one
+            Deque<CompletableFuture<MetricBucketAggregator>> scans = new ArrayDeque<>();
+            try {
+                for (int partition : sensorBucketing.buckets(sensorId, month, from, to)) {
+                    if (scans.size() >= maxInFlightPartitions) {
+                        PartitionReads.await(scans.pollFirst()).finish().forEach(aggregator::acceptBucket);
+                    }
+                    MetricBucketAggregator partitionAggregator = new MetricBucketAggregator(bucket.toMillis(),
+                            EnumSet.allOf(AggregateFunction.class));
+                    scans.addLast(sensorMetricRepository.scanValues(sensorId, month.getYear(), month.getMonthValue(),
+                                    partition, metricType,
+                                    (recordedAtMillis, value) -> {
+                                        rawRows.lazySet(true);
+                                        if (recordedAtMillis >= fromMillis && recordedAtMillis < toMillis) {
+                                            partitionAggregator.accept(recordedAtMillis, value);
+                                        }
+                                    })
+                            .thenApply(done -> partitionAggregator)
+                            .toCompletableFuture());
+                }
+                while (!scans.isEmpty()) {
+                    PartitionReads.await(scans.pollFirst()).finish().forEach(aggregator::acceptBucket);
+                }
+            } finally {
+                scans.forEach(scan -> scan.cancel(false));
+            }
+            // only months that hold rows are worth rolling up, which also keeps made-up sensor IDs off the maintainer
+            if (rollup != null && rawRows.get()) {
+                rollupMaintainer.requestBackfill(sensorId, month);
+            }
         }
-        
-        return metricDTOs;
+        return aggregator.finish();
+    }
+
+    /**
+     * A rollup can answer the query when its buckets nest exactly inside the requested buckets
+     * and the range starts and ends on rollup bucket boundaries
+     */
+    private Resolution coarsestRollup(Instant from, Instant to, Duration bucket) {
+        if (!rollupsEnabled) {
+            return null;
+        }
+        for (Resolution resolution : ROLLUPS) {
+            long width = resolution.getWidth().toMillis();
+            if (bucket.toMillis() % width == 0
+                    && from.toEpochMilli() % width == 0
+                    && to.toEpochMilli() % width == 0) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public IngestResultDTO ingestMetrics(Iterator<SensorMetricDTO> metrics) {
+        long start = System.nanoTime();
+        long received = 0;
+        long rejected = 0;
+
+        // Rows of one chunk are grouped by partition before being written, so larger chunks
+        // give fuller batches; the write throttle blocks this loop when too many batches are in flight
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        List<SensorMetric> chunk = new ArrayList<>(ingestChunkSize);
+        while (metrics.hasNext()) {
+            SensorMetricDTO dto = metrics.next();
+            received++;
+            SensorMetric metric = toPartitionedEntity(dto);
+            if (metric == null) {
+                rejected++;
+                continue;
+            }
+            chunk.add(metric);
+            if (chunk.size() >= ingestChunkSize) {
+                writes.add(sensorMetricWriter.write(chunk));
+                chunk = new ArrayList<>(ingestChunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writes.add(sensorMetricWriter.write(chunk));
+        }
+
+        long written = writes.stream().mapToLong(CompletableFuture::join).sum();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestResultDTO(received, written, rejected, received - rejected - written, elapsedMillis);
+    }
+
+    @Override
+    public void bufferMetrics(List<SensorMetricDTO> metrics) {
+        List<SensorMetric> entities = new ArrayList<>(metrics.size());
+        for (SensorMetricDTO dto : metrics) {
+            SensorMetric metric = toPartitionedEntity(dto);
+            if (metric == null) {
+                throw new IllegalArgumentException("Every metric needs a sensorId and a recordedAt timestamp " +
+                        "that matches its year, month, day and hour and is not in the future");
+            }
+            entities.add(metric);
+        }
+        writeBuffer.offer(entities);
+    }
+
+    /**
+     * Fills in the partition and clustering fields that can be derived from recordedAt (UTC). Fields the client
+     * sent must agree with recordedAt, and recordedAt must not be further ahead of the clock than
+     * {@link SensorBucketing} allows, or the row would be stored in a partition or bucket where reads by time
+     * never look for it
+     *
+     * @return the entity to write, or null if the row cannot be placed in a partition
+     */
+    private SensorMetric toPartitionedEntity(SensorMetricDTO dto) {
+        if (dto == null || dto.getSensorId() == null || dto.getSensorId().isEmpty() || dto.getRecordedAt() == null) {
+            return null;
+        }
+        if (!sensorBucketing.isWritable(dto.getRecordedAt().toInstant())) {
+            return null;
+        }
+        ZonedDateTime recordedAt = dto.getRecordedAt().toInstant().atZone(ZoneOffset.UTC);
+        if (!matches(dto.getYear(), recordedAt.getYear()) || !matches(dto.getMonth(), recordedAt.getMonthValue())
+                || !matches(dto.getDay(), recordedAt.getDayOfMonth()) || !matches(dto.getHour(), recordedAt.getHour())) {
+            return null;
+        }
+        SensorMetric metric = SensorMetric.instanceOf(dto);
+        metric.setYear(recordedAt.getYear());
+        metric.setMonth(recordedAt.getMonthValue());
+        metric.setDay(recordedAt.getDayOfMonth());
+        metric.setHour(recordedAt.getHour());
+        return metric;
+    }
+
+    private static boolean matches(Integer sent, int derived) {
+        return sent == null || sent == derived;
+    }
+
+    /**
+     * Merges the reads of the partitions of a sensor+month newest first, maxInFlightPartitions partitions at a time.
+     * The partitions are listed off the calling thread since the bucketing may have to be looked up
+     */
+    @SuppressWarnings("unchecked")
+    private Flux<SensorMetric> mergeBuckets(String sensorId, int year, int month, Function<Integer, Flux<SensorMetric>> read) {
+        return Mono.fromCallable(() -> sensorBucketing.buckets(sensorId, YearMonth.of(year, month)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .buffer(maxInFlightPartitions)
+                .concatMap(buckets -> Flux.mergeComparing(NEWEST_FIRST,
+                        buckets.stream().map(read).toArray(Publisher[]::new)));
+    }
+
+    /**
+     * See {@link PartitionReads#merge}
+     */
+    private CloseableIterator<SensorMetric> merge(List<Integer> buckets, IntFunction<CloseableIterator<SensorMetric>> read) {
+        return PartitionReads.merge(buckets, maxInFlightPartitions, NEWEST_FIRST, read);
+    }
+
+    /**
+     * The partitions holding hours hourStart to hourEnd (inclusive) of one day. A day that does not exist
+     * in the month has none
+     */
+    private List<Integer> bucketsOfHours(String sensorId, int year, int month, int day, int hourStart, int hourEnd) {
+        if (day < 1 || hourEnd < hourStart) {
+            return Collections.emptyList();
+        }
+        YearMonth yearMonth = YearMonth.of(year, month);
+        ZonedDateTime dayStart = yearMonth.atDay(1).atStartOfDay(ZoneOffset.UTC).plusDays(day - 1);
+        return sensorBucketing.buckets(sensorId, yearMonth,
+                dayStart.plusHours(hourStart).toInstant(), dayStart.plusHours(hourEnd + 1L).toInstant());
+    }
+
+    static List<SensorMetricDTO> convertToMetricDTOs(List<SensorMetric> metrics) {
+        return metrics.stream()
+                .map(SensorMetricDTO::instanceOf)
+                .collect(Collectors.toList());
     }
 }
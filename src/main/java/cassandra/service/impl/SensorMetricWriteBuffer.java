@@ -0,0 +1,229 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.service.WriteBufferFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Write-behind buffer in front of {@link SensorMetricWriter}.
+ * Points are coalesced per (sensor_id, year, month) partition and written as one batch when the
+ * partition reaches the flush size or its oldest point reaches the maximum age.
+ * Memory is bounded by a fixed number of points, counting both buffered points and points
+ * whose flush is still in flight; once it is exhausted, callers wait up to the block timeout
+ * and are then rejected with {@link WriteBufferFullException}.
+ * Batches are written from the buffer's own thread, so callers never wait on Cassandra.
+ */
+@Component
+public class SensorMetricWriteBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorMetricWriteBuffer.class);
+
+    private final SensorMetricWriter sensorMetricWriter;
+    private final int capacity;
+    private final int flushSize;
+    private final long maxAgeNanos;
+    private final long blockTimeoutMillis;
+
+    private final Semaphore space;
+    private final Map<List<Object>, PartitionBuffer> partitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final Timer flushLatency;
+    private final Counter droppedFull;
+    private final Counter droppedWriteFailed;
+
+    public SensorMetricWriteBuffer(SensorMetricWriter sensorMetricWriter,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${sensor.write-buffer.capacity:100000}") int capacity,
+                                   @Value("${sensor.write-buffer.flush-size:100}") int flushSize,
+                                   @Value("${sensor.write-buffer.max-age-ms:2000}") long maxAgeMillis,
+                                   @Value("${sensor.write-buffer.block-timeout-ms:0}") long blockTimeoutMillis) {
+        this.sensorMetricWriter = sensorMetricWriter;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.space = new Semaphore(capacity);
+
+        Gauge.builder("sensor.write_buffer.depth", this, SensorMetricWriteBuffer::getDepth)
+                .description("Points buffered or being flushed")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("sensor.write_buffer.flush")
+                .description("Time to write one coalesced partition batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.droppedFull = Counter.builder("sensor.write_buffer.dropped")
+                .tag("reason", "buffer_full")
+                .register(meterRegistry);
+        this.droppedWriteFailed = Counter.builder("sensor.write_buffer.dropped")
+                .tag("reason", "write_failed")
+                .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMillis = Math.max(1, maxAgeMillis / 4);
+        this.flusher.scheduleWithFixedDelay(this::flushExpired, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer all points or none of them
+     *
+     * @throws IllegalArgumentException if there are more points than the buffer can ever hold
+     * @throws WriteBufferFullException if there is no room for the points within the block timeout
+     */
+    public void offer(List<SensorMetric> metrics) {
+        int points = metrics.size();
+        if (points == 0) {
+            return;
+        }
+        if (points > capacity) {
+            throw new IllegalArgumentException("Cannot buffer " + points + " points at once, the capacity is " + capacity);
+        }
+        if (!reserve(points)) {
+            droppedFull.increment(points);
+            throw new WriteBufferFullException(points, capacity);
+        }
+
+        for (SensorMetric metric : metrics) {
+            List<Object> key = Arrays.asList(metric.getSensorId(), metric.getYear(), metric.getMonth());
+            AtomicReference<List<SensorMetric>> full = new AtomicReference<>();
+            partitions.compute(key, (k, buffer) -> {
+                PartitionBuffer target = buffer != null ? buffer : new PartitionBuffer();
+                target.points.add(metric);
+                if (target.points.size() >= flushSize) {
+                    full.set(target.points);
+                    return null;
+                }
+                return target;
+            });
+            if (full.get() != null) {
+                flushLater(full.get());
+            }
+        }
+    }
+
+    public int getDepth() {
+        return capacity - space.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            drain().get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            LOGGER.warn("Gave up waiting for {} buffered sensor metrics to be written on shutdown", getDepth());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to flush buffered sensor metrics on shutdown", e);
+        }
+    }
+
+    /**
+     * Flush every buffered partition regardless of its age or size
+     */
+    public CompletableFuture<Void> drain() {
+        List<CompletableFuture<Integer>> flushes = new ArrayList<>();
+        for (List<Object> key : partitions.keySet()) {
+            PartitionBuffer buffer = partitions.remove(key);
+            if (buffer != null) {
+                flushes.add(flush(buffer.points));
+            }
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture[0]));
+    }
+
+    private boolean reserve(int points) {
+        if (blockTimeoutMillis <= 0) {
+            return space.tryAcquire(points);
+        }
+        try {
+            return space.tryAcquire(points, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushExpired() {
+        long cutoff = System.nanoTime() - maxAgeNanos;
+        for (List<Object> key : partitions.keySet()) {
+            AtomicReference<List<SensorMetric>> expired = new AtomicReference<>();
+            partitions.computeIfPresent(key, (k, buffer) -> {
+                if (buffer.createdNanos - cutoff <= 0) {
+                    expired.set(buffer.points);
+                    return null;
+                }
+                return buffer;
+            });
+            if (expired.get() != null) {
+                flush(expired.get());
+            }
+        }
+    }
+
+    /**
+     * Hands a full partition to the buffer's thread. After shutdown has begun the caller writes it instead,
+     * so no points are left behind in the executor
+     */
+    private void flushLater(List<SensorMetric> points) {
+        try {
+            flusher.execute(() -> flush(points));
+        } catch (RejectedExecutionException e) {
+            flush(points);
+        }
+    }
+
+    private CompletableFuture<Integer> flush(List<SensorMetric> points) {
+        Timer.Sample sample = Timer.start();
+        CompletableFuture<Integer> write;
+        try {
+            write = sensorMetricWriter.write(points);
+        } catch (RuntimeException e) {
+            write = new CompletableFuture<>();
+            write.completeExceptionally(e);
+        }
+        return write.handle((written, error) -> {
+            sample.stop(flushLatency);
+            int lost = error != null ? points.size() : points.size() - written;
+            if (lost > 0) {
+                droppedWriteFailed.increment(lost);
+            }
+            space.release(points.size());
+            return error != null ? 0 : written;
+        });
+    }
+
+    private static final class PartitionBuffer {
+
+        private final List<SensorMetric> points = new ArrayList<>();
+        private final long createdNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,84 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * The write path shared by bulk ingestion and the write-behind buffer: places raw points in their
+ * sensor_metrics bucket, writes them and then updates the latest-value index. The hours written to are handed
+ * to {@link SensorRollupMaintainer}, which recomputes their rollups from what ended up in sensor_metrics.
+ * Only partitions whose raw points were all written are indexed, so a failed write never leaves dashboards
+ * showing values that are not in sensor_metrics.
+ */
+@Component
+public class SensorMetricWriter {
+
+    private final SensorMetricRepository sensorMetricRepository;
+    private final SensorRollupMaintainer rollupMaintainer;
+    private final SensorLatestValueIndex latestValueIndex;
+    private final SensorBucketing sensorBucketing;
+    private final PartitionWriteTracker partitionWriteTracker;
+
+    public SensorMetricWriter(SensorMetricRepository sensorMetricRepository,
+                              SensorRollupMaintainer rollupMaintainer,
+                              SensorLatestValueIndex latestValueIndex,
+                              SensorBucketing sensorBucketing,
+                              PartitionWriteTracker partitionWriteTracker) {
+        this.sensorMetricRepository = sensorMetricRepository;
+        this.rollupMaintainer = rollupMaintainer;
+        this.latestValueIndex = latestValueIndex;
+        this.sensorBucketing = sensorBucketing;
+        this.partitionWriteTracker = partitionWriteTracker;
+    }
+
+    /**
+     * @return the number of raw points written
+     */
+    public CompletableFuture<Integer> write(Collection<SensorMetric> metrics) {
+        sensorBucketing.assignBuckets(metrics);
+        Map<List<Object>, List<SensorMetric>> byPartition = metrics.stream()
+                .collect(Collectors.groupingBy(
+                        metric -> Arrays.<Object>asList(metric.getSensorId(), metric.getYear(), metric.getMonth(), metric.getBucket()),
+                        LinkedHashMap::new,
+                        Collectors.toList()));
+
+        rollupMaintainer.beforeWrite(metrics);
+        List<CompletableFuture<Integer>> writes = new ArrayList<>(byPartition.size());
+        for (List<SensorMetric> partition : byPartition.values()) {
+            writes.add(insert(partition)
+                    .whenComplete((written, error) -> rollupMaintainer.afterWrite(partition))
+                    .thenApply(written -> {
+                        partitionWriteTracker.recordSensorWrite(partition);
+                        if (written == partition.size()) {
+                            latestValueIndex.record(partition);
+                        }
+                        return written;
+                    }));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .thenApply(done -> writes.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    /**
+     * A write that fails before it is sent still completes the future, so its hours are released
+     */
+    private CompletableFuture<Integer> insert(List<SensorMetric> partition) {
+        try {
+            return sensorMetricRepository.insertAllAsync(partition).toCompletableFuture();
+        } catch (RuntimeException e) {
+            CompletableFuture<Integer> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
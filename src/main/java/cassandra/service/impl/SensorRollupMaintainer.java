@@ -0,0 +1,341 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.entity.SensorMetricRollup;
+import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SensorMetricRollupRepository;
+import cassandra.repository.SensorMetricRollupRepository.DirtyHour;
+import cassandra.repository.SensorMetricRollupRepository.Resolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the hourly and daily rollups in line with sensor_metrics by recomputing them from the raw rows rather
+ * than adding each write to them, so a replayed or retried write, or two instances writing the same sensor,
+ * never count a point twice.
+ * The write path marks the hours it writes to, in memory and in sensor_metric_rollup_dirty, before writing the
+ * raw rows; every delay-ms the hours whose writes have all finished are recomputed from their raw rows, and
+ * their days from the hourly rows. Markers left behind by a stopped instance are picked up at startup.
+ * A month is recorded as covered once all of its raw rows have been rolled up by a backfill, which runs the
+ * first time the month is written to, or read through the rollups, with rollups enabled. Until then aggregates
+ * over that month are read from the raw rows.
+ */
+@Component
+public class SensorRollupMaintainer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorRollupMaintainer.class);
+
+    private final SensorMetricRepository sensorMetricRepository;
+    private final SensorMetricRollupRepository rollupRepository;
+    private final SensorBucketing sensorBucketing;
+    private final boolean enabled;
+
+    /**
+     * Hours written to and not rolled up since, by (sensor_id, hour start millis). State is only read and
+     * changed inside the map's compute methods, which serialize access per hour
+     */
+    private final ConcurrentMap<List<Object>, HourState> hours = new ConcurrentHashMap<>();
+    /**
+     * (sensor_id, month) known to be covered; a month never stops being covered
+     */
+    private final Set<List<Object>> covered = ConcurrentHashMap.newKeySet();
+    private final Set<List<Object>> backfills = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService maintainer;
+
+    public SensorRollupMaintainer(SensorMetricRepository sensorMetricRepository,
+                                  SensorMetricRollupRepository rollupRepository,
+                                  SensorBucketing sensorBucketing,
+                                  @Value("${sensor.rollup.enabled:true}") boolean enabled,
+                                  @Value("${sensor.rollup.delay-ms:1000}") long delayMillis) {
+        this.sensorMetricRepository = sensorMetricRepository;
+        this.rollupRepository = rollupRepository;
+        this.sensorBucketing = sensorBucketing;
+        this.enabled = enabled;
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-rollups");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            this.maintainer.scheduleWithFixedDelay(this::recomputeQuietly, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Marks the hours of the points as being written. Blocks until the markers are stored; a marker that cannot
+     * be stored is logged, and the hour is still rolled up unless this instance stops first
+     */
+    public void beforeWrite(Collection<SensorMetric> points) {
+        if (!enabled) {
+            return;
+        }
+        Set<List<Object>> keys = hourKeys(points);
+        for (List<Object> key : keys) {
+            hours.compute(key, (k, state) -> {
+                HourState target = state != null ? state : new HourState();
+                target.pendingWrites++;
+                return target;
+            });
+        }
+        // taken after counting the writes in, so a recomputation that sees no pending writes started after
+        // every marker older than its own start time
+        long writeTimeMicros = nowMicros();
+        List<CompletableFuture<Void>> markers = new ArrayList<>(keys.size());
+        for (List<Object> key : keys) {
+            markers.add(rollupRepository.markDirtyAsync((String) key.get(0), (Long) key.get(1), writeTimeMicros));
+        }
+        try {
+            CompletableFuture.allOf(markers.toArray(new CompletableFuture[0])).join();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to mark {} hours as waiting for their rollups", keys.size(), e);
+        }
+    }
+
+    /**
+     * Called once the raw rows of the points were written, or failed to be
+     */
+    public void afterWrite(Collection<SensorMetric> points) {
+        if (!enabled) {
+            return;
+        }
+        for (List<Object> key : hourKeys(points)) {
+            hours.computeIfPresent(key, (k, state) -> {
+                state.dirty = true;
+                state.pendingWrites--;
+                return state;
+            });
+        }
+    }
+
+    /**
+     * @return whether aggregates over the month can be read from the rollups
+     */
+    public boolean isCovered(String sensorId, YearMonth month) {
+        List<Object> key = Arrays.<Object>asList(sensorId, month);
+        if (covered.contains(key)) {
+            return true;
+        }
+        for (YearMonth coveredMonth : rollupRepository.coveredMonths(sensorId)) {
+            covered.add(Arrays.<Object>asList(sensorId, coveredMonth));
+        }
+        return covered.contains(key);
+    }
+
+    /**
+     * Rolls up every raw row of the month in the background, unless that is already under way
+     */
+    public void requestBackfill(String sensorId, YearMonth month) {
+        List<Object> key = Arrays.<Object>asList(sensorId, month);
+        if (!enabled || covered.contains(key) || !backfills.add(key)) {
+            return;
+        }
+        try {
+            maintainer.execute(() -> {
+                try {
+                    backfill(sensorId, month);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to backfill the rollups of sensor {} for {}", sensorId, month, e);
+                } finally {
+                    backfills.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backfills.remove(key);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverDirtyHours() {
+        if (!enabled) {
+            return;
+        }
+        maintainer.execute(() -> {
+            long recovered = 0;
+            try (Stream<DirtyHour> dirty = rollupRepository.scanDirty()) {
+                for (DirtyHour hour : (Iterable<DirtyHour>) dirty::iterator) {
+                    hours.compute(Arrays.<Object>asList(hour.getSensorId(), hour.getHourStartMillis()), (k, state) -> {
+                        HourState target = state != null ? state : new HourState();
+                        target.dirty = true;
+                        return target;
+                    });
+                    recovered++;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not read the hours left to roll up", e);
+            }
+            if (recovered > 0) {
+                LOGGER.info("Recovered {} hours left to roll up", recovered);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintainer.shutdownNow();
+    }
+
+    /**
+     * Recomputes the hours that were written to and have no write in progress, then their days
+     */
+    void recompute() {
+        // taken before looking at the pending writes, see beforeWrite
+        long readTimeMicros = nowMicros();
+        Map<List<Object>, Set<Long>> hoursByDay = new LinkedHashMap<>();
+        for (List<Object> key : hours.keySet()) {
+            boolean[] picked = new boolean[1];
+            hours.computeIfPresent(key, (k, state) -> {
+                if (state.pendingWrites > 0) {
+                    return state;
+                }
+                picked[0] = state.dirty;
+                return null;
+            });
+            if (picked[0]) {
+                String sensorId = (String) key.get(0);
+                long hourStart = (Long) key.get(1);
+                hoursByDay.computeIfAbsent(Arrays.<Object>asList(sensorId, Resolution.DAILY.bucketStart(hourStart)),
+                        day -> new LinkedHashSet<>()).add(hourStart);
+            }
+        }
+
+        for (Map.Entry<List<Object>, Set<Long>> day : hoursByDay.entrySet()) {
+            String sensorId = (String) day.getKey().get(0);
+            long dayStart = (Long) day.getKey().get(1);
+            try {
+                for (long hourStart : day.getValue()) {
+                    recomputeHour(sensorId, hourStart, readTimeMicros);
+                }
+                recomputeDay(sensorId, dayStart);
+                for (long hourStart : day.getValue()) {
+                    rollupRepository.clearDirty(sensorId, hourStart, readTimeMicros);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to recompute the rollups of sensor {} for {}, will retry", sensorId,
+                        Instant.ofEpochMilli(dayStart), e);
+                for (long hourStart : day.getValue()) {
+                    hours.compute(Arrays.<Object>asList(sensorId, hourStart), (k, state) -> {
+                        HourState target = state != null ? state : new HourState();
+                        target.dirty = true;
+                        return target;
+                    });
+                }
+                continue;
+            }
+            YearMonth month = YearMonth.from(Instant.ofEpochMilli(dayStart).atZone(ZoneOffset.UTC));
+            if (!isCovered(sensorId, month)) {
+                requestBackfill(sensorId, month);
+            }
+        }
+    }
+
+    /**
+     * Rolls up every raw row of the month and records the month as covered. Hours written to meanwhile are
+     * marked and recomputed afterwards, and their rollups replace the ones written here
+     */
+    void backfill(String sensorId, YearMonth month) {
+        long readTimeMicros = nowMicros();
+        Map<List<Object>, SensorMetricRollup> hourly = new LinkedHashMap<>();
+        for (int bucket : sensorBucketing.buckets(sensorId, month)) {
+            sensorMetricRepository.scanTypedValues(sensorId, month.getYear(), month.getMonthValue(), bucket,
+                    (metricType, recordedAtMillis, value) ->
+                            add(hourly, Resolution.HOURLY, sensorId, metricType, recordedAtMillis, value));
+        }
+        rollupRepository.replaceAsync(Resolution.HOURLY, hourly.values(), readTimeMicros).join();
+        ZonedDateTime monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC);
+        for (ZonedDateTime day = monthStart; day.isBefore(monthStart.plusMonths(1)); day = day.plusDays(1)) {
+            recomputeDay(sensorId, day.toInstant().toEpochMilli());
+        }
+        rollupRepository.markCovered(sensorId, month);
+        covered.add(Arrays.<Object>asList(sensorId, month));
+        LOGGER.info("Backfilled {} hourly rollups of sensor {} for {}", hourly.size(), sensorId, month);
+    }
+
+    private void recomputeQuietly() {
+        try {
+            recompute();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Rollup recomputation failed", e);
+        }
+    }
+
+    private void recomputeHour(String sensorId, long hourStartMillis, long readTimeMicros) {
+        ZonedDateTime hourStart = Instant.ofEpochMilli(hourStartMillis).atZone(ZoneOffset.UTC);
+        YearMonth month = YearMonth.from(hourStart);
+        Map<List<Object>, SensorMetricRollup> hourly = new LinkedHashMap<>();
+        for (int bucket : sensorBucketing.buckets(sensorId, month, hourStart.toInstant(), hourStart.plusHours(1).toInstant())) {
+            sensorMetricRepository.scanTypedValues(sensorId, month.getYear(), month.getMonthValue(), bucket,
+                    hourStart.getDayOfMonth(), hourStart.getHour(),
+                    (metricType, recordedAtMillis, value) ->
+                            add(hourly, Resolution.HOURLY, sensorId, metricType, recordedAtMillis, value));
+        }
+        rollupRepository.replaceAsync(Resolution.HOURLY, hourly.values(), readTimeMicros).join();
+    }
+
+    /**
+     * Sums up the hourly rows of a day. The write time is taken after this instance's hourly rows of the day
+     * were written, so a daily row computed from hourly rows that were still missing some of them always
+     * carries an earlier write time and loses
+     */
+    private void recomputeDay(String sensorId, long dayStartMillis) {
+        long readTimeMicros = nowMicros();
+        Map<String, SensorMetricRollup> daily = new LinkedHashMap<>();
+        Instant dayStart = Instant.ofEpochMilli(dayStartMillis);
+        rollupRepository.scan(Resolution.HOURLY, sensorId, dayStart, dayStart.plus(Resolution.DAILY.getWidth()), null,
+                hourly -> daily.computeIfAbsent(hourly.getMetricType(),
+                        type -> new SensorMetricRollup(sensorId, type, dayStartMillis)).merge(hourly));
+        rollupRepository.replaceAsync(Resolution.DAILY, daily.values(), readTimeMicros).join();
+    }
+
+    private static void add(Map<List<Object>, SensorMetricRollup> rollups, Resolution resolution, String sensorId,
+                            String metricType, long recordedAtMillis, double value) {
+        long bucketStart = resolution.bucketStart(recordedAtMillis);
+        rollups.computeIfAbsent(Arrays.<Object>asList(metricType, bucketStart),
+                key -> new SensorMetricRollup(sensorId, metricType, bucketStart))
+                .add(recordedAtMillis, value);
+    }
+
+    private static Set<List<Object>> hourKeys(Collection<SensorMetric> points) {
+        Set<List<Object>> keys = new LinkedHashSet<>();
+        for (SensorMetric point : points) {
+            keys.add(Arrays.<Object>asList(point.getSensorId(),
+                    Resolution.HOURLY.bucketStart(point.getRecordedAt().getTime())));
+        }
+        return keys;
+    }
+
+    private static long nowMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    private static final class HourState {
+
+        private int pendingWrites;
+        private boolean dirty;
+    }
+}
@@ -0,0 +1,111 @@
+package cassandra.codec;
+
+import cassandra.dto.SensorMetricDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SensorSeriesCodecTest {
+
+    private static final long NOV_30_2025 = 1764547200000L;
+
+    @Test
+    public void shouldRoundTripIrregularSeriesAcrossBlocks() throws IOException {
+        Random random = new Random(42);
+        List<SensorMetricDTO> metrics = new ArrayList<>();
+        long recordedAt = NOV_30_2025 + 86_400_000L;
+        for (int i = 0; i < 2 * SensorSeriesWriter.BLOCK_SIZE + 17; i++) {
+            // newest first, mostly every minute with jitter, a gap across the month boundary, and a few outliers
+            recordedAt -= i == 1000 ? 3L * 86_400_000L : 60_000 + random.nextInt(2_000);
+            Double value = i % 97 == 0 ? null
+                    : i % 89 == 0 ? Double.NaN
+                    : i % 13 == 0 ? -random.nextDouble() * 1e9
+                    : 20 + Math.round(random.nextGaussian() * 10) / 10.0;
+            metrics.add(metric(recordedAt, i % 3 == 0 ? "humidity" : "temperature", value,
+                    i % 3 == 0 ? "%" : "celsius", i < 500 ? "Building A" : null, i % 50 == 0 ? "WARN" : "OK"));
+        }
+
+        List<SensorMetricDTO> decoded = decode(encode(metrics));
+
+        assertThat(decoded).hasSameSizeAs(metrics);
+        for (int i = 0; i < metrics.size(); i++) {
+            assertThat(decoded.get(i)).usingRecursiveComparison().ignoringFields("metadata")
+                    .withComparatorForType(Comparator.nullsFirst(Double::compare), Double.class).isEqualTo(metrics.get(i));
+        }
+    }
+
+    @Test
+    public void shouldBeAnOrderOfMagnitudeSmallerThanJsonForARegularSeries() throws IOException {
+        List<SensorMetricDTO> metrics = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            metrics.add(metric(NOV_30_2025 - i * 60_000L, "temperature", 21.5 + (i % 20) * 0.5, "celsius", "Building A - Floor 3", "OK"));
+        }
+
+        byte[] encoded = encode(metrics);
+
+        assertThat(encoded.length * 10).isLessThan(new ObjectMapper().writeValueAsBytes(metrics).length);
+        assertThat(decode(encoded)).hasSize(10_000);
+    }
+
+    @Test
+    public void shouldEncodeAnEmptySeries() throws IOException {
+        SensorSeriesReader reader = new SensorSeriesReader(new ByteArrayInputStream(encode(new ArrayList<>())));
+
+        assertThat(reader.getSensorId()).isEqualTo("TEMP-001");
+        assertThat(reader.read()).isNull();
+    }
+
+    @Test
+    public void shouldRejectMetricsOfAnotherSensor() throws IOException {
+        SensorSeriesWriter writer = new SensorSeriesWriter(new ByteArrayOutputStream(), "TEMP-001");
+        SensorMetricDTO other = metric(NOV_30_2025, "temperature", 1.0, null, null, null);
+        other.setSensorId("TEMP-002");
+
+        assertThatThrownBy(() -> writer.write(other)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] encode(List<SensorMetricDTO> metrics) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SensorSeriesWriter writer = new SensorSeriesWriter(out, "TEMP-001");
+        for (SensorMetricDTO metric : metrics) {
+            writer.write(metric);
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static List<SensorMetricDTO> decode(byte[] encoded) throws IOException {
+        return new SensorSeriesReader(new ByteArrayInputStream(encoded)).readAll();
+    }
+
+    private static SensorMetricDTO metric(long recordedAt, String metricType, Double value, String unit, String location, String status) {
+        ZonedDateTime utc = Instant.ofEpochMilli(recordedAt).atZone(ZoneOffset.UTC);
+        SensorMetricDTO metric = new SensorMetricDTO();
+        metric.setSensorId("TEMP-001");
+        metric.setYear(utc.getYear());
+        metric.setMonth(utc.getMonthValue());
+        metric.setDay(utc.getDayOfMonth());
+        metric.setHour(utc.getHour());
+        metric.setRecordedAt(new Date(recordedAt));
+        metric.setMetricType(metricType);
+        metric.setMetricValue(value);
+        metric.setUnit(unit);
+        metric.setLocation(location);
+        metric.setStatus(status);
+        return metric;
+    }
+}
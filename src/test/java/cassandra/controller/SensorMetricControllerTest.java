@@ -0,0 +1,65 @@
+package cassandra.controller;
+
+import cassandra.dto.SensorMetricDTO;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SensorMetricControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void shouldSkipRowsThatCannotBeMappedAndKeepReading() throws Exception {
+        SensorMetricController.ReadableRows rows = rows(
+                "{\"sensorId\":\"A\"}\n{\"sensorId\":\"B\",\"metricValue\":\"not a number\"}\n{\"sensorId\":\"C\"}\n");
+
+        List<SensorMetricDTO> read = readAll(rows);
+
+        assertThat(read).hasSize(3);
+        assertThat(read.get(0).getSensorId()).isEqualTo("A");
+        assertThat(read.get(1)).isNull();
+        assertThat(read.get(2).getSensorId()).isEqualTo("C");
+        assertThat(rows.getError()).isNull();
+    }
+
+    @Test
+    public void shouldStopAtASyntaxErrorAndReportWhere() throws Exception {
+        SensorMetricController.ReadableRows rows = rows("{\"sensorId\":\"A\"}\n{\"sensorId\":\"B\"}\n{\"sensorId\" \"C\"}\n{\"sensorId\":\"D\"}\n");
+
+        List<SensorMetricDTO> read = readAll(rows);
+
+        assertThat(read).extracting(metric -> metric == null ? null : metric.getSensorId()).containsExactly("A", "B", null);
+        assertThat(rows.getError()).startsWith("Malformed input after 2 rows at line 3");
+    }
+
+    @Test
+    public void shouldOnlyAcceptCalendarMonthsAndDays() {
+        assertThat(SensorMetricController.isValidMonth(2025, 12)).isTrue();
+        assertThat(SensorMetricController.isValidMonth(null, null)).isTrue();
+        assertThat(SensorMetricController.isValidMonth(2025, 13)).isFalse();
+        assertThat(SensorMetricController.isValidMonth(2025, 0)).isFalse();
+        assertThat(SensorMetricController.isValidMonth(Integer.MAX_VALUE, 1)).isFalse();
+        assertThat(SensorMetricController.isValidDay(2024, 2, 29)).isTrue();
+        assertThat(SensorMetricController.isValidDay(2025, 2, 29)).isFalse();
+        assertThat(SensorMetricController.isValidDay(2025, 13, 1)).isFalse();
+    }
+
+    private SensorMetricController.ReadableRows rows(String body) throws Exception {
+        MappingIterator<SensorMetricDTO> metrics = objectMapper.readerFor(SensorMetricDTO.class).readValues(body);
+        return new SensorMetricController.ReadableRows(metrics);
+    }
+
+    private static List<SensorMetricDTO> readAll(SensorMetricController.ReadableRows rows) {
+        List<SensorMetricDTO> read = new ArrayList<>();
+        while (rows.hasNext()) {
+            read.add(rows.next());
+        }
+        return read;
+    }
+}
@@ -0,0 +1,37 @@
+package cassandra.controller;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingResponsesTest {
+
+    private static final StreamingResponses.CsvColumns<String[]> COLUMNS =
+            new StreamingResponses.CsvColumns<>(row -> row, "name", "note");
+
+    @Test
+    public void csvWritesHeaderThenOneQuotedRecordPerRow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StreamingResponses.csv(() -> Arrays.asList(
+                new String[]{"a", "plain"},
+                new String[]{"b", "with, comma"},
+                new String[]{"c", null}).stream(), COLUMNS).writeTo(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8.name()).split("\\r?\\n"))
+                .containsExactly("name,note", "a,plain", "b,\"with, comma\"", "c,");
+    }
+
+    @Test
+    public void negotiatePicksCsvOnlyWhenAsked() {
+        assertThat(StreamingResponses.negotiate("text/csv", MediaType.APPLICATION_JSON,
+                StreamingResponses.TEXT_CSV)).isEqualTo(StreamingResponses.TEXT_CSV);
+        assertThat(StreamingResponses.negotiate("*/*", MediaType.APPLICATION_JSON,
+                StreamingResponses.TEXT_CSV)).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+}
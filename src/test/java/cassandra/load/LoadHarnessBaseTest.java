@@ -0,0 +1,319 @@
+package cassandra.load;
+
+import cassandra.entity.ChatMessage;
+import cassandra.entity.Conversation;
+import cassandra.entity.SensorMetric;
+import cassandra.repository.ChatMessageRepository;
+import cassandra.repository.ConversationRepository;
+import cassandra.service.SensorMetricService;
+import cassandra.service.impl.SensorMetricWriter;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load harness: seeds one wide sensor_metrics partition and one long conversation, then drives the REST
+ * endpoints in a closed loop at a fixed concurrency and reports p50/p99/p999 latency, throughput and
+ * payload size per endpoint, logged and written to target/load-report.csv.
+ * <p>
+ * Sizes come from system properties, e.g. {@code mvn test -Dtest=LoadHarnessLocalhostTest -Dload.concurrency=32}:
+ * load.sensor-rows (1000000), load.chat-messages (100000), load.concurrency (16), load.requests (1000 per
+ * endpoint), load.full-partition-requests (5 per whole-partition endpoint), load.warmup-requests (50)
+ * and load.reseed (false). Seeding is deterministic and idempotent, so it is skipped when the newest row
+ * is already there; pass load.reseed=true after an interrupted run.
+ */
+@Ignore
+public class LoadHarnessBaseTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadHarnessBaseTest.class);
+
+    static final String SENSOR_ID = "LOAD-001";
+    static final YearMonth MONTH = YearMonth.of(2025, 11);
+    static final UUID CONVERSATION_ID = UUID.fromString("99999999-9999-9999-9999-999999999999");
+
+    private static final int SENSOR_ROWS = Integer.getInteger("load.sensor-rows", 1_000_000);
+    private static final int CHAT_MESSAGES = Integer.getInteger("load.chat-messages", 100_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 1_000);
+    private static final int FULL_PARTITION_REQUESTS = Integer.getInteger("load.full-partition-requests", 5);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup-requests", 50);
+    private static final boolean RESEED = Boolean.getBoolean("load.reseed");
+    private static final int WRITE_CHUNK = 10_000;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    SensorMetricService sensorMetricService;
+
+    @Autowired
+    SensorMetricWriter sensorMetricWriter;
+
+    @Autowired
+    ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    ConversationRepository conversationRepository;
+
+    @Test
+    public void reportLatencyAndThroughputPerEndpoint() throws Exception {
+        seed();
+
+        List<EndpointResult> results = new ArrayList<>();
+        for (Endpoint endpoint : endpoints()) {
+            results.add(run(endpoint));
+        }
+
+        report(results);
+        for (EndpointResult result : results) {
+            assertThat(result.errors).as("failed requests to %s", result.endpoint.name).isZero();
+        }
+    }
+
+    /**
+     * The month partition and the conversation, each written through the application's own write path
+     */
+    private void seed() {
+        if (!RESEED && !sensorMetricService.getLatestMetrics(SENSOR_ID, MONTH.getYear(), MONTH.getMonthValue(), 1).isEmpty()
+                && !chatMessageRepository.findByConversationId(CONVERSATION_ID, 1).isEmpty()) {
+            LOGGER.info("Load data already present, skipping the seed");
+            return;
+        }
+        long start = System.nanoTime();
+        long monthStart = MONTH.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long monthMillis = MONTH.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - monthStart;
+        long step = Math.max(1, monthMillis / SENSOR_ROWS);
+        Random random = new Random(SENSOR_ROWS);
+        List<SensorMetric> chunk = new ArrayList<>(WRITE_CHUNK);
+        for (int i = 0; i < SENSOR_ROWS; i++) {
+            long recordedAt = monthStart + i * step;
+            ZonedDateTime utc = new Date(recordedAt).toInstant().atZone(ZoneOffset.UTC);
+            String metricType = i % 2 == 0 ? "temperature" : "humidity";
+            chunk.add(new SensorMetric(SENSOR_ID, utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(),
+                    new Date(recordedAt), metricType, (i % 2 == 0 ? 21.5 : 45.0) + Math.round(random.nextGaussian() * 20) / 10.0,
+                    i % 2 == 0 ? "celsius" : "percent", "Load Lab", "OK", Collections.singletonMap("source", "load-harness")));
+            if (chunk.size() == WRITE_CHUNK || i == SENSOR_ROWS - 1) {
+                sensorMetricWriter.write(chunk).join();
+                chunk = new ArrayList<>(WRITE_CHUNK);
+            }
+        }
+
+        long firstMessage = monthStart;
+        conversationRepository.save(new Conversation(CONVERSATION_ID, "Load harness", new Date(firstMessage),
+                new HashSet<>(Arrays.asList("load-a", "load-b")), new Date(firstMessage)));
+        // written in windows of WRITE_CHUNK messages, like the sensor rows, so the seed never has more
+        // async writes outstanding than one window
+        List<CompletableFuture<Void>> writes = new ArrayList<>(WRITE_CHUNK);
+        for (int i = 0; i < CHAT_MESSAGES; i++) {
+            long sentAt = firstMessage + i * 1_000L;
+            // startOf is deterministic, so reseeding rewrites the same messages instead of adding new ones
+            CompletionStage<Void> write = chatMessageRepository.insertAsync(new ChatMessage(CONVERSATION_ID, Uuids.startOf(sentAt),
+                    i % 2 == 0 ? "load-a" : "load-b", i % 2 == 0 ? "Load A" : "Load B",
+                    "Load harness message " + i, new Date(sentAt), Boolean.TRUE));
+            writes.add(write.toCompletableFuture());
+            if (writes.size() == WRITE_CHUNK || i == CHAT_MESSAGES - 1) {
+                CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+                writes = new ArrayList<>(WRITE_CHUNK);
+            }
+        }
+        LOGGER.info("Seeded {} sensor metrics and {} chat messages in {} s",
+                SENSOR_ROWS, CHAT_MESSAGES, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private static List<Endpoint> endpoints() {
+        String sensor = "/api/sensors/" + SENSOR_ID;
+        String month = MONTH.getYear() + "/" + MONTH.getMonthValue();
+        String chat = "/api/chat/conversations/" + CONVERSATION_ID;
+        String midMonth = MONTH.atDay(15).atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+        String midMonthPlusDay = MONTH.atDay(16).atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+        return Arrays.asList(
+                new Endpoint("sensor latest 50", sensor + "/metrics/latest/" + month + "?limit=50", "application/json", REQUESTS),
+                new Endpoint("sensor day 1000", sensor + "/metrics/day/" + month + "/15?limit=1000", "application/json", REQUESTS),
+                new Endpoint("sensor page 1000", sensor + "/metrics/page/" + month + "?size=1000", "application/json", REQUESTS),
+                new Endpoint("sensor range 1000", sensor + "/metrics?from=" + midMonth + "&to=" + midMonthPlusDay + "&limit=1000",
+                        "application/json", REQUESTS),
+                new Endpoint("sensor aggregate 1h", sensor + "/metrics/aggregate?year=" + MONTH.getYear() + "&month="
+                        + MONTH.getMonthValue() + "&bucket=1h", "application/json", REQUESTS),
+                new Endpoint("sensor current values", "/api/sensors/latest?ids=" + SENSOR_ID, "application/json", REQUESTS),
+                new Endpoint("sensor month json", sensor + "/metrics/month/" + month, "application/json", FULL_PARTITION_REQUESTS),
+                new Endpoint("sensor month series", sensor + "/metrics/month/" + month, "application/x-sensor-series",
+                        FULL_PARTITION_REQUESTS),
+                new Endpoint("chat latest 50", chat + "/messages/latest?limit=50", "application/json", REQUESTS),
+                new Endpoint("chat all ndjson", chat + "/messages", "application/x-ndjson", FULL_PARTITION_REQUESTS));
+    }
+
+    /**
+     * Every worker sends its next request as soon as the previous response has been read to the end
+     */
+    private EndpointResult run(Endpoint endpoint) throws Exception {
+        for (int i = 0; i < Math.min(WARMUP_REQUESTS, endpoint.requests); i++) {
+            send(endpoint);
+        }
+
+        long[] latencies = new long[endpoint.requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        int threads = Math.min(CONCURRENCY, endpoint.requests);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                running.add(workers.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < endpoint.requests; i = next.getAndIncrement()) {
+                        long requestStart = System.nanoTime();
+                        long read = send(endpoint);
+                        latencies[i] = System.nanoTime() - requestStart;
+                        if (read < 0) {
+                            errors.incrementAndGet();
+                        } else {
+                            bytes.addAndGet(read);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new EndpointResult(endpoint, latencies, errors.get(), bytes.get(), elapsed);
+    }
+
+    /**
+     * @return the bytes of the response body, or -1 when the status is not 2xx
+     */
+    private long send(Endpoint endpoint) {
+        Long read = restTemplate.getRestTemplate().execute(endpoint.path, HttpMethod.GET,
+                request -> request.getHeaders().set(HttpHeaders.ACCEPT, endpoint.accept),
+                response -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        return -1L;
+                    }
+                    return drain(response.getBody());
+                });
+        return read != null ? read : -1;
+    }
+
+    private static long drain(InputStream body) throws IOException {
+        byte[] buffer = new byte[65536];
+        long total = 0;
+        for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static void report(List<EndpointResult> results) throws IOException {
+        String header = String.format(Locale.ROOT, "%-24s %8s %7s %10s %10s %10s %10s %12s",
+                "endpoint", "requests", "errors", "p50 ms", "p99 ms", "p999 ms", "req/s", "bytes/req");
+        StringBuilder table = new StringBuilder(header);
+        for (EndpointResult result : results) {
+            table.append('\n').append(String.format(Locale.ROOT, "%-24s %8d %7d %10.2f %10.2f %10.2f %10.1f %12d",
+                    result.endpoint.name, result.latencies.length, result.errors,
+                    result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(0.999),
+                    result.throughput(), result.bytesPerRequest()));
+        }
+        LOGGER.info("Load harness results at concurrency {}:\n{}", CONCURRENCY, table);
+
+        Path csv = Paths.get("target", "load-report.csv");
+        Files.createDirectories(csv.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            out.println("endpoint,concurrency,requests,errors,p50_ms,p99_ms,p999_ms,requests_per_second,bytes_per_request");
+            for (EndpointResult result : results) {
+                out.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%.3f,%.3f,%.3f,%.1f,%d",
+                        result.endpoint.name, CONCURRENCY, result.latencies.length, result.errors,
+                        result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(0.999),
+                        result.throughput(), result.bytesPerRequest()));
+            }
+        }
+    }
+
+    private static final class Endpoint {
+
+        private final String name;
+        private final String path;
+        private final String accept;
+        private final int requests;
+
+        Endpoint(String name, String path, String accept, int requests) {
+            this.name = name;
+            this.path = path;
+            this.accept = accept;
+            this.requests = requests;
+        }
+    }
+
+    private static final class EndpointResult {
+
+        private final Endpoint endpoint;
+        private final long[] latencies;
+        private final int errors;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        EndpointResult(Endpoint endpoint, long[] sortedLatencies, int errors, long bytes, long elapsedNanos) {
+            this.endpoint = endpoint;
+            this.latencies = sortedLatencies;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Nearest rank
+         */
+        double percentileMillis(double percentile) {
+            int rank = (int) Math.ceil(percentile * latencies.length);
+            return latencies[Math.max(0, rank - 1)] / 1_000_000.0;
+        }
+
+        double throughput() {
+            return latencies.length * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        long bytesPerRequest() {
+            int succeeded = latencies.length - errors;
+            return succeeded > 0 ? bytes / succeeded : 0;
+        }
+    }
+}
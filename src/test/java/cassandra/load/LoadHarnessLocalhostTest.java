@@ -0,0 +1,15 @@
+package cassandra.load;
+
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Runs the load harness against the node configured in application.properties, e.g. the docker-compose cluster:
+ * {@code mvn test -Dtest=LoadHarnessLocalhostTest}
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class LoadHarnessLocalhostTest extends LoadHarnessBaseTest {
+
+}
@@ -0,0 +1,82 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PartitionSampleTest {
+
+    @Test
+    public void shouldBeExactWhenTheWholePartitionWasSampled() {
+        PartitionSample sample = new PartitionSample(40, 4_000, 10_000, 1_000, 1_000, true);
+
+        assertThat(sample.isComplete()).isTrue();
+        assertThat(sample.estimatedRows()).isEqualTo(40);
+        assertThat(sample.estimatedBytes()).isEqualTo(4_000);
+    }
+
+    @Test
+    public void shouldExtrapolateFromTheRateOfTheNewestRows() {
+        // 101 rows one second apart, in a partition that started 1000 seconds before the newest row
+        PartitionSample sample = new PartitionSample(101, 10_100, 1_000_000, 900_000, 0, false);
+
+        assertThat(sample.isComplete()).isFalse();
+        assertThat(sample.estimatedRows()).isEqualTo(1_001);
+        assertThat(sample.estimatedBytes()).isEqualTo(100_100);
+    }
+
+    @Test
+    public void shouldNeverEstimateFewerRowsThanWereSampled() {
+        // the newest rows were written in a burst after the partition was idle
+        PartitionSample sample = new PartitionSample(100, 1_000, 1_000_000, 0, 999_999, false);
+
+        assertThat(sample.estimatedRows()).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldEstimateNothingForAnEmptyPartition() {
+        PartitionSample sample = new PartitionSample(0, 0, 0, 0, 0, true);
+
+        assertThat(sample.estimatedRows()).isZero();
+        assertThat(sample.estimatedBytes()).isZero();
+    }
+
+    @Test
+    public void shouldUseTheCountInsteadOfExtrapolatingABurst() {
+        PartitionSample sample = PartitionSample.counted(rows(100), 100, 1_001, () -> 250);
+
+        assertThat(sample.isComplete()).isFalse();
+        assertThat(sample.isRowCountExact()).isTrue();
+        assertThat(sample.estimatedRows()).isEqualTo(250);
+    }
+
+    @Test
+    public void shouldTreatACountThatReachedTheCapAsALowerBound() {
+        PartitionSample sample = PartitionSample.counted(rows(100), 100, 1_001, () -> 1_001);
+
+        assertThat(sample.isRowCountExact()).isFalse();
+        assertThat(sample.estimatedRows()).isEqualTo(1_001);
+    }
+
+    @Test
+    public void shouldNotCountAPartitionThatWasSampledWhole() {
+        PartitionSample sample = PartitionSample.counted(rows(40), 100, 1_001, () -> {
+            throw new AssertionError("counted a partition that was sampled whole");
+        });
+
+        assertThat(sample.isRowCountExact()).isTrue();
+        assertThat(sample.estimatedRows()).isEqualTo(40);
+    }
+
+    private static ResultSet rows(int count) {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.iterator()).thenReturn(Collections.nCopies(count, mock(Row.class)).iterator());
+        return resultSet;
+    }
+}
@@ -0,0 +1,69 @@
+package cassandra.repository;
+
+import cassandra.repository.PreparedStatementRegistry.RegisteredStatement;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PreparedStatementRegistryTest {
+
+    private static final String CQL = "SELECT * FROM t WHERE k=?";
+
+    private final CqlSession session = mock(CqlSession.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PreparedStatementRegistry registry = new PreparedStatementRegistry(session, meterRegistry, true, 500);
+
+    @Test
+    public void shouldReturnTheSameStatementForTheSameName() {
+        RegisteredStatement first = registry.register("t.find", CQL);
+
+        assertThat(registry.register("t.find", CQL)).isSameAs(first);
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(meterRegistry.find("cassandra.statement").tag("statement", "t.find").timer()).isNotNull();
+        assertThatThrownBy(() -> registry.register("t.find", "SELECT * FROM t"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldPrepareOnceAndRetryStatementsThatFailedAtStartup() {
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(session.prepare(CQL))
+                .thenThrow(mock(InvalidQueryException.class))
+                .thenReturn(prepared);
+        RegisteredStatement statement = registry.register("t.find", CQL);
+
+        registry.prepareAll();
+
+        assertThat(statement.prepared()).isSameAs(prepared);
+        assertThat(statement.prepared()).isSameAs(prepared);
+        verify(session, times(2)).prepare(CQL);
+    }
+
+    @Test
+    public void shouldTagExecutionsWithTableAndResultRows() {
+        BoundStatement bound = mock(BoundStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getAvailableWithoutFetching()).thenReturn(150);
+        when(session.execute(bound)).thenReturn(resultSet);
+        RegisteredStatement statement = registry.register("t.find", CQL);
+
+        statement.execute(bound);
+
+        assertThat(meterRegistry.get("cassandra.statement")
+                .tags("statement", "t.find", "table", "t", "result_rows", "101-1000").timer().count()).isEqualTo(1);
+        assertThat(PreparedStatementRegistry.resultRowsBucket(0)).isZero();
+        assertThat(PreparedStatementRegistry.resultRowsBucket(10)).isEqualTo(1);
+        assertThat(PreparedStatementRegistry.resultRowsBucket(5000)).isEqualTo(4);
+    }
+}
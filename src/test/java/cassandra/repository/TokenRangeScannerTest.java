@@ -0,0 +1,147 @@
+package cassandra.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenRange;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TokenRangeScannerTest {
+
+    private TokenRangeScanner scanner;
+
+    @After
+    public void tearDown() {
+        if (scanner != null) {
+            scanner.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldSplitSingleNodeRingIntoNonWrappingRanges() {
+        // The driver describes the ring of a single-token cluster as (min, min]
+        Murmur3Token min = new Murmur3Token(Long.MIN_VALUE);
+        scanner = scannerFor(Collections.<TokenRange>singleton(new Murmur3TokenRange(min, min)), 4);
+
+        List<TokenRange> ranges = scanner.split();
+
+        assertThat(ranges.size()).isGreaterThanOrEqualTo(4);
+        for (TokenRange range : ranges) {
+            assertThat(range.isWrappedAround()).isFalse();
+            assertThat(range.isFullRing()).isFalse();
+        }
+        assertThat(ranges.stream().filter(range -> range.contains(new Murmur3Token(Long.MAX_VALUE))).count()).isEqualTo(1);
+        assertThat(ranges.stream().filter(range -> range.contains(new Murmur3Token(0))).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSplitEveryNodeRange() {
+        Murmur3Token first = new Murmur3Token(-100);
+        Murmur3Token second = new Murmur3Token(100);
+        Set<TokenRange> ring = new HashSet<>();
+        ring.add(new Murmur3TokenRange(first, second));
+        ring.add(new Murmur3TokenRange(second, first));
+        scanner = scannerFor(ring, 8);
+
+        List<TokenRange> ranges = scanner.split();
+
+        // 4 pieces per node range, plus one extra piece where the wrapping piece is unwrapped
+        assertThat(ranges).hasSize(9);
+        assertThat(ranges.stream().filter(range -> range.contains(new Murmur3Token(0))).count()).isEqualTo(1);
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldNotLetAnUnreadScanBlockOtherScans() {
+        Murmur3Token min = new Murmur3Token(Long.MIN_VALUE);
+        CqlSession session = sessionFor(Collections.<TokenRange>singleton(new Murmur3TokenRange(min, min)));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(session.prepare(anyString())).thenReturn(statement);
+        BoundStatementBuilder builder = mock(BoundStatementBuilder.class, RETURNS_SELF);
+        when(builder.build()).thenReturn(mock(BoundStatement.class));
+        when(statement.boundStatementBuilder()).thenReturn(builder);
+        when(session.execute(ArgumentMatchers.<Statement<?>>any())).thenAnswer(invocation -> singlePage(3));
+        // one thread for both scans, and a buffer smaller than one range
+        scanner = new TokenRangeScanner(session, 1, 1, 2, 2);
+
+        try (Stream<Row> stalled = scanner.stream("SELECT * FROM t WHERE token(k) > ? AND token(k) <= ?", row -> row);
+             Stream<Row> export = scanner.stream("SELECT * FROM t WHERE token(k) > ? AND token(k) <= ?", row -> row)) {
+            assertThat(stalled).isNotNull();
+            assertThat(export.count()).isEqualTo(3L * scanner.split().size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldResumeAReadThatParksWhileTheConsumerDrainsTheBuffer() {
+        // a single range, so no other read is left to wake the consumer
+        CqlSession session = sessionFor(Collections.<TokenRange>singleton(
+                new Murmur3TokenRange(new Murmur3Token(-100), new Murmur3Token(100))));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(session.prepare(anyString())).thenReturn(statement);
+        BoundStatementBuilder builder = mock(BoundStatementBuilder.class, RETURNS_SELF);
+        when(builder.build()).thenReturn(mock(BoundStatement.class));
+        when(statement.boundStatementBuilder()).thenReturn(builder);
+        when(session.execute(ArgumentMatchers.<Statement<?>>any())).thenAnswer(invocation -> singlePage(3));
+        Thread consumer = Thread.currentThread();
+        AtomicInteger consumed = new AtomicInteger();
+        // the read finds the buffer full, and only parks once the consumer has drained it and waits for rows
+        scanner = new TokenRangeScanner(session, 1, 1, 1, 1) {
+            @Override
+            void beforePark() {
+                while (consumed.get() == 0 || consumer.getState() != Thread.State.WAITING) {
+                    Thread.yield();
+                }
+            }
+        };
+
+        try (Stream<Row> scan = scanner.stream("SELECT * FROM t WHERE token(k) > ? AND token(k) <= ?", row -> row)) {
+            assertThat(scan.peek(row -> consumed.incrementAndGet()).count()).isEqualTo(3L);
+        }
+    }
+
+    private static ResultSet singlePage(int rows) {
+        ResultSet page = mock(ResultSet.class);
+        when(page.getAvailableWithoutFetching()).thenReturn(rows);
+        when(page.one()).thenReturn(mock(Row.class));
+        when(page.getExecutionInfo()).thenReturn(mock(ExecutionInfo.class));
+        return page;
+    }
+
+    private static TokenRangeScanner scannerFor(Set<TokenRange> ring, int splits) {
+        return new TokenRangeScanner(sessionFor(ring), 1, 1, splits, 10);
+    }
+
+    private static CqlSession sessionFor(Set<TokenRange> ring) {
+        TokenMap tokenMap = mock(TokenMap.class);
+        when(tokenMap.getTokenRanges()).thenReturn(ring);
+        Metadata metadata = mock(Metadata.class);
+        when(metadata.getTokenMap()).thenReturn(Optional.of(tokenMap));
+        CqlSession session = mock(CqlSession.class);
+        when(session.getMetadata()).thenReturn(metadata);
+        return session;
+    }
+}
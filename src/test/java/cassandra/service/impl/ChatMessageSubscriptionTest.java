@@ -0,0 +1,151 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ChatMessageDTO;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChatMessageSubscriptionTest {
+
+    private static final UUID CONVERSATION = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    private final List<ChatMessageDTO> delivered = new ArrayList<>();
+    private final AtomicInteger closes = new AtomicInteger();
+
+    @Test
+    public void shouldReplayMissedMessagesBeforeLiveOnesWithoutDuplicates() {
+        ChatMessageSubscription subscription = new ChatMessageSubscription(delivered::add, Runnable::run, Runnable::run, 10, 1000, closes::incrementAndGet);
+        ChatMessageDTO first = message(1000);
+        ChatMessageDTO second = message(2000);
+        ChatMessageDTO third = message(3000);
+
+        // Published while the replay query was running, and also returned by it
+        subscription.accept(third);
+        subscription.start(() -> Stream.of(first, second, third));
+        ChatMessageDTO fourth = message(4000);
+        subscription.accept(fourth);
+
+        assertThat(delivered).containsExactly(first, second, third, fourth);
+        assertThat(closes.get()).isZero();
+    }
+
+    @Test
+    public void shouldCloseSubscriberThatFallsBehind() {
+        ChatMessageSubscription subscription = new ChatMessageSubscription(delivered::add, Runnable::run, Runnable::run, 2, 1000, closes::incrementAndGet);
+
+        subscription.accept(message(1000));
+        subscription.accept(message(2000));
+        subscription.accept(message(3000));
+        subscription.start(Stream::empty);
+
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(closes.get()).isEqualTo(1);
+        assertThat(delivered).isEmpty();
+    }
+
+    @Test
+    public void shouldCloseWhenListenerFails() {
+        ChatMessageSubscription subscription = new ChatMessageSubscription(message -> {
+            throw new IllegalStateException("client went away");
+        }, Runnable::run, Runnable::run, 10, 1000, closes::incrementAndGet);
+        subscription.start(Stream::empty);
+
+        subscription.accept(message(1000));
+        subscription.accept(message(2000));
+
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(closes.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldGiveThePushThreadBackAfterEachBatch() {
+        List<Runnable> tasks = new ArrayList<>();
+        ChatMessageSubscription subscription = new ChatMessageSubscription(delivered::add, tasks::add, Runnable::run, 10, 1000, closes::incrementAndGet);
+        List<ChatMessageDTO> history = new ArrayList<>();
+        for (int i = 1; i <= ChatMessageSubscription.DRAIN_BATCH + 8; i++) {
+            history.add(message(i * 1000L));
+        }
+        subscription.start(history::stream);
+
+        tasks.remove(0).run();
+        assertThat(delivered).hasSize(ChatMessageSubscription.DRAIN_BATCH);
+        assertThat(tasks).hasSize(1);
+
+        tasks.remove(0).run();
+        assertThat(delivered).containsExactlyElementsOf(history);
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    public void shouldCloseSubscriberWhoseClientIsTooSlow() {
+        ChatMessageSubscription subscription = new ChatMessageSubscription(message -> {
+            delivered.add(message);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Runnable::run, Runnable::run, 10, 5, closes::incrementAndGet);
+        subscription.start(Stream::empty);
+
+        subscription.accept(message(1000));
+        subscription.accept(message(2000));
+
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(closes.get()).isEqualTo(1);
+        assertThat(delivered).hasSize(1);
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldGiveThePushThreadBackWhileTheClientIsStalled() throws InterruptedException {
+        ExecutorService sendExecutor = Executors.newCachedThreadPool();
+        CountDownLatch unstall = new CountDownLatch(1);
+        CountDownLatch closedLatch = new CountDownLatch(1);
+        AtomicReference<Thread> closedOn = new AtomicReference<>();
+        ChatMessageSubscription subscription = new ChatMessageSubscription(message -> {
+            delivered.add(message);
+            try {
+                unstall.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Runnable::run, sendExecutor, 10, 50, () -> {
+            // SseEmitter.complete waits for the stalled send, so it must not run on the push thread either
+            closedOn.set(Thread.currentThread());
+            closes.incrementAndGet();
+            closedLatch.countDown();
+        });
+        subscription.start(Stream::empty);
+
+        // the push thread is the test thread, so these return only once it is free again
+        subscription.accept(message(1000));
+        subscription.accept(message(2000));
+
+        assertThat(subscription.isClosed()).isTrue();
+        unstall.countDown();
+        closedLatch.await();
+        assertThat(closedOn.get()).isNotSameAs(Thread.currentThread());
+        assertThat(closes.get()).isEqualTo(1);
+        assertThat(delivered).hasSize(1);
+        sendExecutor.shutdown();
+        assertThat(sendExecutor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static ChatMessageDTO message(long createdAtMillis) {
+        return new ChatMessageDTO(CONVERSATION, Uuids.startOf(createdAtMillis), "alice", "Alice Smith",
+                "message at " + createdAtMillis, new Date(createdAtMillis), false);
+    }
+}
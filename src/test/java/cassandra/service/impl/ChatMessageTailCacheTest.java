@@ -0,0 +1,109 @@
+package cassandra.service.impl;
+
+import cassandra.dto.ChatMessageDTO;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChatMessageTailCacheTest {
+
+    private static final UUID CONVERSATION = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    private final ChatMessageTailCache cache = new ChatMessageTailCache(new SimpleMeterRegistry(), 3, 1_000_000, 60);
+
+    @Test
+    public void shouldLoadTailOnceAndServeSmallerLimitsFromIt() {
+        List<ChatMessageDTO> stored = newestFirst(message(3000), message(2000), message(1000));
+        AtomicInteger loads = new AtomicInteger();
+
+        List<ChatMessageDTO> first = cache.getLatest(CONVERSATION, 3, limit -> {
+            loads.incrementAndGet();
+            assertThat(limit).isEqualTo(3);
+            return stored;
+        });
+        List<ChatMessageDTO> second = cache.getLatest(CONVERSATION, 2, limit -> {
+            loads.incrementAndGet();
+            return stored;
+        });
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(first).containsExactlyElementsOf(stored);
+        assertThat(second).containsExactly(stored.get(0), stored.get(1));
+    }
+
+    @Test
+    public void shouldKeepNewestMessagesInOrderWhenMessagesAreWritten() {
+        ChatMessageDTO oldest = message(1000);
+        ChatMessageDTO middle = message(2000);
+        cache.getLatest(CONVERSATION, 3, limit -> newestFirst(middle, oldest));
+
+        ChatMessageDTO newest = message(3000);
+        ChatMessageDTO newer = message(2500);
+        cache.onMessageWritten(newest);
+        cache.onMessageWritten(newer);
+        cache.onMessageWritten(newest);
+
+        assertThat(cache.getLatest(CONVERSATION, 3, limit -> new ArrayList<>()))
+                .containsExactly(newest, newer, middle);
+    }
+
+    @Test
+    public void shouldOnlyPeekAtCachedTails() {
+        assertThat(cache.getLatestIfPresent(CONVERSATION, 2)).isNull();
+
+        List<ChatMessageDTO> stored = newestFirst(message(3000), message(2000), message(1000));
+        cache.getLatest(CONVERSATION, 3, limit -> stored);
+
+        assertThat(cache.getLatestIfPresent(CONVERSATION, 2)).containsExactly(stored.get(0), stored.get(1));
+    }
+
+    @Test
+    public void shouldIgnoreWritesToConversationsThatAreNotCached() {
+        cache.onMessageWritten(message(1000));
+
+        List<ChatMessageDTO> loaded = newestFirst(message(500));
+        assertThat(cache.getLatest(CONVERSATION, 3, limit -> loaded)).containsExactlyElementsOf(loaded);
+    }
+
+    @Test
+    public void shouldReloadTheTailOnceItsTtlHasPassedSinceItWasLoadedEvenWhenMessagesAreWritten() {
+        AtomicLong nanos = new AtomicLong();
+        ChatMessageTailCache expiringCache = new ChatMessageTailCache(new SimpleMeterRegistry(), 3, 1_000_000, 60, nanos::get);
+        ChatMessageDTO loaded = message(1000);
+        expiringCache.getLatest(CONVERSATION, 3, limit -> newestFirst(loaded));
+
+        nanos.set(TimeUnit.SECONDS.toNanos(40));
+        ChatMessageDTO written = message(2000);
+        expiringCache.onMessageWritten(written);
+        assertThat(expiringCache.getLatestIfPresent(CONVERSATION, 3)).containsExactly(written, loaded);
+
+        nanos.set(TimeUnit.SECONDS.toNanos(61));
+        ChatMessageDTO fromOtherInstance = message(1500);
+        assertThat(expiringCache.getLatestIfPresent(CONVERSATION, 3)).isNull();
+        assertThat(expiringCache.getLatest(CONVERSATION, 3, limit -> newestFirst(written, fromOtherInstance, loaded)))
+                .containsExactly(written, fromOtherInstance, loaded);
+    }
+
+    private static List<ChatMessageDTO> newestFirst(ChatMessageDTO... messages) {
+        List<ChatMessageDTO> list = new ArrayList<>();
+        for (ChatMessageDTO message : messages) {
+            list.add(message);
+        }
+        return list;
+    }
+
+    private static ChatMessageDTO message(long createdAtMillis) {
+        return new ChatMessageDTO(CONVERSATION, Uuids.startOf(createdAtMillis), "alice", "Alice Smith",
+                "message at " + createdAtMillis, new Date(createdAtMillis), false);
+    }
+}
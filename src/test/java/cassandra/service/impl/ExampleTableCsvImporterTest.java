@@ -0,0 +1,150 @@
+package cassandra.service.impl;
+
+import cassandra.dto.IngestResultDTO;
+import cassandra.entity.ExampleTable;
+import cassandra.repository.ExampleTableRepository;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExampleTableCsvImporterTest {
+
+    private static final String HEADER = "text_field_2,int_field_1,int_field_2,text_field_1\n";
+
+    private final ExampleTableRepository repository = mock(ExampleTableRepository.class);
+    private final List<List<String>> writtenChunks = new ArrayList<>();
+    private ExampleTableCsvImporter importer;
+
+    @After
+    public void tearDown() {
+        if (importer != null) {
+            importer.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldWriteChunksInFileOrder() {
+        importer = new ExampleTableCsvImporter(repository, 2, 1);
+        when(repository.insertAllAsync(any())).thenAnswer(invocation -> succeed(invocation.getArgument(0)));
+
+        IngestResultDTO result = importer.importCsv(csv(HEADER + "a,1,1,p\nb,2,2,p\nc,3,3,q\nd,4,4,q\ne,5,5,r\n"), true);
+
+        assertThat(writtenChunks).containsExactly(
+                Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e"));
+        assertThat(result.getReceived()).isEqualTo(5);
+        assertThat(result.getWritten()).isEqualTo(5);
+        assertThat(result.getRejected()).isZero();
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getRowsPerSecond()).isPositive();
+    }
+
+    @Test
+    public void shouldCountUnparseableAndIncompleteRowsAsRejected() {
+        importer = new ExampleTableCsvImporter(repository, 100, 1);
+        when(repository.insertAllAsync(any())).thenAnswer(invocation -> succeed(invocation.getArgument(0)));
+
+        IngestResultDTO result = importer.importCsv(csv(HEADER + "a,1,1,p\nb,not-a-number,2,p\nc,3,3,\nd,4,4,q\n"), true);
+
+        assertThat(writtenChunks).containsExactly(Arrays.asList("a", "d"));
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getWritten()).isEqualTo(2);
+        assertThat(result.getRejected()).isEqualTo(2);
+        assertThat(result.getFailed()).isZero();
+    }
+
+    @Test
+    public void shouldReportRowsOfAFailedChunkAsFailedAndKeepWriting() {
+        importer = new ExampleTableCsvImporter(repository, 2, 1);
+        CompletableFuture<Integer> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new IllegalStateException("write timeout"));
+        when(repository.insertAllAsync(any()))
+                .thenAnswer(invocation -> succeed(invocation.getArgument(0)))
+                .thenReturn(failure)
+                .thenAnswer(invocation -> succeed(invocation.getArgument(0)));
+
+        IngestResultDTO result = importer.importCsv(csv("a,1,1,p\nb,2,2,p\nc,3,3,q\nd,4,4,q\ne,5,5,r\n"), false);
+
+        assertThat(writtenChunks).containsExactly(Arrays.asList("a", "b"), Arrays.asList("e"));
+        assertThat(result.getReceived()).isEqualTo(5);
+        assertThat(result.getWritten()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldImportNothingFromAnEmptyFile() {
+        importer = new ExampleTableCsvImporter(repository, 2, 1);
+
+        IngestResultDTO result = importer.importCsv(csv(""), true);
+
+        verify(repository, never()).insertAllAsync(any());
+        assertThat(result.getReceived()).isZero();
+        assertThat(result.getWritten()).isZero();
+        assertThat(result.getRowsPerSecond()).isZero();
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldRejectAnImportWhileEveryParserIsBusy() throws Exception {
+        importer = new ExampleTableCsvImporter(repository, 2, 1);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream stalled = new InputStream() {
+            @Override
+            public int read() {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        };
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<IngestResultDTO> first = caller.submit(() -> importer.importCsv(stalled, false));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> importer.importCsv(csv("a,1,1,p\n"), false))
+                    .isInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            assertThat(first.get().getReceived()).isZero();
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<Integer> succeed(Collection<ExampleTable> rows) {
+        writtenChunks.add(rows.stream()
+                .map(row -> row.getExampleTablePrimaryKey().getTextField2())
+                .collect(Collectors.toList()));
+        return CompletableFuture.completedFuture(rows.size());
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
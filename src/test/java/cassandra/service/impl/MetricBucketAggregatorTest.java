@@ -0,0 +1,86 @@
+package cassandra.service.impl;
+
+import cassandra.dto.SensorMetricAggregateDTO;
+import cassandra.entity.SensorMetricRollup;
+import cassandra.service.AggregateFunction;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricBucketAggregatorTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    public void shouldAggregateNewestFirstRowsIntoHourlyBuckets() {
+        MetricBucketAggregator aggregator = new MetricBucketAggregator(HOUR, EnumSet.allOf(AggregateFunction.class));
+
+        aggregator.accept(millis("2025-11-13T09:30:00Z"), 25.1);
+        aggregator.accept(millis("2025-11-13T09:00:00Z"), 23.8);
+        aggregator.accept(millis("2025-11-13T08:45:00Z"), 23.4);
+        aggregator.accept(millis("2025-11-13T08:15:00Z"), 22.6);
+        aggregator.accept(millis("2025-11-13T08:00:00Z"), 22.5);
+
+        List<SensorMetricAggregateDTO> buckets = aggregator.finish();
+
+        assertThat(buckets).hasSize(2);
+        SensorMetricAggregateDTO nine = buckets.get(0);
+        assertThat(nine.getBucketStart().toInstant()).isEqualTo(Instant.parse("2025-11-13T09:00:00Z"));
+        assertThat(nine.getCount()).isEqualTo(2L);
+        assertThat(nine.getMin()).isEqualTo(23.8);
+        assertThat(nine.getMax()).isEqualTo(25.1);
+
+        SensorMetricAggregateDTO eight = buckets.get(1);
+        assertThat(eight.getCount()).isEqualTo(3L);
+        assertThat(eight.getSum()).isEqualTo(22.5 + 22.6 + 23.4);
+        assertThat(eight.getAvg()).isEqualTo((22.5 + 22.6 + 23.4) / 3);
+    }
+
+    @Test
+    public void shouldOnlySetRequestedAggregates() {
+        MetricBucketAggregator aggregator = new MetricBucketAggregator(HOUR, EnumSet.of(AggregateFunction.MAX));
+        aggregator.accept(millis("2025-11-13T08:00:00Z"), 1.0);
+
+        SensorMetricAggregateDTO bucket = aggregator.finish().get(0);
+
+        assertThat(bucket.getMax()).isEqualTo(1.0);
+        assertThat(bucket.getCount()).isNull();
+        assertThat(bucket.getAvg()).isNull();
+    }
+
+    @Test
+    public void shouldCombineHourlyRollupsIntoDailyBuckets() {
+        MetricBucketAggregator aggregator = new MetricBucketAggregator(24 * HOUR, EnumSet.allOf(AggregateFunction.class));
+
+        aggregator.acceptRollup(new SensorMetricRollup("TEMP-001", "temperature", millis("2025-11-13T09:00:00Z"),
+                3, 73.1, 23.8, 25.1, 25.1, millis("2025-11-13T09:30:00Z")));
+        aggregator.acceptRollup(new SensorMetricRollup("TEMP-001", "temperature", millis("2025-11-13T08:00:00Z"),
+                4, 91.7, 22.5, 23.4, 23.4, millis("2025-11-13T08:45:00Z")));
+        aggregator.acceptRollup(new SensorMetricRollup("TEMP-001", "temperature", millis("2025-11-12T15:00:00Z"),
+                1, 22.4, 22.4, 22.4, 22.4, millis("2025-11-12T15:00:00Z")));
+
+        List<SensorMetricAggregateDTO> buckets = aggregator.finish();
+
+        assertThat(buckets).hasSize(2);
+        SensorMetricAggregateDTO thirteenth = buckets.get(0);
+        assertThat(thirteenth.getBucketStart().toInstant()).isEqualTo(Instant.parse("2025-11-13T00:00:00Z"));
+        assertThat(thirteenth.getCount()).isEqualTo(7L);
+        assertThat(thirteenth.getSum()).isEqualTo(73.1 + 91.7);
+        assertThat(thirteenth.getMin()).isEqualTo(22.5);
+        assertThat(thirteenth.getMax()).isEqualTo(25.1);
+        assertThat(buckets.get(1).getCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldReturnNoBucketsWithoutRows() {
+        assertThat(new MetricBucketAggregator(HOUR, EnumSet.of(AggregateFunction.AVG)).finish()).isEmpty();
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
@@ -0,0 +1,174 @@
+package cassandra.service.impl;
+
+import cassandra.dto.PageDTO;
+import com.datastax.oss.driver.api.core.servererrors.ProtocolError;
+import org.junit.Test;
+import org.springframework.data.cassandra.CassandraUncategorizedException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PagingStateCursorTest {
+
+    @Test
+    public void shouldRoundTripPagingStateThroughCursor() {
+        ByteBuffer pagingState = ByteBuffer.wrap(new byte[]{0, 1, 2, (byte) 0xfe, (byte) 0xff});
+        Pageable current = CassandraPageRequest.of(CassandraPageRequest.first(2), pagingState);
+
+        PageDTO<String> page = PagingStateCursor.toPage(
+                new SliceImpl<>(Arrays.asList("a", "b"), current, true),
+                s -> s.toUpperCase());
+
+        assertThat(page.getItems()).containsExactly("A", "B");
+        assertThat(page.getNextCursor()).isNotEmpty();
+
+        CassandraPageRequest resumed = (CassandraPageRequest) PagingStateCursor.toPageable(page.getNextCursor(), 2);
+        assertThat(resumed.getPagingState()).isEqualTo(pagingState);
+        assertThat(resumed.getPageSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldStartFromFirstPageWithoutCursor() {
+        CassandraPageRequest first = (CassandraPageRequest) PagingStateCursor.toPageable(null, 10);
+        assertThat(first.getPagingState()).isNull();
+    }
+
+    @Test
+    public void shouldHaveNoCursorOnLastPage() {
+        PageDTO<String> page = PagingStateCursor.toPage(
+                new SliceImpl<>(Arrays.asList("a"), CassandraPageRequest.first(2), false),
+                s -> s);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldFillPagesAcrossPartitions() {
+        List<Integer> buckets = Arrays.asList(3, 2, 1);
+        ByteBuffer pagingState = ByteBuffer.wrap(new byte[]{7, 7});
+        Map<Integer, List<String>> rows = new HashMap<>();
+        rows.put(3, Arrays.asList("c1"));
+        rows.put(2, Arrays.asList("b1", "b2"));
+        rows.put(1, Arrays.asList("a1"));
+        BiFunction<Integer, Pageable, CompletionStage<Slice<String>>> readPage = (bucket, pageable) -> {
+            CassandraPageRequest request = (CassandraPageRequest) pageable;
+            List<String> partition = rows.get(bucket);
+            int offset = request.getPagingState() == null ? 0 : 1;
+            List<String> content = partition.subList(offset, Math.min(partition.size(), offset + request.getPageSize()));
+            boolean more = offset + content.size() < partition.size();
+            return CompletableFuture.completedFuture(
+                    new SliceImpl<>(content, more ? CassandraPageRequest.of(pageable, pagingState) : pageable, more));
+        };
+
+        PageDTO<String> first = PagingStateCursor.toPage(buckets, null, 2, 8, readPage, s -> s);
+        PageDTO<String> second = PagingStateCursor.toPage(buckets, first.getNextCursor(), 2, 8, readPage, s -> s);
+
+        assertThat(first.getItems()).containsExactly("c1", "b1");
+        assertThat(second.getItems()).containsExactly("b2", "a1");
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldResumeAtTheStartOfTheNextPartition() {
+        List<Integer> buckets = Arrays.asList(2, 1);
+        BiFunction<Integer, Pageable, CompletionStage<Slice<String>>> readPage = (bucket, pageable) ->
+                CompletableFuture.completedFuture(new SliceImpl<>(Arrays.asList("row of " + bucket), pageable, false));
+
+        PageDTO<String> first = PagingStateCursor.toPage(buckets, null, 1, 8, readPage, s -> s);
+        PageDTO<String> second = PagingStateCursor.toPage(buckets, first.getNextCursor(), 1, 8, readPage, s -> s);
+
+        assertThat(first.getItems()).containsExactly("row of 2");
+        assertThat(second.getItems()).containsExactly("row of 1");
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldRequestSeveralPartitionsAtOnce() {
+        // each read only completes once all three have been requested
+        CountDownLatch requested = new CountDownLatch(3);
+        BiFunction<Integer, Pageable, CompletionStage<Slice<String>>> readPage = (bucket, pageable) -> {
+            requested.countDown();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    assertThat(requested.await(5, TimeUnit.SECONDS)).isTrue();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new SliceImpl<>(Arrays.asList("row of " + bucket), pageable, false);
+            });
+        };
+
+        PageDTO<String> page = PagingStateCursor.toPage(Arrays.asList(3, 2, 1, 0), null, 3, 3, readPage, s -> s);
+
+        assertThat(page.getItems()).containsExactly("row of 3", "row of 2", "row of 1");
+        assertThat(page.getNextCursor()).isNotNull();
+    }
+
+    @Test
+    public void shouldRereadAPartitionThatDoesNotFitWhatIsLeftOfThePage() {
+        List<Integer> buckets = Arrays.asList(2, 1);
+        ByteBuffer pagingState = ByteBuffer.wrap(new byte[]{1});
+        List<Integer> pageSizes = new ArrayList<>();
+        BiFunction<Integer, Pageable, CompletionStage<Slice<String>>> readPage = (bucket, pageable) -> {
+            if (bucket == 2) {
+                return CompletableFuture.completedFuture(new SliceImpl<>(Arrays.asList("b1"), pageable, false));
+            }
+            pageSizes.add(pageable.getPageSize());
+            List<String> content = Arrays.asList("a1", "a2", "a3").subList(0, pageable.getPageSize());
+            return CompletableFuture.completedFuture(
+                    new SliceImpl<>(content, CassandraPageRequest.of(pageable, pagingState), true));
+        };
+
+        PageDTO<String> page = PagingStateCursor.toPage(buckets, null, 3, 8, readPage, s -> s);
+
+        assertThat(page.getItems()).containsExactly("b1", "a1", "a2");
+        assertThat(pageSizes).containsExactly(3, 2);
+        CassandraPageRequest resumed = (CassandraPageRequest) PagingStateCursor.toPageable(page.getNextCursor(), 1);
+        assertThat(resumed.getPagingState()).isEqualTo(ByteBuffer.wrap(new byte[]{0, 0, 0, 1, 1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCursorOfAnotherPartition() {
+        PageDTO<String> page = PagingStateCursor.toPage(Arrays.asList(5, 4), null, 1, 8,
+                (bucket, pageable) -> CompletableFuture.completedFuture(new SliceImpl<>(Arrays.asList("x"), pageable, false)), s -> s);
+        PagingStateCursor.toPage(Arrays.asList(2, 1), page.getNextCursor(), 1, 8,
+                (bucket, pageable) -> CompletableFuture.completedFuture(new SliceImpl<>(Arrays.asList("x"), pageable, false)), s -> s);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMalformedCursor() {
+        PagingStateCursor.toPageable("not a cursor!", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCursorWithAPagingStateCassandraDidNotIssue() {
+        String forged = PagingStateCursor.toPage(new SliceImpl<>(Arrays.asList("a"),
+                        CassandraPageRequest.of(CassandraPageRequest.first(1), ByteBuffer.wrap(new byte[]{1})), true),
+                s -> s).getNextCursor();
+        PagingStateCursor.readPage(PagingStateCursor.toPageable(forged, 1), pageable -> {
+            throw new CassandraUncategorizedException("Query failed",
+                    new ProtocolError(null, "Invalid value for the paging state"));
+        });
+    }
+
+    @Test(expected = CassandraUncategorizedException.class)
+    public void shouldNotBlameTheCursorForFailuresOfAFirstPage() {
+        PagingStateCursor.readPage(PagingStateCursor.toPageable(null, 1), pageable -> {
+            throw new CassandraUncategorizedException("Query failed", new ProtocolError(null, "Unexpected"));
+        });
+    }
+}
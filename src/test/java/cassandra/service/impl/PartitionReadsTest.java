@@ -0,0 +1,90 @@
+package cassandra.service.impl;
+
+import org.junit.Test;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartitionReadsTest {
+
+    private final Map<Integer, List<Integer>> partitions = new HashMap<>();
+    private final List<Integer> started = new ArrayList<>();
+    private final List<Integer> closed = new ArrayList<>();
+
+    @Test
+    public void shouldMergeThePartitionsInOrder() {
+        partitions.put(3, Arrays.asList(9, 8, 7));
+        partitions.put(2, Arrays.asList(6, 5));
+        partitions.put(1, Arrays.asList(4, 4, 1));
+
+        List<Integer> merged = PartitionReads.collect(
+                PartitionReads.merge(Arrays.asList(3, 2, 1), 2, Comparator.reverseOrder(), this::read), Integer.MAX_VALUE);
+
+        assertThat(merged).containsExactly(9, 8, 7, 6, 5, 4, 4, 1);
+        assertThat(closed).containsExactlyInAnyOrder(3, 2, 1);
+    }
+
+    @Test
+    public void shouldReadAtMostMaxInFlightPartitionsAtATime() {
+        for (int bucket = 1; bucket <= 5; bucket++) {
+            partitions.put(bucket, Arrays.asList(bucket * 10, bucket * 10 - 1));
+        }
+
+        CloseableIterator<Integer> merged = PartitionReads.merge(Arrays.asList(5, 4, 3, 2, 1), 3,
+                Comparator.reverseOrder(), this::read);
+
+        assertThat(merged.next()).isEqualTo(50);
+        assertThat(started).containsExactly(5, 4, 3);
+        assertThat(merged.next()).isEqualTo(49);
+        merged.hasNext();
+        assertThat(started).containsExactly(5, 4, 3, 2);
+    }
+
+    @Test
+    public void shouldCloseTheReadsInFlightAndStartNoMoreWhenClosed() {
+        for (int bucket = 1; bucket <= 5; bucket++) {
+            partitions.put(bucket, Arrays.asList(bucket * 10, bucket * 10 - 1));
+        }
+
+        List<Integer> merged = PartitionReads.collect(PartitionReads.merge(Arrays.asList(5, 4, 3, 2, 1), 2,
+                Comparator.reverseOrder(), this::read), 1);
+
+        assertThat(merged).containsExactly(50);
+        assertThat(started).containsExactly(5, 4);
+        assertThat(closed).containsExactlyInAnyOrder(5, 4);
+    }
+
+    private CloseableIterator<Integer> read(int bucket) {
+        started.add(bucket);
+        Iterator<Integer> rows = partitions.get(bucket).iterator();
+        return new CloseableIterator<Integer>() {
+            private boolean open = true;
+
+            @Override
+            public boolean hasNext() {
+                return open && rows.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return rows.next();
+            }
+
+            @Override
+            public void close() {
+                if (open) {
+                    open = false;
+                    closed.add(bucket);
+                }
+            }
+        };
+    }
+}
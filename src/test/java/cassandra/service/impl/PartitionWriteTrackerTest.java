@@ -0,0 +1,66 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartitionWriteTrackerTest {
+
+    private final PartitionWriteTracker tracker = new PartitionWriteTracker();
+
+    @Test
+    public void shouldRankPartitionsByRowsWritten() {
+        tracker.recordSensorWrite(partition("TEMP-001", 11, 3));
+        tracker.recordSensorWrite(partition("CPU-001", 11, 5));
+        tracker.recordSensorWrite(partition("TEMP-001", 10, 1));
+        tracker.recordSensorWrite(partition("TEMP-001", 11, 3));
+
+        assertThat(tracker.busiestSensorPartitions(2)).containsExactly(
+                Arrays.<Object>asList("TEMP-001", 2025, 11, 0),
+                Arrays.<Object>asList("CPU-001", 2025, 11, 0));
+    }
+
+    @Test
+    public void shouldRankConversationsByMessagesWritten() {
+        UUID quiet = UUID.randomUUID();
+        UUID busy = UUID.randomUUID();
+        tracker.recordMessage(quiet);
+        tracker.recordMessage(busy);
+        tracker.recordMessage(busy);
+
+        assertThat(tracker.busiestConversations(10)).containsExactly(busy, quiet);
+    }
+
+    @Test
+    public void shouldForgetPartitionsThatStopReceivingWrites() {
+        tracker.recordSensorWrite(partition("TEMP-001", 11, 1));
+        tracker.recordSensorWrite(partition("CPU-001", 11, 4));
+        tracker.recordMessage(UUID.randomUUID());
+
+        tracker.decay();
+
+        assertThat(tracker.busiestSensorPartitions(10)).containsExactly(Arrays.<Object>asList("CPU-001", 2025, 11, 0));
+        assertThat(tracker.busiestConversations(10)).isEmpty();
+    }
+
+    private static List<SensorMetric> partition(String sensorId, int month, int rows) {
+        List<SensorMetric> metrics = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            SensorMetric metric = new SensorMetric();
+            metric.setSensorId(sensorId);
+            metric.setYear(2025);
+            metric.setMonth(month);
+            metric.setBucket(0);
+            metric.setRecordedAt(new Date(i));
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,123 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricBucketRepository;
+import cassandra.repository.SensorMetricBucketRepository.Granularity;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorBucketingTest {
+
+    private static final YearMonth NOVEMBER = YearMonth.of(2025, 11);
+
+    private final SensorMetricBucketRepository repository = mock(SensorMetricBucketRepository.class);
+    private final SensorBucketing bucketing = new SensorBucketing(repository, "month", "VIB:hour, PWR:day", 100, 300_000,
+            Clock.fixed(Instant.parse("2025-11-15T13:20:00Z"), ZoneOffset.UTC));
+
+    @Test
+    public void shouldNumberBucketsInTimeOrder() {
+        assertThat(Granularity.MONTH.bucket(15, 13)).isZero();
+        assertThat(Granularity.DAY.bucket(15, 13)).isEqualTo(15);
+        assertThat(Granularity.HOUR.bucket(15, 13)).isEqualTo(1513);
+    }
+
+    @Test
+    public void shouldListTheBucketsOfARangeNewestFirst() {
+        assertThat(Granularity.HOUR.buckets(NOVEMBER,
+                Instant.parse("2025-11-01T22:30:00Z"), Instant.parse("2025-11-02T01:00:00Z")))
+                .containsExactly(200, 123, 122);
+        assertThat(Granularity.DAY.buckets(NOVEMBER,
+                Instant.parse("2025-10-20T00:00:00Z"), Instant.parse("2025-11-03T00:00:00.001Z")))
+                .containsExactly(3, 2, 1);
+        assertThat(Granularity.MONTH.buckets(NOVEMBER,
+                Instant.parse("2025-11-29T00:00:00Z"), Instant.parse("2026-01-01T00:00:00Z")))
+                .containsExactly(0);
+        assertThat(Granularity.HOUR.buckets(NOVEMBER,
+                Instant.parse("2025-12-01T00:00:00Z"), Instant.parse("2025-12-02T00:00:00Z")))
+                .isEmpty();
+    }
+
+    @Test
+    public void shouldConfigureGranularityPerSensorClass() {
+        assertThat(bucketing.configured("VIB-001")).isEqualTo(Granularity.HOUR);
+        assertThat(bucketing.configured("PWR-7")).isEqualTo(Granularity.DAY);
+        assertThat(bucketing.configured("TEMP-001")).isEqualTo(Granularity.MONTH);
+        assertThat(bucketing.configured("VIB")).isEqualTo(Granularity.HOUR);
+    }
+
+    @Test
+    public void shouldRecordTheGranularityOfANewMonthOnce() {
+        when(repository.recordIfAbsent("VIB-001", 2025, 11, Granularity.HOUR)).thenReturn(Granularity.HOUR);
+        List<SensorMetric> metrics = Arrays.asList(metric("VIB-001", 15, 13), metric("VIB-001", 15, 14));
+
+        bucketing.assignBuckets(metrics);
+
+        assertThat(metrics).extracting(SensorMetric::getBucket).containsExactly(1513, 1514);
+        verify(repository, times(1)).recordIfAbsent("VIB-001", 2025, 11, Granularity.HOUR);
+    }
+
+    @Test
+    public void shouldFollowTheRecordedGranularityOverTheConfiguredOne() {
+        when(repository.find("VIB-001", 2025, 11)).thenReturn(Granularity.MONTH);
+        List<SensorMetric> metrics = Arrays.asList(metric("VIB-001", 15, 13));
+
+        bucketing.assignBuckets(metrics);
+
+        assertThat(metrics.get(0).getBucket()).isZero();
+        verify(repository, never()).recordIfAbsent(any(), any(Integer.class), any(Integer.class), any());
+    }
+
+    @Test
+    public void shouldReadUnrecordedMonthsAsOnePartition() {
+        assertThat(bucketing.buckets("VIB-001", YearMonth.of(2025, 10))).containsExactly(0);
+
+        when(repository.find("VIB-001", 2025, 10)).thenReturn(Granularity.DAY);
+        assertThat(bucketing.buckets("VIB-001", YearMonth.of(2025, 10))).hasSize(31);
+    }
+
+    @Test
+    public void shouldNotReadBucketsThatStartInTheFuture() {
+        when(repository.find("VIB-001", 2025, 11)).thenReturn(Granularity.HOUR);
+
+        List<Integer> buckets = bucketing.buckets("VIB-001", NOVEMBER);
+
+        assertThat(buckets).hasSize(14 * 24 + 14);
+        assertThat(buckets.get(0)).isEqualTo(1513);
+        assertThat(buckets.get(buckets.size() - 1)).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldReadTheBucketOfTheLatestWritablePoint() {
+        SensorBucketing nearTheHour = new SensorBucketing(repository, "month", "VIB:hour", 100, 300_000,
+                Clock.fixed(Instant.parse("2025-11-15T13:58:00Z"), ZoneOffset.UTC));
+        when(repository.find("VIB-001", 2025, 11)).thenReturn(Granularity.HOUR);
+
+        assertThat(nearTheHour.isWritable(Instant.parse("2025-11-15T14:03:00Z"))).isTrue();
+        assertThat(nearTheHour.isWritable(Instant.parse("2025-11-15T14:03:00.001Z"))).isFalse();
+        assertThat(nearTheHour.buckets("VIB-001", NOVEMBER).get(0)).isEqualTo(1514);
+    }
+
+    private static SensorMetric metric(String sensorId, int day, int hour) {
+        SensorMetric metric = new SensorMetric();
+        metric.setSensorId(sensorId);
+        metric.setYear(2025);
+        metric.setMonth(11);
+        metric.setDay(day);
+        metric.setHour(hour);
+        return metric;
+    }
+}
@@ -0,0 +1,63 @@
+package cassandra.service.impl;
+
+import cassandra.dto.MultiSensorMetricsDTO;
+import cassandra.dto.SensorMetricDTO;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class SensorFanOutReaderTest {
+
+    @Test
+    public void shouldReturnPartialResultsWithPerSensorErrors() {
+        SensorFanOutReader reader = new SensorFanOutReader(8, 1500);
+
+        MultiSensorMetricsDTO result = reader.read(Arrays.asList("slow", "ok", "broken", "ok"), sensorId -> {
+            switch (sensorId) {
+                case "slow":
+                    return Flux.never();
+                case "broken":
+                    return Flux.error(new IllegalStateException("replica unavailable"));
+                default:
+                    return Flux.just(metric(sensorId), metric(sensorId));
+            }
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(result.getMetrics()).containsOnlyKeys("ok");
+        assertThat(result.getMetrics().get("ok")).hasSize(2);
+        assertThat(result.getErrors()).containsExactly(
+                entry("slow", "Deadline exceeded"),
+                entry("broken", "replica unavailable"));
+        assertThat(result.getElapsedMillis()).isLessThan(4000);
+    }
+
+    @Test
+    public void shouldCapConcurrentReads() {
+        SensorFanOutReader reader = new SensorFanOutReader(2, 5000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        MultiSensorMetricsDTO result = reader.read(Arrays.asList("a", "b", "c", "d", "e"), sensorId ->
+                Flux.just(metric(sensorId))
+                        .delaySubscription(Duration.ofMillis(20))
+                        .doOnSubscribe(subscription -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                        .doOnTerminate(inFlight::decrementAndGet))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(result.getMetrics()).containsOnlyKeys("a", "b", "c", "d", "e");
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    private static SensorMetricDTO metric(String sensorId) {
+        SensorMetricDTO metric = new SensorMetricDTO();
+        metric.setSensorId(sensorId);
+        return metric;
+    }
+}
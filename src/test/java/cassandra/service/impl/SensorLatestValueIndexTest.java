@@ -0,0 +1,172 @@
+package cassandra.service.impl;
+
+import cassandra.dto.SensorLatestValueDTO;
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SensorMetricRepositoryCustom.PartitionKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorLatestValueIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SensorMetricRepository repository = mock(SensorMetricRepository.class);
+    private final SensorMetricRangeReader rangeReader = mock(SensorMetricRangeReader.class);
+    private final SensorLatestValueIndex index =
+            new SensorLatestValueIndex(repository, rangeReader, meterRegistry, false, 24, 100, 60_000, 120_000, 5_000, 2, 1_000);
+
+    @Before
+    public void setUp() {
+        when(rangeReader.stream(anyString(), any(), any(), anyInt())).thenAnswer(invocation -> Stream.empty());
+    }
+
+    @Test
+    public void shouldKeepTheNewestValuePerMetricType() {
+        index.record(Arrays.asList(
+                metric("TEMP-001", "temperature", 2_000, 21.5),
+                metric("TEMP-001", "temperature", 1_000, 19.0),
+                metric("TEMP-001", "humidity", 1_000, 40.0)));
+        index.record(Collections.singletonList(metric("TEMP-001", "humidity", 3_000, 45.0)));
+
+        assertThat(index.snapshot(null))
+                .extracting(SensorLatestValueDTO::getMetricType, SensorLatestValueDTO::getValue, value -> value.getRecordedAt().getTime())
+                .containsExactlyInAnyOrder(tuple("temperature", 21.5, 2_000L), tuple("humidity", 45.0, 3_000L));
+    }
+
+    @Test
+    public void shouldReturnOnlyTheRequestedSensorsInRequestOrder() {
+        index.record(Arrays.asList(
+                metric("TEMP-001", "temperature", 1_000, 20.0),
+                metric("CPU-001", "cpu_usage", 1_000, 0.5),
+                metric("HUM-001", "humidity", 1_000, 40.0)));
+
+        List<SensorLatestValueDTO> values = index.snapshot(Arrays.asList("HUM-001", "UNKNOWN", "TEMP-001"));
+
+        assertThat(values).extracting(SensorLatestValueDTO::getSensorId).containsExactly("HUM-001", "TEMP-001");
+        assertThat(meterRegistry.get("sensor.latest_index.sensors").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void shouldReadThroughUnknownSensorsOncePerTtl() {
+        when(rangeReader.stream(eq("PWR-001"), any(), any(), anyInt())).thenAnswer(invocation -> Stream.of(
+                metric("PWR-001", "voltage", 2_000, 230.0),
+                metric("PWR-001", "current", 1_000, 4.2)));
+
+        index.snapshot(Collections.singletonList("PWR-001"));
+        List<SensorLatestValueDTO> values = index.snapshot(Collections.singletonList("PWR-001"));
+
+        assertThat(values).extracting(SensorLatestValueDTO::getMetricType).containsExactlyInAnyOrder("voltage", "current");
+        verify(rangeReader, times(1)).stream(eq("PWR-001"), any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldRememberSensorsWithoutAnyPoint() {
+        index.snapshot(Collections.singletonList("UNKNOWN"));
+        List<SensorLatestValueDTO> values = index.snapshot(Collections.singletonList("UNKNOWN"));
+
+        assertThat(values).isEmpty();
+        assertThat(meterRegistry.get("sensor.latest_index.sensors").gauge().value()).isZero();
+        verify(rangeReader, times(1)).stream(eq("UNKNOWN"), any(), any(), anyInt());
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldAnswerWithoutWaitingForASlowLoad() throws InterruptedException {
+        SensorLatestValueIndex slowIndex =
+                new SensorLatestValueIndex(repository, rangeReader, meterRegistry, false, 24, 100, 60_000, 120_000, 50, 2, 1_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch loaded = new CountDownLatch(1);
+        when(rangeReader.stream(eq("PWR-001"), any(), any(), anyInt())).thenAnswer(invocation -> {
+            release.await();
+            return Stream.of(metric("PWR-001", "voltage", 2_000, 230.0)).onClose(loaded::countDown);
+        });
+
+        assertThat(slowIndex.snapshot(Collections.singletonList("PWR-001"))).isEmpty();
+
+        release.countDown();
+        loaded.await();
+        assertThat(slowIndex.snapshot(Collections.singletonList("PWR-001")))
+                .extracting(SensorLatestValueDTO::getMetricType).containsExactly("voltage");
+        slowIndex.shutdown();
+    }
+
+    @Test
+    public void shouldReloadOnlyTheNewestPointsSinceThePreviousLoad() {
+        when(rangeReader.stream(eq("TEMP-001"), any(), any(), anyInt())).thenAnswer(invocation ->
+                Stream.of(metric("TEMP-001", "temperature", 1_000, 20.0)));
+        Instant first = Instant.parse("2025-11-15T12:00:00Z");
+        Instant second = first.plusSeconds(60);
+
+        index.loadQuietly("TEMP-001", first);
+        index.loadQuietly("TEMP-001", second);
+
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        verify(rangeReader, times(2)).stream(eq("TEMP-001"), from.capture(), any(), eq(100));
+        assertThat(from.getAllValues()).containsExactly(first.minus(Duration.ofHours(24)), first.minus(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    public void shouldLoadEverySensorWithAPartitionForTheCurrentOrPreviousMonth() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        when(repository.scanPartitionKeys()).thenReturn(Stream.of(
+                new PartitionKey("TEMP-001", current.getYear(), current.getMonthValue(), 0),
+                new PartitionKey("HUM-001", current.minusMonths(1).getYear(), current.minusMonths(1).getMonthValue(), 0),
+                new PartitionKey("OLD-001", current.minusMonths(6).getYear(), current.minusMonths(6).getMonthValue(), 0)));
+
+        index.load();
+
+        verify(rangeReader).stream(eq("TEMP-001"), any(), any(), anyInt());
+        verify(rangeReader).stream(eq("HUM-001"), any(), any(), anyInt());
+        verify(rangeReader, never()).stream(eq("OLD-001"), any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldListTheSensorsOnlyOnceAndThenReloadTheIndexedOnes() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        when(repository.scanPartitionKeys()).thenAnswer(invocation -> Stream.of(
+                new PartitionKey("TEMP-001", current.getYear(), current.getMonthValue(), 0),
+                new PartitionKey("EMPTY-001", current.getYear(), current.getMonthValue(), 0)));
+        when(rangeReader.stream(eq("TEMP-001"), any(), any(), anyInt())).thenAnswer(invocation ->
+                Stream.of(metric("TEMP-001", "temperature", 1_000, 20.0)));
+
+        index.load();
+        index.load();
+
+        verify(repository, times(1)).scanPartitionKeys();
+        verify(rangeReader, times(2)).stream(eq("TEMP-001"), any(), any(), anyInt());
+        verify(rangeReader, times(1)).stream(eq("EMPTY-001"), any(), any(), anyInt());
+    }
+
+    private static SensorMetric metric(String sensorId, String metricType, long recordedAt, double value) {
+        SensorMetric metric = new SensorMetric();
+        metric.setSensorId(sensorId);
+        metric.setMetricType(metricType);
+        metric.setRecordedAt(new Date(recordedAt));
+        metric.setMetricValue(value);
+        return metric;
+    }
+}
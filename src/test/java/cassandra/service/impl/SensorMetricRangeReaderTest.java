@@ -0,0 +1,162 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.repository.SensorMetricBucketRepository;
+import cassandra.repository.SensorMetricBucketRepository.Granularity;
+import cassandra.repository.SensorMetricRepository;
+import org.junit.Test;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorMetricRangeReaderTest {
+
+    private static final String SENSOR = "TEMP-001";
+
+    private final SensorMetricRepository repository = mock(SensorMetricRepository.class);
+    private final SensorMetricBucketRepository bucketRepository = mock(SensorMetricBucketRepository.class);
+    private final SensorBucketing bucketing = new SensorBucketing(bucketRepository, "month", "", 100, 300_000);
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Test
+    public void shouldCoverEveryMonthNewestFirst() {
+        assertThat(SensorMetricRangeReader.coveringMonths(
+                Instant.parse("2025-11-29T00:00:00Z"), Instant.parse("2026-01-01T00:00:00Z")))
+                .containsExactly(YearMonth.of(2025, 12), YearMonth.of(2025, 11));
+        assertThat(SensorMetricRangeReader.coveringMonths(
+                Instant.parse("2025-11-29T00:00:00Z"), Instant.parse("2026-01-01T00:00:00.001Z")))
+                .containsExactly(YearMonth.of(2026, 1), YearMonth.of(2025, 12), YearMonth.of(2025, 11));
+    }
+
+    @Test
+    public void shouldReadMonthsInOrderAndStopAtTheLimit() {
+        Instant from = Instant.parse("2025-09-15T00:00:00Z");
+        Instant to = Instant.parse("2025-12-02T00:00:00Z");
+        partition(2025, 12, "2025-12-01T10:00:00Z", "2025-12-01T09:00:00Z");
+        partition(2025, 11, "2025-11-30T23:00:00Z", "2025-11-01T00:00:00Z");
+        partition(2025, 10, "2025-10-31T00:00:00Z");
+        partition(2025, 9, "2025-09-20T00:00:00Z");
+
+        List<Instant> read;
+        try (Stream<SensorMetric> metrics = new SensorMetricRangeReader(repository, bucketing, 2, 366).stream(SENSOR, from, to, 3)) {
+            read = metrics.map(metric -> metric.getRecordedAt().toInstant()).collect(Collectors.toList());
+        }
+
+        assertThat(read).containsExactly(
+                Instant.parse("2025-12-01T10:00:00Z"),
+                Instant.parse("2025-12-01T09:00:00Z"),
+                Instant.parse("2025-11-30T23:00:00Z"));
+        verify(repository).readRange(eq(SENSOR), eq(2025), eq(10), eq(0), eq(from), eq(to), eq(3));
+        verify(repository, never()).readRange(eq(SENSOR), eq(2025), eq(9), anyInt(), any(), any(), anyInt());
+        // December was read to its end; November and the prefetched October are cancelled at the limit
+        assertThat(closed.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldCancelPrefetchedReadsWhenTheStreamIsClosedEarly() {
+        Instant from = Instant.parse("2025-10-01T00:00:00Z");
+        Instant to = Instant.parse("2025-12-01T00:00:00Z");
+        partition(2025, 11, "2025-11-02T00:00:00Z", "2025-11-01T00:00:00Z");
+        partition(2025, 10, "2025-10-02T00:00:00Z");
+
+        try (Stream<SensorMetric> metrics = new SensorMetricRangeReader(repository, bucketing, 2, 366).stream(SENSOR, from, to, 10)) {
+            assertThat(metrics.iterator().next().getRecordedAt().toInstant()).isEqualTo(Instant.parse("2025-11-02T00:00:00Z"));
+        }
+
+        assertThat(closed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRejectRangesLongerThanTheMaximumSpan() {
+        SensorMetricRangeReader reader = new SensorMetricRangeReader(repository, bucketing, 2, 31);
+
+        assertThatThrownBy(() -> reader.stream(SENSOR, Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-03-01T00:00:00Z"), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(repository, never()).readRange(any(), anyInt(), anyInt(), anyInt(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldSkipEmptyMonths() {
+        Instant from = Instant.parse("2025-10-01T00:00:00Z");
+        Instant to = Instant.parse("2025-12-01T00:00:00Z");
+        partition(2025, 11);
+        partition(2025, 10, "2025-10-02T00:00:00Z");
+
+        try (Stream<SensorMetric> metrics = new SensorMetricRangeReader(repository, bucketing, 1, 366).stream(SENSOR, from, to, 10)) {
+            assertThat(metrics.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void shouldReadTheBucketsOfAMonthNewestFirst() {
+        Instant from = Instant.parse("2025-10-31T22:30:00Z");
+        Instant to = Instant.parse("2025-11-01T00:30:00Z");
+        when(bucketRepository.find(SENSOR, 2025, 10)).thenReturn(Granularity.HOUR);
+        partition(2025, 11, 0, "2025-11-01T00:10:00Z");
+        partition(2025, 10, 3123, "2025-10-31T23:20:00Z");
+        partition(2025, 10, 3122, "2025-10-31T22:40:00Z");
+
+        List<Instant> read;
+        try (Stream<SensorMetric> metrics = new SensorMetricRangeReader(repository, bucketing, 2, 366).stream(SENSOR, from, to, 10)) {
+            read = metrics.map(metric -> metric.getRecordedAt().toInstant()).collect(Collectors.toList());
+        }
+
+        assertThat(read).containsExactly(
+                Instant.parse("2025-11-01T00:10:00Z"),
+                Instant.parse("2025-10-31T23:20:00Z"),
+                Instant.parse("2025-10-31T22:40:00Z"));
+    }
+
+    private void partition(int year, int month, String... recordedAt) {
+        partition(year, month, 0, recordedAt);
+    }
+
+    private void partition(int year, int month, int bucket, String... recordedAt) {
+        List<SensorMetric> metrics = Arrays.stream(recordedAt)
+                .map(time -> {
+                    SensorMetric metric = new SensorMetric();
+                    metric.setRecordedAt(Date.from(Instant.parse(time)));
+                    return metric;
+                })
+                .collect(Collectors.toList());
+        when(repository.readRange(eq(SENSOR), eq(year), eq(month), eq(bucket), any(), any(), anyInt()))
+                .thenAnswer(invocation -> closeable(metrics.iterator()));
+    }
+
+    private CloseableIterator<SensorMetric> closeable(Iterator<SensorMetric> metrics) {
+        return new CloseableIterator<SensorMetric>() {
+            @Override
+            public boolean hasNext() {
+                return metrics.hasNext();
+            }
+
+            @Override
+            public SensorMetric next() {
+                return metrics.next();
+            }
+
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorMetricWriteBufferTest {
+
+    private final SensorMetricWriter writer = mock(SensorMetricWriter.class);
+    private final SensorMetricWriteBuffer buffer = new SensorMetricWriteBuffer(writer, new SimpleMeterRegistry(), 10, 2, 60_000, 0);
+
+    @After
+    public void shutdown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    public void shouldWriteFullPartitionsOffTheCallingThread() throws Exception {
+        AtomicReference<Thread> writingThread = new AtomicReference<>();
+        CountDownLatch written = new CountDownLatch(1);
+        when(writer.write(anyCollection())).thenAnswer(invocation -> {
+            writingThread.set(Thread.currentThread());
+            written.countDown();
+            return CompletableFuture.completedFuture(((Collection<?>) invocation.getArgument(0)).size());
+        });
+
+        buffer.offer(points(2));
+
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(writingThread.get()).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMorePointsThanTheBufferCanEverHold() {
+        buffer.offer(points(11));
+    }
+
+    @Test
+    public void shouldReleaseSpaceOnceAFlushIsWritten() throws Exception {
+        when(writer.write(any())).thenReturn(CompletableFuture.completedFuture(2));
+
+        buffer.offer(points(2));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (buffer.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(buffer.getDepth()).isZero();
+    }
+
+    private static List<SensorMetric> points(int count) {
+        List<SensorMetric> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SensorMetric metric = new SensorMetric();
+            metric.setSensorId("TEMP-001");
+            metric.setYear(2025);
+            metric.setMonth(11);
+            points.add(metric);
+        }
+        return points;
+    }
+}
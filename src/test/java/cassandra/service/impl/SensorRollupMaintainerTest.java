@@ -0,0 +1,126 @@
+package cassandra.service.impl;
+
+import cassandra.entity.SensorMetric;
+import cassandra.entity.SensorMetricRollup;
+import cassandra.repository.SensorMetricRepository;
+import cassandra.repository.SensorMetricRepositoryCustom.TypedMetricValueConsumer;
+import cassandra.repository.SensorMetricRollupRepository;
+import cassandra.repository.SensorMetricRollupRepository.Resolution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorRollupMaintainerTest {
+
+    private static final Instant RECORDED_AT = Instant.parse("2025-11-15T13:20:00Z");
+    private static final YearMonth NOVEMBER = YearMonth.of(2025, 11);
+
+    private final SensorMetricRepository sensorMetricRepository = mock(SensorMetricRepository.class);
+    private final SensorMetricRollupRepository rollupRepository = mock(SensorMetricRollupRepository.class);
+    private final SensorBucketing sensorBucketing = mock(SensorBucketing.class);
+    private final SensorRollupMaintainer maintainer =
+            new SensorRollupMaintainer(sensorMetricRepository, rollupRepository, sensorBucketing, true, 3_600_000);
+
+    @Before
+    public void setUp() {
+        when(rollupRepository.markDirtyAsync(anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+        when(rollupRepository.replaceAsync(any(), any(), anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+        when(rollupRepository.coveredMonths("TEMP-001")).thenReturn(Collections.singleton(NOVEMBER));
+        when(sensorBucketing.buckets(eq("TEMP-001"), eq(NOVEMBER), any(), any())).thenReturn(Collections.singletonList(0));
+        when(sensorBucketing.buckets("TEMP-001", NOVEMBER)).thenReturn(Collections.singletonList(0));
+        // the partition holds two raw rows of the hour, however often they were written
+        doAnswer(invocation -> {
+            TypedMetricValueConsumer consumer = invocation.getArgument(6);
+            consumer.accept("temperature", RECORDED_AT.toEpochMilli(), 20.0);
+            consumer.accept("temperature", RECORDED_AT.plusSeconds(60).toEpochMilli(), 22.0);
+            return null;
+        }).when(sensorMetricRepository).scanTypedValues(eq("TEMP-001"), eq(2025), eq(11), eq(0), eq(15), eq(13), any());
+    }
+
+    @After
+    public void tearDown() {
+        maintainer.shutdown();
+    }
+
+    @Test
+    public void shouldCountEachRawRowOnceWhenAWriteIsReplayed() {
+        List<SensorMetric> points = Collections.singletonList(metric());
+        for (int attempt = 0; attempt < 2; attempt++) {
+            maintainer.beforeWrite(points);
+            maintainer.afterWrite(points);
+            maintainer.recompute();
+        }
+
+        ArgumentCaptor<Collection<SensorMetricRollup>> hourly = rollupCaptor();
+        verify(rollupRepository, times(2)).replaceAsync(eq(Resolution.HOURLY), hourly.capture(), anyLong());
+        for (Collection<SensorMetricRollup> rollups : hourly.getAllValues()) {
+            assertThat(rollups).singleElement().satisfies(rollup -> {
+                assertThat(rollup.getCount()).isEqualTo(2);
+                assertThat(rollup.getSum()).isEqualTo(42.0);
+                assertThat(rollup.getBucketStartMillis()).isEqualTo(Instant.parse("2025-11-15T13:00:00Z").toEpochMilli());
+            });
+        }
+        verify(rollupRepository, times(2)).clearDirty(eq("TEMP-001"), eq(Instant.parse("2025-11-15T13:00:00Z").toEpochMilli()), anyLong());
+    }
+
+    @Test
+    public void shouldNotRecomputeAnHourWhileAWriteToItIsInProgress() {
+        List<SensorMetric> points = Collections.singletonList(metric());
+        maintainer.beforeWrite(points);
+
+        maintainer.recompute();
+        verify(sensorMetricRepository, never()).scanTypedValues(anyString(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), any());
+
+        maintainer.afterWrite(points);
+        maintainer.recompute();
+        verify(sensorMetricRepository).scanTypedValues(eq("TEMP-001"), eq(2025), eq(11), eq(0), eq(15), eq(13), any());
+    }
+
+    @Test
+    public void shouldRecordAMonthAsCoveredOnceBackfilled() {
+        when(rollupRepository.coveredMonths("PWR-001")).thenReturn(Collections.<YearMonth>emptySet());
+        when(sensorBucketing.buckets("PWR-001", NOVEMBER)).thenReturn(Collections.singletonList(0));
+        assertThat(maintainer.isCovered("PWR-001", NOVEMBER)).isFalse();
+
+        maintainer.backfill("PWR-001", NOVEMBER);
+
+        verify(rollupRepository).markCovered("PWR-001", NOVEMBER);
+        assertThat(maintainer.isCovered("PWR-001", NOVEMBER)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Collection<SensorMetricRollup>> rollupCaptor() {
+        return ArgumentCaptor.forClass((Class<Collection<SensorMetricRollup>>) (Class<?>) Collection.class);
+    }
+
+    private static SensorMetric metric() {
+        SensorMetric metric = new SensorMetric();
+        metric.setSensorId("TEMP-001");
+        metric.setRecordedAt(Date.from(RECORDED_AT));
+        metric.setMetricType("temperature");
+        metric.setMetricValue(20.0);
+        return metric;
+    }
+}